@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH results, written in CSV format with -rf csv, with a stored
+ * baseline. Exits with status 1 when a benchmark regressed by more than the
+ * threshold, so it can be used to check an optimization on the same machine
+ * the baseline was recorded on. No baseline is stored in the repository, as
+ * scores only compare on the same hardware and JVM: the comparison exits with
+ * status 2 when the baseline is missing or shares no benchmark with the
+ * result, instead of reporting every benchmark as new.
+ * <p>
+ * Usage: BaselineComparison baseline.csv result.csv [thresholdPercent]
+ */
+public class BaselineComparison {
+
+  /** The Constant DEFAULT_THRESHOLD in percent. */
+  private static final double DEFAULT_THRESHOLD = 10;
+
+  /**
+   * The main method.
+   *
+   * @param args the arguments
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: BaselineComparison baseline.csv result.csv [thresholdPercent]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+    File baselineFile = new File(args[0]);
+    if (!baselineFile.isFile()) {
+      System.err.println("No baseline found at " + baselineFile + ". Record it on this machine, from the branch the optimization starts from:");
+      System.err.println("  java -jar benchmarks/target/benchmarks.jar <benchmarks> -rf csv -rff " + baselineFile);
+      System.exit(2);
+    }
+    Map<String, Score> baseline = readScores(baselineFile);
+    Map<String, Score> result = readScores(new File(args[1]));
+    if (baseline.isEmpty()) {
+      System.err.println("Baseline " + baselineFile + " contains no score.");
+      System.exit(2);
+    }
+
+    int regressions = 0;
+    int compared = 0;
+    System.out.println(String.format("%-90s %14s %14s %9s", "Benchmark", "Baseline", "Result", "Change"));
+    for (Map.Entry<String, Score> entry : result.entrySet()) {
+      Score score = entry.getValue();
+      Score baselineScore = baseline.get(entry.getKey());
+      if (baselineScore == null || !baselineScore.getUnit().equals(score.getUnit())) {
+        System.out.println(String.format("%-90s %14s %14.3f %9s", entry.getKey(), "-", score.getValue(), "new"));
+        continue;
+      }
+      compared++;
+      // Positive change means slower, whatever the mode
+      double change = (score.getValue() - baselineScore.getValue()) / baselineScore.getValue() * 100;
+      if (score.isHigherBetter()) {
+        change = -change;
+      }
+      boolean regression = change > threshold;
+      if (regression) {
+        regressions++;
+      }
+      System.out.println(String.format("%-90s %14.3f %14.3f %+8.1f%%%s",
+                                       entry.getKey(),
+                                       baselineScore.getValue(),
+                                       score.getValue(),
+                                       change,
+                                       regression ? " REGRESSION" : ""));
+    }
+    if (compared == 0) {
+      System.err.println("No benchmark of " + args[1] + " is in baseline " + baselineFile + ", record the baseline with the same benchmarks and parameters.");
+      System.exit(2);
+    }
+    System.out.println(regressions + " regression(s) over " + threshold + "%");
+    if (regressions > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Reads scores of a JMH CSV result, keyed by benchmark, mode and params.
+   *
+   * @param file the file
+   * @return the scores
+   * @throws Exception the exception
+   */
+  private static Map<String, Score> readScores(File file) throws Exception {
+    Map<String, Score> scores = new LinkedHashMap<String, Score>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      List<String> header = parseLine(reader.readLine());
+      int benchmarkIndex = header.indexOf("Benchmark");
+      int modeIndex = header.indexOf("Mode");
+      int scoreIndex = header.indexOf("Score");
+      int unitIndex = header.indexOf("Unit");
+      if (benchmarkIndex < 0 || modeIndex < 0 || scoreIndex < 0 || unitIndex < 0) {
+        throw new IllegalArgumentException(file + " isn't a JMH CSV result");
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        List<String> values = parseLine(line);
+        StringBuilder key = new StringBuilder(values.get(benchmarkIndex)).append(" (").append(values.get(modeIndex));
+        for (int i = 0; i < header.size(); i++) {
+          if (header.get(i).startsWith("Param: ") && i < values.size() && !values.get(i).isEmpty()) {
+            key.append(", ").append(header.get(i).substring("Param: ".length())).append("=").append(values.get(i));
+          }
+        }
+        key.append(")");
+        double value = Double.parseDouble(values.get(scoreIndex).replace(',', '.'));
+        scores.put(key.toString(), new Score(value, values.get(unitIndex), "thrpt".equals(values.get(modeIndex))));
+      }
+    } finally {
+      reader.close();
+    }
+    return scores;
+  }
+
+  /**
+   * Parses a CSV line, values may be quoted.
+   *
+   * @param line the line
+   * @return the values
+   */
+  private static List<String> parseLine(String line) {
+    List<String> values = new ArrayList<String>();
+    if (line == null) {
+      return values;
+    }
+    StringBuilder value = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          value.append(c);
+          i++;
+        } else {
+          quoted = !quoted;
+        }
+      } else if (c == ',' && !quoted) {
+        values.add(value.toString());
+        value.setLength(0);
+      } else {
+        value.append(c);
+      }
+    }
+    values.add(value.toString());
+    return values;
+  }
+
+  /**
+   * Score of a benchmark.
+   */
+  private static class Score {
+
+    /** The value. */
+    private final double value;
+
+    /** The unit. */
+    private final String unit;
+
+    /** The higher better. */
+    private final boolean higherBetter;
+
+    /**
+     * Instantiates a new score.
+     *
+     * @param value the value
+     * @param unit the unit
+     * @param higherBetter true for throughput scores
+     */
+    public Score(double value, String unit, boolean higherBetter) {
+      this.value = value;
+      this.unit = unit;
+      this.higherBetter = higherBetter;
+    }
+
+    /**
+     * Gets the value.
+     *
+     * @return the value
+     */
+    public double getValue() {
+      return value;
+    }
+
+    /**
+     * Gets the unit.
+     *
+     * @return the unit
+     */
+    public String getUnit() {
+      return unit;
+    }
+
+    /**
+     * Checks if higher scores are better.
+     *
+     * @return true, if higher is better
+     */
+    public boolean isHigherBetter() {
+      return higherBetter;
+    }
+  }
+}
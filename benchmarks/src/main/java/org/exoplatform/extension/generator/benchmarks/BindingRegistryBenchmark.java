@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.extension.generator.service.api.BindingRegistry;
+import org.exoplatform.extension.generator.service.api.Utils;
+import org.jibx.runtime.BindingDirectory;
+import org.jibx.runtime.IBindingFactory;
+import org.jibx.runtime.IMarshallingContext;
+import org.jibx.runtime.IUnmarshallingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-document cost of JiBX serialization with factories cached
+ * by {@link BindingRegistry}, as done by {@link Utils}, and with a factory
+ * lookup for each document. A new context is created for each document in
+ * both cases. Documents are
+ * small init params, like those parsed by the Application Registry and Site
+ * Explorer handlers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class BindingRegistryBenchmark {
+
+  /** The number of params in the document. */
+  @Param({ "1", "20" })
+  public int params;
+
+  /** The init params. */
+  private InitParams initParams;
+
+  /** The init params XML. */
+  private byte[] initParamsXML;
+
+  /**
+   * Setup.
+   *
+   * @throws Exception the exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    initParams = Payloads.newInitParams(params);
+    initParamsXML = Utils.toXML(initParams, Payloads.EXTENSION_NAME);
+  }
+
+  /**
+   * Unmarshals with a cached factory.
+   *
+   * @return the init params
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public InitParams fromXMLCached() throws Exception {
+    return Utils.fromXML(initParamsXML, InitParams.class);
+  }
+
+  /**
+   * Unmarshals with a factory lookup.
+   *
+   * @return the init params
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public InitParams fromXMLUncached() throws Exception {
+    IBindingFactory factory = BindingDirectory.getFactory(InitParams.class);
+    IUnmarshallingContext uctx = factory.createUnmarshallingContext();
+    return (InitParams) uctx.unmarshalDocument(new ByteArrayInputStream(initParamsXML), "UTF-8");
+  }
+
+  /**
+   * Marshals with a cached factory.
+   *
+   * @return the XML
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public byte[] toXMLCached() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(initParamsXML.length);
+    IMarshallingContext mctx = BindingRegistry.newMarshallingContext(InitParams.class);
+    mctx.setIndent(2);
+    mctx.marshalDocument(initParams, "UTF-8", null, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Marshals with a factory lookup.
+   *
+   * @return the XML
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public byte[] toXMLUncached() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(initParamsXML.length);
+    IBindingFactory factory = BindingDirectory.getFactory(InitParams.class);
+    IMarshallingContext mctx = factory.createMarshallingContext();
+    mctx.setIndent(2);
+    mctx.marshalDocument(initParams, "UTF-8", null, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of filtering the selection of one category, as done for
+ * each category after each click in the portlet and by each handler during
+ * generation, from a sorted selection and from a hash set scanned linearly.
+ * The selection is spread over portal sites, user sites and site contents,
+ * the filtered category has no selected resources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class FilterSelectedResourcesBenchmark {
+
+  /** The number of selected resources. */
+  @Param({ "100", "10000" })
+  public int selected;
+
+  /** The selection, sorted. */
+  private TreeSet<String> sortedSelection;
+
+  /** The selection, in a hash set. */
+  private Set<String> hashSelection;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setup() {
+    String[] categories = new String[] { ExtensionGenerator.SITES_PORTAL_PATH, ExtensionGenerator.SITES_USER_PATH, ExtensionGenerator.CONTENT_SITES_PATH };
+    sortedSelection = new TreeSet<String>();
+    for (int i = 0; i < selected; i++) {
+      sortedSelection.add(categories[i % categories.length] + "/resource" + i);
+    }
+    hashSelection = new HashSet<String>(sortedSelection);
+  }
+
+  /**
+   * Filters a category from the sorted selection.
+   *
+   * @return the filtered resources
+   */
+  @Benchmark
+  public Set<String> sorted() {
+    return AbstractConfigurationHandler.filterSelectedResources(sortedSelection, ExtensionGenerator.REGISTRY_PATH);
+  }
+
+  /**
+   * Filters a category from the hash set.
+   *
+   * @return the filtered resources
+   */
+  @Benchmark
+  public Set<String> linear() {
+    return AbstractConfigurationHandler.filterSelectedResources(hashSelection, ExtensionGenerator.REGISTRY_PATH);
+  }
+}
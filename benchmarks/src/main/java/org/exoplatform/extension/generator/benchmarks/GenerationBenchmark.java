@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.exoplatform.extension.generator.service.ExtensionGeneratorImpl;
+import org.exoplatform.extension.generator.service.api.ConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationMetrics;
+import org.exoplatform.extension.generator.service.api.Histogram;
+import org.exoplatform.extension.generator.service.api.OperationMetrics;
+import org.exoplatform.extension.generator.service.handler.CLVTemplatesConfigurationHandler;
+import org.exoplatform.extension.generator.service.handler.MOPSiteConfigurationHandler;
+import org.exoplatform.extension.generator.service.handler.SiteContentsConfigurationHandler;
+import org.exoplatform.portal.mop.SiteType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a whole generation, from staging exports to the generated
+ * archive, against a {@link StubManagementController} serving synthetic
+ * exports of portal sites, Content List Viewer templates and site contents.
+ * Throughput and latency percentiles are measured by JMH, the allocation rate
+ * with the gc profiler; temp-disk usage is printed from
+ * {@link GenerationMetrics} at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class GenerationBenchmark {
+
+  /** The archive type. */
+  @Param({ ExtensionGenerator.ARCHIVE_TYPE_WAR, ExtensionGenerator.ARCHIVE_TYPE_PACKAGE, ExtensionGenerator.ARCHIVE_TYPE_MAVEN })
+  public String archiveType;
+
+  /** The number of portal sites, and of sites with contents. */
+  @Param({ "10" })
+  public int sites;
+
+  /** The number of Content List Viewer templates. */
+  @Param({ "50" })
+  public int templates;
+
+  /** The number of contents of each site. */
+  @Param({ "50" })
+  public int contentsPerSite;
+
+  /** The approximate size of each exported file. */
+  @Param({ "16384" })
+  public int entrySize;
+
+  /** The number of threads running handlers. */
+  @Param({ "1" })
+  public int handlersThreads;
+
+  /** The exports. */
+  private SyntheticExports exports;
+
+  /** The selected resources. */
+  private Set<String> selectedResources;
+
+  /** The generator. */
+  private ExtensionGeneratorImpl generator;
+
+  /**
+   * Setup.
+   *
+   * @throws Exception the exception
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    exports = new SyntheticExports();
+    exports.addPortalSites(sites, entrySize);
+    exports.addCLVTemplates(templates, entrySize);
+    exports.addSiteContents(sites, contentsPerSite, entrySize);
+    selectedResources = exports.getSelectedResources();
+
+    List<ConfigurationHandler> handlers = new ArrayList<ConfigurationHandler>();
+    handlers.add(new MOPSiteConfigurationHandler(SiteType.PORTAL));
+    handlers.add(new CLVTemplatesConfigurationHandler());
+    handlers.add(new SiteContentsConfigurationHandler());
+    System.setProperty(ExtensionGeneratorImpl.HANDLERS_THREADS_PROPERTY, String.valueOf(handlersThreads));
+    generator = new ExtensionGeneratorImpl(exports.getController(), handlers);
+    generator.start();
+    GenerationMetrics.getInstance().reset();
+  }
+
+  /**
+   * Prints the temp-disk usage and the archive size of the trial.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    generator.stop();
+    GenerationMetrics metrics = GenerationMetrics.getInstance();
+    OperationMetrics.Snapshot generations = metrics.getGenerations().get(archiveType);
+    if (generations == null) {
+      return;
+    }
+    Histogram.Snapshot archiveSize = generations.getBytes();
+    long count = Math.max(1, archiveSize.getCount());
+    System.out.println();
+    System.out.println("Exports: " + selectedResources.size() + " resources, " + exports.getExportedBytes() + " bytes");
+    System.out.println("Generations: " + generations.getSuccesses() + " succeeded, " + generations.getFailures() + " failed");
+    System.out.println("Archive size: " + archiveSize.getMean() + " bytes");
+    System.out.println("Temp-disk written per generation: " + metrics.getTempFileBytesWritten() / count + " bytes");
+    System.out.println("Temp-disk peak in use: " + metrics.getTempFileBytesPeak() + " bytes");
+  }
+
+  /**
+   * Generates the archive.
+   *
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public void generate() throws Exception {
+    if (ExtensionGenerator.ARCHIVE_TYPE_WAR.equals(archiveType)) {
+      generator.generateWARExtension(Payloads.EXTENSION_NAME, selectedResources, NullOutputStream.NULL_OUTPUT_STREAM);
+    } else if (ExtensionGenerator.ARCHIVE_TYPE_PACKAGE.equals(archiveType)) {
+      generator.generateExtensionZip(Payloads.EXTENSION_NAME, selectedResources, NullOutputStream.NULL_OUTPUT_STREAM);
+    } else {
+      generator.generateExtensionMavenProject(Payloads.EXTENSION_NAME, selectedResources, NullOutputStream.NULL_OUTPUT_STREAM);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.container.xml.ComponentPlugin;
+import org.exoplatform.container.xml.Configuration;
+import org.exoplatform.container.xml.ExternalComponentPlugins;
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ObjectParameter;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.services.cms.impl.ResourceConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds payloads shaped like the ones handled during a generation:
+ * configurations written by handlers, exported files containing the
+ * extension name placeholder and archives exported by GateIN.
+ */
+public final class Payloads {
+
+  /** The Constant EXTENSION_NAME. */
+  public static final String EXTENSION_NAME = "acme-extension";
+
+  /** The Constant MAVEN_TEMPLATE_LOCATION. */
+  public static final String MAVEN_TEMPLATE_LOCATION = "generator/template/maven.zip";
+
+  /** The Constant TEMPLATE_LINE. */
+  private static final String TEMPLATE_LINE = "    <value-param><name>location</name><value>war:/conf/custom-extension/dms/scripts/script-%d.groovy</value></value-param>\n";
+
+  /**
+   * Instantiates a new payloads.
+   */
+  private Payloads() {
+  }
+
+  /**
+   * Builds a configuration declaring predefined scripts, as written by
+   * ScriptsConfigurationHandler.
+   *
+   * @param scripts the number of scripts
+   * @return the configuration
+   */
+  public static Configuration newScriptsConfiguration(int scripts) {
+    List<ResourceConfig.Resource> resources = new ArrayList<ResourceConfig.Resource>();
+    for (int i = 0; i < scripts; i++) {
+      ResourceConfig.Resource resource = new ResourceConfig.Resource();
+      resource.setName("ecm-explorer/action/Script" + i + ".groovy");
+      resource.setDescription("ecm-explorer/action/Script" + i + ".groovy");
+      resources.add(resource);
+    }
+    ResourceConfig resourceConfig = new ResourceConfig();
+    resourceConfig.setRessources(resources);
+
+    InitParams params = new InitParams();
+    params.addParam(newValueParam("autoCreateInNewRepository", "true"));
+    params.addParam(newValueParam("predefinedScriptsLocation", "war:/conf/custom-extension/dms/scripts"));
+    ObjectParameter objectParameter = new ObjectParameter();
+    objectParameter.setName("predefined.scripts");
+    objectParameter.setObject(resourceConfig);
+    params.addParam(objectParameter);
+
+    ComponentPlugin plugin = new ComponentPlugin();
+    plugin.setName("manage.script.plugin");
+    plugin.setSetMethod("addScriptPlugin");
+    plugin.setType("org.exoplatform.services.cms.scripts.impl.ScriptPlugin");
+    plugin.setInitParams(params);
+    List<ComponentPlugin> plugins = new ArrayList<ComponentPlugin>();
+    plugins.add(plugin);
+
+    ExternalComponentPlugins externalComponentPlugins = new ExternalComponentPlugins();
+    externalComponentPlugins.setTargetComponent("org.exoplatform.services.cms.scripts.ScriptService");
+    externalComponentPlugins.setComponentPlugins(plugins);
+    Configuration configuration = new Configuration();
+    configuration.addExternalComponentPlugins(externalComponentPlugins);
+    return configuration;
+  }
+
+  /**
+   * Builds init params made of value params, as parsed from exported views
+   * and templates.
+   *
+   * @param params the number of value params
+   * @return the init params
+   */
+  public static InitParams newInitParams(int params) {
+    InitParams initParams = new InitParams();
+    for (int i = 0; i < params; i++) {
+      initParams.addParam(newValueParam("param" + i, "war:/conf/custom-extension/dms/views/view-" + i + ".gtmpl"));
+    }
+    return initParams;
+  }
+
+  /**
+   * Builds a text file of a given size containing the extension name
+   * placeholder on each line.
+   *
+   * @param size the approximate size in bytes
+   * @return the content
+   */
+  public static String newTemplateContent(int size) {
+    StringBuilder builder = new StringBuilder(size + TEMPLATE_LINE.length());
+    builder.append("<configuration>\n");
+    for (int i = 0; builder.length() < size; i++) {
+      builder.append(String.format(TEMPLATE_LINE, i));
+    }
+    builder.append("</configuration>\n");
+    return builder.toString();
+  }
+
+  /**
+   * Builds an archive shaped like a GateIN export.
+   *
+   * @param entries the number of entries
+   * @param entrySize the approximate size of each entry
+   * @return the archive bytes
+   * @throws Exception the exception
+   */
+  public static byte[] newArchive(int entries, int entrySize) throws Exception {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+    byte[] content = newTemplateContent(entrySize).getBytes("UTF-8");
+    for (int i = 0; i < entries; i++) {
+      zos.putNextEntry(new ZipEntry("custom-extension/conf/dms/templates/template-" + i + ".xml"));
+      zos.write(content);
+      zos.closeEntry();
+    }
+    zos.close();
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Reads a resource of the generator.
+   *
+   * @param location the location in classpath
+   * @return the resource bytes
+   * @throws Exception the exception
+   */
+  public static byte[] readResource(String location) throws Exception {
+    InputStream inputStream = Payloads.class.getClassLoader().getResourceAsStream(location);
+    if (inputStream == null) {
+      throw new IllegalStateException("Resource not found: " + location);
+    }
+    try {
+      return IOUtils.toByteArray(inputStream);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Builds a value param.
+   *
+   * @param name the name
+   * @param value the value
+   * @return the value param
+   */
+  private static ValueParam newValueParam(String name, String value) {
+    ValueParam valueParam = new ValueParam();
+    valueParam.setName(name);
+    valueParam.setValue(value);
+    return valueParam;
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+import org.gatein.management.api.operation.OperationNames;
+import org.gatein.management.api.operation.model.ReadResourceModel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Stand-in for GateIN Management Controller serving prepared export archives
+ * by managed path, to run generations without a platform. Children of
+ * exported paths can be read, and parent paths exported, their archive
+ * merging the ones of their children. Export filters are ignored.
+ */
+public class StubManagementController implements ManagementController {
+
+  /** The exported archives by managed path. */
+  private final Map<String, byte[]> exports = new ConcurrentHashMap<String, byte[]>();
+
+  /** The merged archives of parent paths. */
+  private final Map<String, byte[]> parentExports = new ConcurrentHashMap<String, byte[]>();
+
+  /**
+   * Adds an export.
+   *
+   * @param path the managed path
+   * @param archive the exported archive
+   */
+  public void addExport(String path, byte[] archive) {
+    exports.put(path, archive);
+    parentExports.clear();
+  }
+
+  /**
+   * Gets the exports.
+   *
+   * @return the exported archives by managed path
+   */
+  public Map<String, byte[]> getExports() {
+    return exports;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ManagedResponse execute(ManagedRequest request) {
+    StringBuilder pathBuilder = new StringBuilder();
+    Iterator<String> segments = request.getAddress().iterator();
+    while (segments.hasNext()) {
+      pathBuilder.append('/').append(segments.next());
+    }
+    String path = pathBuilder.toString();
+    if (OperationNames.READ_RESOURCE.equals(request.getOperationName())) {
+      Set<String> children = getChildren(path);
+      if (children.isEmpty() && !exports.containsKey(path)) {
+        return new StubManagedResponse(null, "No resource " + path);
+      }
+      return new StubManagedResponse(new ReadResourceModel(path, children), null);
+    } else if (OperationNames.EXPORT_RESOURCE.equals(request.getOperationName())) {
+      byte[] archive = getArchive(path);
+      if (archive == null) {
+        return new StubManagedResponse(null, "No export for " + path);
+      }
+      return new StubManagedResponse(archive, null);
+    }
+    return new StubManagedResponse(null, "Unsupported operation " + request.getOperationName());
+  }
+
+  /**
+   * Gets the children names of a path.
+   *
+   * @param path the path
+   * @return the children names
+   */
+  private Set<String> getChildren(String path) {
+    Set<String> children = new TreeSet<String>();
+    String prefix = path + "/";
+    for (String exportPath : exports.keySet()) {
+      if (exportPath.startsWith(prefix)) {
+        String childPath = exportPath.substring(prefix.length());
+        children.add(childPath.contains("/") ? childPath.substring(0, childPath.indexOf('/')) : childPath);
+      }
+    }
+    return children;
+  }
+
+  /**
+   * Gets the archive of a path, merging archives of its children for a
+   * parent path.
+   *
+   * @param path the path
+   * @return the archive, null if there is no export under the path
+   */
+  private byte[] getArchive(String path) {
+    byte[] archive = exports.get(path);
+    if (archive == null) {
+      archive = parentExports.get(path);
+    }
+    if (archive == null && !getChildren(path).isEmpty()) {
+      try {
+        archive = mergeArchives(path + "/");
+      } catch (IOException e) {
+        throw new IllegalStateException("Error while merging exports of " + path, e);
+      }
+      parentExports.put(path, archive);
+    }
+    return archive;
+  }
+
+  /**
+   * Merges archives of exports under a path, entries already added are
+   * skipped.
+   *
+   * @param prefix the path prefix
+   * @return the merged archive
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private byte[] mergeArchives(String prefix) throws IOException {
+    Set<String> entryNames = new HashSet<String>();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+    byte[] buffer = new byte[8192];
+    for (String exportPath : new TreeSet<String>(exports.keySet())) {
+      if (!exportPath.startsWith(prefix)) {
+        continue;
+      }
+      ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(exports.get(exportPath)));
+      ZipEntry entry;
+      while ((entry = zis.getNextEntry()) != null) {
+        if (!entryNames.add(entry.getName())) {
+          continue;
+        }
+        zos.putNextEntry(new ZipEntry(entry.getName()));
+        int read;
+        while ((read = zis.read(buffer)) > 0) {
+          zos.write(buffer, 0, read);
+        }
+        zos.closeEntry();
+      }
+      zis.close();
+    }
+    zos.close();
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Response of an operation.
+   */
+  private static class StubManagedResponse implements ManagedResponse, ManagedResponse.Outcome {
+
+    /** The result, null on failure. */
+    private final Object result;
+
+    /** The failure description. */
+    private final String failureDescription;
+
+    /**
+     * Instantiates a new stub managed response.
+     *
+     * @param result the result
+     * @param failureDescription the failure description
+     */
+    public StubManagedResponse(Object result, String failureDescription) {
+      this.result = result;
+      this.failureDescription = failureDescription;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Outcome getOutcome() {
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult() {
+      return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeResult(OutputStream outputStream, boolean pretty) throws IOException {
+      if (result instanceof byte[]) {
+        outputStream.write((byte[]) result);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSuccess() {
+      return failureDescription == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFailureDescription() {
+      return failureDescription;
+    }
+  }
+}
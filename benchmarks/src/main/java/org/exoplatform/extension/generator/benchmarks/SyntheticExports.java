@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import com.thoughtworks.xstream.XStream;
+
+import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.management.common.exportop.JCRNodeExportTask;
+import org.exoplatform.management.content.operations.site.SiteConstants;
+import org.exoplatform.management.content.operations.site.contents.SiteMetaData;
+import org.exoplatform.management.ecmadmin.operations.templates.applications.ApplicationTemplatesMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic staging exports of portal sites, Content List Viewer templates
+ * and site contents, served by a {@link StubManagementController}.
+ */
+public class SyntheticExports {
+
+  /** The Constant SITE_ENTRIES. */
+  private static final String[] SITE_ENTRIES = new String[] { "portal.xml", "pages.xml", "navigation.xml" };
+
+  /** The controller. */
+  private final StubManagementController controller = new StubManagementController();
+
+  /** The selected resources. */
+  private final Set<String> selectedResources = new HashSet<String>();
+
+  /** The exported bytes. */
+  private long exportedBytes;
+
+  /**
+   * Adds portal site exports.
+   *
+   * @param count the number of sites
+   * @param entrySize the approximate size of each file
+   * @throws Exception the exception
+   */
+  public void addPortalSites(int count, int entrySize) throws Exception {
+    byte[] content = Payloads.newTemplateContent(entrySize).getBytes("UTF-8");
+    for (int i = 0; i < count; i++) {
+      String siteName = "site-" + i;
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ZipOutputStream zos = new ZipOutputStream(outputStream);
+      for (String entryName : SITE_ENTRIES) {
+        putEntry(zos, "portal/" + siteName + "/" + entryName, content);
+      }
+      zos.close();
+      addExport(ExtensionGenerator.SITES_PORTAL_PATH + "/" + siteName, outputStream.toByteArray());
+    }
+  }
+
+  /**
+   * Adds Content List Viewer template exports.
+   *
+   * @param count the number of templates
+   * @param entrySize the approximate size of each template
+   * @throws Exception the exception
+   */
+  public void addCLVTemplates(int count, int entrySize) throws Exception {
+    byte[] content = Payloads.newTemplateContent(entrySize).getBytes("UTF-8");
+    XStream xStream = new XStream();
+    xStream.alias("metadata", ApplicationTemplatesMetadata.class);
+    for (int i = 0; i < count; i++) {
+      String path = ExtensionGenerator.ECM_TEMPLATES_APPLICATION_CLV_PATH + "/list/template-" + i + ".gtmpl";
+      String relativePath = path.replace("/ecmadmin/", "");
+      ApplicationTemplatesMetadata metadata = new ApplicationTemplatesMetadata();
+      metadata.getTitleMap().put(relativePath, "Template " + i);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ZipOutputStream zos = new ZipOutputStream(outputStream);
+      putEntry(zos, "ecmadmin/" + relativePath, content);
+      putEntry(zos, "ecmadmin/templates/applications/metadata.xml", xStream.toXML(metadata).getBytes("UTF-8"));
+      zos.close();
+      addExport(path, outputStream.toByteArray());
+    }
+  }
+
+  /**
+   * Adds site contents exports.
+   *
+   * @param sites the number of sites
+   * @param contentsPerSite the number of contents of each site
+   * @param entrySize the approximate size of each content
+   * @throws Exception the exception
+   */
+  public void addSiteContents(int sites, int contentsPerSite, int entrySize) throws Exception {
+    byte[] content = Payloads.newTemplateContent(entrySize).getBytes("UTF-8");
+    XStream xStream = new XStream();
+    xStream.alias("metadata", SiteMetaData.class);
+    for (int i = 0; i < sites; i++) {
+      String siteName = "site-" + i;
+      String siteRoot = SiteConstants.SITE_CONTENTS_ROOT_PATH + "/" + siteName + "/";
+      SiteMetaData metadata = new SiteMetaData();
+      metadata.getOptions().put("site-name", siteName);
+      metadata.getOptions().put("site-workspace", "collaboration");
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ZipOutputStream zos = new ZipOutputStream(outputStream);
+      putEntry(zos, siteRoot + "metadata.xml", xStream.toXML(metadata).getBytes("UTF-8"));
+      for (int j = 0; j < contentsPerSite; j++) {
+        String location = "/sites/" + siteName + "/web contents/content-" + j + ".xml";
+        putEntry(zos, siteRoot + "contents/content-" + j + ".xml" + JCRNodeExportTask.JCR_DATA_SEPARATOR + location, content);
+      }
+      zos.close();
+      addExport(ExtensionGenerator.CONTENT_SITES_PATH + "/" + siteName, outputStream.toByteArray());
+    }
+  }
+
+  /**
+   * Gets the controller.
+   *
+   * @return the controller serving the exports
+   */
+  public StubManagementController getController() {
+    return controller;
+  }
+
+  /**
+   * Gets the selected resources.
+   *
+   * @return the paths of all exports
+   */
+  public Set<String> getSelectedResources() {
+    return selectedResources;
+  }
+
+  /**
+   * Gets the exported bytes.
+   *
+   * @return the size of all exports
+   */
+  public long getExportedBytes() {
+    return exportedBytes;
+  }
+
+  /**
+   * Adds an export.
+   *
+   * @param path the managed path
+   * @param archive the archive
+   */
+  private void addExport(String path, byte[] archive) {
+    controller.addExport(path, archive);
+    selectedResources.add(path);
+    exportedBytes += archive.length;
+  }
+
+  /**
+   * Puts an entry.
+   *
+   * @param zos the zip output stream
+   * @param name the entry name
+   * @param content the content
+   * @throws Exception the exception
+   */
+  private static void putEntry(ZipOutputStream zos, String name, byte[] content) throws Exception {
+    zos.putNextEntry(new ZipEntry(name));
+    zos.write(content);
+    zos.closeEntry();
+  }
+}
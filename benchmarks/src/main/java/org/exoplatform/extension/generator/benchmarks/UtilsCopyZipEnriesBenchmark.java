@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.exoplatform.extension.generator.service.api.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmarks {@link Utils#copyZipEnries} on the Maven project template and on
+ * an archive shaped like a GateIN export. Entries are compressed into a null
+ * stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class UtilsCopyZipEnriesBenchmark {
+
+  /** The Constant MAVEN_TEMPLATE. */
+  public static final String MAVEN_TEMPLATE = "maven-template";
+
+  /** The Constant EXPORTED_ARCHIVE. */
+  public static final String EXPORTED_ARCHIVE = "exported-archive";
+
+  /** The copied archive. */
+  @Param({ MAVEN_TEMPLATE, EXPORTED_ARCHIVE })
+  public String archive;
+
+  /** The archive bytes. */
+  private byte[] archiveBytes;
+
+  /**
+   * Setup.
+   *
+   * @throws Exception the exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    if (MAVEN_TEMPLATE.equals(archive)) {
+      archiveBytes = Payloads.readResource(Payloads.MAVEN_TEMPLATE_LOCATION);
+    } else {
+      // Like a medium sites export
+      archiveBytes = Payloads.newArchive(50, 16384);
+    }
+  }
+
+  /**
+   * Copy zip enries, contents are always changed by copyZipEnries.
+   *
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public void copyZipEnries() throws Exception {
+    ZipOutputStream zos = new ZipOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+    Utils.copyZipEnries(new ZipInputStream(new ByteArrayInputStream(archiveBytes)), zos, Payloads.EXTENSION_NAME, "war/src/main/webapp");
+    zos.close();
+  }
+}
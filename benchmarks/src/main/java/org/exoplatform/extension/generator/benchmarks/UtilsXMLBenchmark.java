@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.exoplatform.container.xml.Configuration;
+import org.exoplatform.extension.generator.service.api.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JiBX serialization of configurations by {@link Utils#toXML} and
+ * {@link Utils#fromXML}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class UtilsXMLBenchmark {
+
+  /** The number of scripts declared in the configuration. */
+  @Param({ "10", "500" })
+  public int scripts;
+
+  /** The configuration. */
+  private Configuration configuration;
+
+  /** The configuration XML. */
+  private byte[] configurationXML;
+
+  /**
+   * Setup.
+   *
+   * @throws Exception the exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    configuration = Payloads.newScriptsConfiguration(scripts);
+    configurationXML = Utils.toXML(configuration, Payloads.EXTENSION_NAME);
+  }
+
+  /**
+   * To XML.
+   *
+   * @return the XML
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public byte[] toXML() throws Exception {
+    return Utils.toXML(configuration, Payloads.EXTENSION_NAME);
+  }
+
+  /**
+   * From XML.
+   *
+   * @return the configuration
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public Configuration fromXML() throws Exception {
+    return Utils.fromXML(configurationXML, Configuration.class);
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.benchmarks;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.exoplatform.extension.generator.service.api.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmarks the writeZipEnry overloads of {@link Utils}, with and without
+ * replacement of the extension name in content. Entries are compressed into a
+ * null stream, so the compression cost is part of the measure as it is during
+ * a generation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class UtilsZipBenchmark {
+
+  /** The entry content size. */
+  @Param({ "4096", "262144" })
+  public int contentSize;
+
+  /** The change content. */
+  @Param({ "true", "false" })
+  public boolean changeContent;
+
+  /** The content. */
+  private String content;
+
+  /** The content bytes. */
+  private byte[] contentBytes;
+
+  /**
+   * Setup.
+   *
+   * @throws Exception the exception
+   */
+  @Setup
+  public void setup() throws Exception {
+    content = Payloads.newTemplateContent(contentSize);
+    contentBytes = content.getBytes("UTF-8");
+  }
+
+  /**
+   * Write zip enry from an input stream.
+   *
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public void writeZipEnryFromStream() throws Exception {
+    ZipOutputStream zos = new ZipOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+    Utils.writeZipEnry(zos, "WEB-INF/conf/custom-extension/scripts-configuration.xml", Payloads.EXTENSION_NAME, new ByteArrayInputStream(contentBytes), changeContent);
+    zos.close();
+  }
+
+  /**
+   * Write zip enry from a string.
+   *
+   * @throws Exception the exception
+   */
+  @Benchmark
+  public void writeZipEnryFromString() throws Exception {
+    ZipOutputStream zos = new ZipOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+    Utils.writeZipEnry(zos, "WEB-INF/conf/custom-extension/scripts-configuration.xml", Payloads.EXTENSION_NAME, content, changeContent);
+    zos.close();
+  }
+}
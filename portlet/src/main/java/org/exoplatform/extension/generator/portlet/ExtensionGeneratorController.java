@@ -27,7 +27,10 @@ import juzu.template.Template;
 
 import org.exoplatform.commons.juzu.ajax.Ajax;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationJob;
 import org.exoplatform.extension.generator.service.api.Node;
+import org.exoplatform.extension.generator.service.api.NodesPage;
+import org.exoplatform.extension.generator.service.api.ResourcesSnapshot;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 
@@ -36,10 +39,12 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.inject.Inject;
 
@@ -66,11 +71,29 @@ public class ExtensionGeneratorController {
   @Path("index.gtmpl")
   Template index;
 
-  /** The selected resources. */
-  Set<String> selectedResources = Collections.synchronizedSet(new HashSet<String>());
+  /**
+   * The selected resources, sorted to read the selection of a category as a
+   * range of paths.
+   */
+  NavigableSet<String> selectedResources = new ConcurrentSkipListSet<String>();
   
-  /** The resources. */
-  Map<String, List<Node>> resources = new HashMap<String, List<Node>>();
+  /** The ids of generations submitted in this session. */
+  Set<String> generationJobIds = Collections.synchronizedSet(new HashSet<String>());
+
+  /**
+   * The resources snapshot browsed in this session, shared with other
+   * sessions. Kept until the page is reloaded to page consistent listings.
+   */
+  volatile ResourcesSnapshot resourcesSnapshot;
+
+  /** The Constant DEFAULT_PAGE_SIZE. */
+  private static final int DEFAULT_PAGE_SIZE = 20;
+
+  /** The Constant MAX_PAGE_SIZE. */
+  private static final int MAX_PAGE_SIZE = 500;
+
+  /** The category paths. */
+  static Set<String> categoryPaths = new HashSet<String>();
 
   /** The parameters. */
   static Map<String, Object> parameters = new HashMap<String, Object>();
@@ -95,6 +118,9 @@ public class ExtensionGeneratorController {
     parameters.put("viewConfigurationPath", ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH);
     parameters.put("ideGroovyRestServicesPath", ExtensionGenerator.IDE_REST_PATH);
     parameters.put("gadgetPath", ExtensionGenerator.GADGET_PATH);
+    for (Object categoryPath : parameters.values()) {
+      categoryPaths.add((String) categoryPath);
+    }
   }
 
   /**
@@ -105,59 +131,8 @@ public class ExtensionGeneratorController {
   @View
   public Response.Content index() {
     selectedResources.clear();
-    // NODES
-    resources.put(ExtensionGenerator.SITES_PORTAL_PATH, extensionGeneratorService.getPortalSiteNodes());
-
-    List<Node> groupSites = extensionGeneratorService.getGroupSiteNodes();
-    // delete Spaces Group Sites Layout
-    Iterator<Node> groupSitesIterator = groupSites.iterator();
-    while (groupSitesIterator.hasNext()) {
-      Node groupSite = groupSitesIterator.next();
-      if(groupSite.getPath().contains("/spaces/")) {
-        groupSitesIterator.remove();
-      }
-    }
-    resources.put(ExtensionGenerator.SITES_GROUP_PATH, groupSites);
-
-    resources.put(ExtensionGenerator.SITES_USER_PATH, extensionGeneratorService.getUserSiteNodes());
-    resources.put(ExtensionGenerator.CONTENT_SITES_PATH, extensionGeneratorService.getSiteContentNodes());
-    resources.put(ExtensionGenerator.ECM_TEMPLATES_APPLICATION_CLV_PATH, extensionGeneratorService.getApplicationCLVTemplatesNodes());
-    resources.put(ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, extensionGeneratorService.getDocumentTypeTemplatesNodes());
-    resources.put(ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH, extensionGeneratorService.getMetadataTemplatesNodes());
-    resources.put(ExtensionGenerator.ECM_TAXONOMY_PATH, extensionGeneratorService.getTaxonomyNodes());
-    resources.put(ExtensionGenerator.ECM_QUERY_PATH, extensionGeneratorService.getQueryNodes());
-    resources.put(ExtensionGenerator.ECM_DRIVE_PATH, extensionGeneratorService.getDriveNodes());
-    resources.put(ExtensionGenerator.ECM_SCRIPT_PATH, extensionGeneratorService.getScriptNodes());
-    // TODO /ecmadmin/action not used for PLF 4.3+
-    //resources.put(ExtensionGenerator.ECM_ACTION_PATH, extensionGeneratorService.getActionNodeTypeNodes());
-    resources.put(ExtensionGenerator.ECM_NODETYPE_PATH, extensionGeneratorService.getNodeTypeNodes());
-    resources.put(ExtensionGenerator.REGISTRY_PATH, extensionGeneratorService.getRegistryNodes());
-    resources.put(ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH, extensionGeneratorService.getViewTemplatesNodes());
-    resources.put(ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH, extensionGeneratorService.getViewConfigurationNodes());
-    resources.put(ExtensionGenerator.IDE_REST_PATH, extensionGeneratorService.getIDEGroovyRestServices());
-    resources.put(ExtensionGenerator.GADGET_PATH, extensionGeneratorService.getGadgets());
-
-    // Set Nodes in parameters
-    parameters.put("portalSiteNodes", resources.get(ExtensionGenerator.SITES_PORTAL_PATH));
-    parameters.put("groupSiteNodes", resources.get(ExtensionGenerator.SITES_GROUP_PATH));
-    parameters.put("userSiteNodes", resources.get(ExtensionGenerator.SITES_USER_PATH));
-    parameters.put("siteContentNodes", resources.get(ExtensionGenerator.CONTENT_SITES_PATH));
-    parameters.put("applicationCLVTemplatesNodes", resources.get(ExtensionGenerator.ECM_TEMPLATES_APPLICATION_CLV_PATH));
-    parameters.put("documentTypeTemplatesNodes", resources.get(ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH));
-    parameters.put("metadataTemplatesNodes", resources.get(ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH));
-    parameters.put("taxonomyNodes", resources.get(ExtensionGenerator.ECM_TAXONOMY_PATH));
-    parameters.put("queryNodes", resources.get(ExtensionGenerator.ECM_QUERY_PATH));
-    parameters.put("driveNodes", resources.get(ExtensionGenerator.ECM_DRIVE_PATH));
-    parameters.put("scriptNodes", resources.get(ExtensionGenerator.ECM_SCRIPT_PATH));
-    // TODO /ecmadmin/action not used for PLF 4.3+
-    //parameters.put("actionNodeTypeNodes", resources.get(ExtensionGenerator.ECM_ACTION_PATH));
-    parameters.put("nodeTypeNodes", resources.get(ExtensionGenerator.ECM_NODETYPE_PATH));
-    parameters.put("registryNodes", resources.get(ExtensionGenerator.REGISTRY_PATH));
-    parameters.put("viewTemplateNodes", resources.get(ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH));
-    parameters.put("viewConfigurationNodes", resources.get(ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH));
-    parameters.put("ideGroovyRestServicesNodes", resources.get(ExtensionGenerator.IDE_REST_PATH));
-    parameters.put("gadgetNodes", resources.get(ExtensionGenerator.GADGET_PATH));
-
+    resourcesSnapshot = extensionGeneratorService.getResourcesSnapshot();
+    // Resources of categories are listed by listResources when expanded
     parameters.put("selectedResources", selectedResources);
 
     parameters.put("portalSiteSelectedNodes", getSelectedResources(ExtensionGenerator.SITES_PORTAL_PATH));
@@ -195,8 +170,8 @@ public class ExtensionGeneratorController {
   public synchronized Response.Content selectResources(String path, String checked) {
     if (checked != null && path != null && !checked.isEmpty() && !path.isEmpty()) {
       if (checked.equals("true")) {
-        if (resources.containsKey(path)) {
-          List<Node> children = resources.get(path);
+        if (categoryPaths.contains(path)) {
+          List<Node> children = getResourcesSnapshot().getNodes(path);
           for (Node node : children) {
             selectedResources.add(node.getPath());
           }
@@ -204,8 +179,8 @@ public class ExtensionGeneratorController {
           selectedResources.add(path);
         }
       } else {
-        if (resources.containsKey(path)) {
-          List<Node> children = resources.get(path);
+        if (categoryPaths.contains(path)) {
+          List<Node> children = getResourcesSnapshot().getNodes(path);
           for (Node node : children) {
             selectedResources.remove(node.getPath());
           }
@@ -239,30 +214,250 @@ public class ExtensionGeneratorController {
   }
 
   /**
-   * Export extension.
+   * Lists a page of the resources of a category, when it's expanded. The
+   * parameters and the response follow the server-side processing protocol of
+   * jquery.dataTables, each row contains the path, the text, the description
+   * and the selection state of a resource.
+   *
+   * @param path the category path
+   * @param sEcho the draw counter
+   * @param iDisplayStart the offset of the page
+   * @param iDisplayLength the size of the page
+   * @param sSearch the text filter
+   * @return the response. content with the page as JSON
+   */
+  @Ajax
+  @Resource
+  public Response.Content listResources(String path, String sEcho, String iDisplayStart, String iDisplayLength, String sSearch) {
+    if (path == null || !categoryPaths.contains(path)) {
+      return Response.content(404, "Unknown category: " + path);
+    }
+    int offset = parseInt(iDisplayStart, 0);
+    int limit = parseInt(iDisplayLength, DEFAULT_PAGE_SIZE);
+    if (limit == 0) {
+      limit = DEFAULT_PAGE_SIZE;
+    } else if (limit < 0 || limit > MAX_PAGE_SIZE) {
+      limit = MAX_PAGE_SIZE;
+    }
+    NodesPage page = getResourcesSnapshot().getNodes(path, offset, limit, sSearch);
+    // A category without sub resources is listed as itself
+    boolean leaf = page.getTotalCount() == 1 && page.getNodes().size() == 1 && page.getNodes().get(0).getPath().equals(path);
+
+    StringBuilder json = new StringBuilder();
+    json.append("{\"sEcho\":").append(parseInt(sEcho, 0));
+    json.append(",\"iTotalRecords\":").append(page.getTotalCount());
+    json.append(",\"iTotalDisplayRecords\":").append(page.getFilteredCount());
+    json.append(",\"leaf\":").append(leaf);
+    json.append(",\"aaData\":[");
+    if (!leaf) {
+      boolean first = true;
+      for (Node node : page.getNodes()) {
+        if (!first) {
+          json.append(",");
+        }
+        json.append("[\"").append(escapeJSON(node.getPath())).append("\"");
+        json.append(",\"").append(escapeJSON(node.getText() == null ? node.getPath() : node.getText())).append("\"");
+        json.append(",\"").append(escapeJSON(node.getDescription() == null ? "" : node.getDescription())).append("\"");
+        json.append(",").append(selectedResources.contains(node.getPath())).append("]");
+        first = false;
+      }
+    }
+    json.append("]}");
+    return Response.ok(json.toString()).withMimeType("application/json");
+  }
+
+  /**
+   * Export extension. The archive is sent while it is generated, by the
+   * bounded pool of generation threads.
    *
    * @param archiveType the archive type
    * @param extensionName the extension name
    * @return the response. content
    * @throws IOException Signals that an I/O exception has occurred.
    */
-  @Ajax
   @Resource
   public Response.Content exportExtension(String archiveType, String extensionName) throws IOException {
+    if (!ExtensionGenerator.ARCHIVE_TYPE_MAVEN.equals(archiveType) && !ExtensionGenerator.ARCHIVE_TYPE_PACKAGE.equals(archiveType)) {
+      log.error("Wrong ArchiveType:" + archiveType + ", for extension '" + extensionName + "'");
+      return Response.content(500, "Error occured while importing resource. See full stack trace in log file");
+    }
+    Set<String> exportedResources = new HashSet<String>(selectedResources);
+    InputStream inputStream;
     try {
-      InputStream inputStream = null;
-      if (archiveType.equals("maven")) {
-        inputStream = extensionGeneratorService.generateExtensionMavenProject(extensionName, selectedResources);
-      } else if (archiveType.equals("package")) {
-        inputStream = extensionGeneratorService.generateExtensionZip(extensionName, selectedResources);
+      inputStream = extensionGeneratorService.streamGeneration(extensionName, archiveType, exportedResources);
+    } catch (RejectedExecutionException e) {
+      log.warn("Too many extensions are being generated, generation of '" + extensionName + "' rejected.");
+      return Response.content(503, "Too many extensions are being generated, please try again later.");
+    }
+    return Response.ok(inputStream).withMimeType("application/zip").withHeader("Content-Disposition", "filename=\"" + extensionName + ".zip\"");
+  }
+
+  /**
+   * Submits the generation of the extension, to avoid holding the request
+   * while generating big selections. The progress is polled with
+   * {@link #exportStatus(String)}.
+   *
+   * @param archiveType the archive type
+   * @param extensionName the extension name
+   * @return the response. content with the job id
+   */
+  @Ajax
+  @Resource
+  public Response.Content submitExport(String archiveType, String extensionName) {
+    if (!ExtensionGenerator.ARCHIVE_TYPE_MAVEN.equals(archiveType) && !ExtensionGenerator.ARCHIVE_TYPE_PACKAGE.equals(archiveType)) {
+      log.error("Wrong ArchiveType:" + archiveType + ", for extension '" + extensionName + "'");
+      return Response.content(500, "Error occured while importing resource. See full stack trace in log file");
+    }
+    Set<String> exportedResources = new HashSet<String>(selectedResources);
+    String jobId;
+    try {
+      jobId = extensionGeneratorService.submitGeneration(extensionName, archiveType, exportedResources);
+    } catch (RejectedExecutionException e) {
+      log.warn("Too many extensions are being generated, generation of '" + extensionName + "' rejected.");
+      return Response.content(503, "Too many extensions are being generated, please try again later.");
+    }
+    generationJobIds.add(jobId);
+    return Response.ok("{\"jobId\":\"" + jobId + "\"}").withMimeType("application/json");
+  }
+
+  /**
+   * Gets the progress of a submitted generation.
+   *
+   * @param jobId the job id
+   * @return the response. content with job status as JSON
+   */
+  @Ajax
+  @Resource
+  public Response.Content exportStatus(String jobId) {
+    GenerationJob job = generationJobIds.contains(jobId) ? extensionGeneratorService.getGenerationJob(jobId) : null;
+    if (job == null) {
+      generationJobIds.remove(jobId);
+      return Response.content(404, "Unknown generation: " + jobId);
+    }
+    StringBuilder json = new StringBuilder();
+    json.append("{\"jobId\":\"").append(job.getId()).append("\"");
+    json.append(",\"status\":\"").append(job.getStatus()).append("\"");
+    json.append(",\"progress\":").append(job.getProgress());
+    json.append(",\"bytesWritten\":").append(job.getBytesWritten());
+    json.append(",\"eta\":").append(job.getEstimatedRemainingTime());
+    if (job.getErrorMessage() != null) {
+      json.append(",\"error\":\"").append(escapeJSON(job.getErrorMessage())).append("\"");
+    }
+    json.append(",\"handlers\":{");
+    boolean first = true;
+    for (Map.Entry<String, GenerationJob.HandlerStatus> handlerStatus : job.getHandlersStatus().entrySet()) {
+      if (!first) {
+        json.append(",");
+      }
+      json.append("\"").append(escapeJSON(handlerStatus.getKey())).append("\":\"").append(handlerStatus.getValue()).append("\"");
+      first = false;
+    }
+    json.append("}}");
+    return Response.ok(json.toString()).withMimeType("application/json");
+  }
+
+  /**
+   * Lists resources again, to include modifications done since the page was
+   * loaded. Exports cached since then are invalidated too. Other sessions keep
+   * their snapshot until they reload the page.
+   *
+   * @return the response. content
+   */
+  @Ajax
+  @Resource
+  public Response.Content refreshResources() {
+    extensionGeneratorService.invalidateResourcesSnapshot();
+    extensionGeneratorService.invalidateExportCache();
+    resourcesSnapshot = extensionGeneratorService.getResourcesSnapshot();
+    return Response.ok("{}").withMimeType("application/json");
+  }
+
+  /**
+   * Cancels a submitted generation, when the user cancels it or leaves the
+   * page.
+   *
+   * @param jobId the job id
+   * @return the response. content
+   */
+  @Ajax
+  @Resource
+  public Response.Content cancelExport(String jobId) {
+    if (generationJobIds.remove(jobId)) {
+      extensionGeneratorService.cancelGenerationJob(jobId);
+      extensionGeneratorService.removeGenerationJob(jobId);
+    }
+    return Response.ok("{}").withMimeType("application/json");
+  }
+
+  /**
+   * Downloads the archive of a finished generation.
+   *
+   * @param jobId the job id
+   * @return the response. content
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Resource
+  public Response.Content downloadExport(String jobId) throws IOException {
+    GenerationJob job = generationJobIds.contains(jobId) ? extensionGeneratorService.getGenerationJob(jobId) : null;
+    InputStream inputStream = job == null ? null : extensionGeneratorService.takeGenerationResult(jobId);
+    if (inputStream == null) {
+      return Response.content(404, "Generation not found or not finished: " + jobId);
+    }
+    generationJobIds.remove(jobId);
+    return Response.ok(inputStream).withMimeType("application/zip").withHeader("Content-Disposition", "filename=\"" + job.getExtensionName() + ".zip\"");
+  }
+
+  /**
+   * Gets the resources snapshot of this session.
+   *
+   * @return the resources snapshot
+   */
+  private ResourcesSnapshot getResourcesSnapshot() {
+    ResourcesSnapshot snapshot = resourcesSnapshot;
+    if (snapshot == null) {
+      snapshot = extensionGeneratorService.getResourcesSnapshot();
+      resourcesSnapshot = snapshot;
+    }
+    return snapshot;
+  }
+
+  /**
+   * Parses an integer request parameter.
+   *
+   * @param value the value
+   * @param defaultValue the default value
+   * @return the integer, or defaultValue if value is not a number
+   */
+  private static int parseInt(String value, int defaultValue) {
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Escape JSON string value.
+   *
+   * @param value the value
+   * @return the escaped value
+   */
+  private static String escapeJSON(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        escaped.append('\\').append(c);
+      } else if (c < ' ') {
+        escaped.append(String.format("\\u%04x", (int) c));
       } else {
-        throw new IllegalArgumentException("Wrong ArchiveType:" + archiveType + ", for extension '" + extensionName + "'");
+        escaped.append(c);
       }
-      return Response.ok(inputStream).withMimeType("application/zip").withHeader("Content-Disposition", "filename=\"" + extensionName + ".zip\"");
-    } catch (Exception e) {
-      log.error("Error while generating Archive file, ", e);
-      return Response.content(500, "Error occured while importing resource. See full stack trace in log file");
     }
+    return escaped.toString();
   }
 
   /**
@@ -275,7 +470,7 @@ public class ExtensionGeneratorController {
     Set<String> resources = extensionGeneratorService.filterSelectedResources(selectedResources, parentPath);
     Set<String> selectedResources = new HashSet<String>();
     for (String resource : resources) {
-      resource = resource.replace(parentPath, "");
+      resource = resource.substring(parentPath.length());
       if (resource.startsWith("/")) {
         resource = resource.substring(1);
       }
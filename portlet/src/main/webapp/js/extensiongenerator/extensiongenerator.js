@@ -8,6 +8,7 @@
 	$('.title-commands #expandAllTree').on("click", function() {
 		$('.uiTreeExplorer .tree-checkbox').each(function() {
 			this.checked = true;
+			$(this).trigger("change");
 		});
 	});
 	$('.title-commands #collapseAllTree').on("click", function() {
@@ -30,25 +31,102 @@
 						});
 			});
 
-	$(document).ready(function() {
-		$('.tree_datatable').each(function() {
-			$(this).dataTable({
-				"bSort" : false,
-				"aaSorting" : [],
-				"aoColumns" : [ {
-					"bSortable" : false
-				} ],
-				"bFilter" : true,
-				"bPaginate" : false,
-				"bInfo" : false,
-				"sScrollY" : 252,
-				"oLanguage" : {
-					"sSearch" : "",
-					"oSearch" : false
-				}
-			});
+	// Resources of a category are loaded when it's expanded, then paged and
+	// filtered by the server
+	var loadedCategories = {};
+	$('#extension-genrator-portlet').on("change", ".tree-checkbox", function() {
+		var path = this.id.substring("tree_".length);
+		if (!this.checked || loadedCategories[path]) {
+			return;
+		}
+		loadedCategories[path] = $(this).closest('.node').find('.tree_datatable')[0];
+		loadCategory(loadedCategories[path], path);
+	});
+	// Lists resources again, expanded categories are redrawn from the new
+	// snapshot
+	$('.title-commands #refreshTree').on("click", function() {
+		$('#exportImportForm').jzAjax("ExtensionGeneratorController.refreshResources()", {
+			dataType : "json",
+			cache : false,
+			success : function() {
+				$.each(loadedCategories, function(path, table) {
+					if ($.contains(document, table)) {
+						$(table).dataTable().fnDraw();
+					}
+				});
+			}
 		});
+		return false;
 	});
+	function loadCategory(table, path) {
+		$(table).dataTable({
+			"bSort" : false,
+			"aaSorting" : [],
+			"aoColumns" : [ {
+				"bSortable" : false,
+				"mRender" : renderResource
+			} ],
+			"bFilter" : true,
+			"bPaginate" : true,
+			"bLengthChange" : false,
+			"iDisplayLength" : 20,
+			"bInfo" : false,
+			"bServerSide" : true,
+			"fnServerData" : function(sSource, aoData, fnCallback) {
+				var params = {
+					"path" : path
+				};
+				$.each(aoData, function(index, param) {
+					params[param.name] = param.value;
+				});
+				$('#exportImportForm').jzAjax("ExtensionGeneratorController.listResources()", {
+					data : params,
+					dataType : "json",
+					cache : false,
+					success : function(json) {
+						if (json.leaf) {
+							setLeafCategory(table, path);
+						} else {
+							fnCallback(json);
+						}
+					}
+				});
+			},
+			"fnCreatedRow" : function(nRow) {
+				$(nRow).addClass("rowTable gradeA");
+				$('td', nRow).addClass("gradeA");
+			},
+			"sScrollY" : 252,
+			"oLanguage" : {
+				"sSearch" : "",
+				"oSearch" : false
+			}
+		});
+	}
+	function renderResource(data, type, row) {
+		var path = escapeHTML(row[0]);
+		var description = escapeHTML(row[2]);
+		var content = "<span class='uiCheckbox '>";
+		content += "<input type='checkbox' class='list-checkbox leaf' name='selectedResources' id='" + path + "' value='" + path + "'" + (row[3] ? " checked='checked'" : "") + ">";
+		content += "<span></span>";
+		content += "</span>";
+		content += "<a data-placement='bottom' rel='tooltip'>";
+		content += "<i class='uiIconFileMini uiIconLightgray' title='" + description + "'></i>";
+		content += "<label title='" + description + "' class='leaf nodeName Clickable' for='" + path + "'>" + escapeHTML(row[1]) + "</label>";
+		content += "</a>";
+		return content;
+	}
+	// A category without sub resources is selected as a whole
+	function setLeafCategory(table, path) {
+		var node = $(table).closest('.nodeGroup').closest('.node');
+		node.children('.tree-checkbox').remove();
+		node.children('.expandIcon').removeClass('expandIcon').addClass('emptyIcon');
+		node.find('label.nodeName').first().attr("for", path);
+		node.children('.nodeGroup').remove();
+	}
+	function escapeHTML(value) {
+		return String(value).replace(/&/g, "&amp;").replace(/</g, "&lt;").replace(/>/g, "&gt;").replace(/'/g, "&#39;").replace(/"/g, "&quot;");
+	}
 	function fireCheckBoxChange(obj) {
 		if (!obj || !obj.id) {
 			obj = this;
@@ -99,22 +177,137 @@
 					"checked" : checked
 				});
 	}
-	$('#extension-genrator-portlet .list-checkbox').on("change",
+	$('#extension-genrator-portlet').on("change", ".list-checkbox",
 			fireCheckBoxChange);
-	window.exportProject = function() {
+	var currentExportJobId = null;
+	function getExtensionName() {
 		var extensionNameValue = $('#extensionName').val();
-		var archiveTypeValue = $('.archiveTypeContainer input:radio[name=archiveType]:checked').val();
 		if(!extensionNameValue || extensionNameValue == "") {
 			$('#extensionName').css("border-color", "red");
-			return;
+			return null;
 		}
 		var re = /[a-z|A-Z]*[-|_]*[a-z|A-Z]*/;
 		var match = extensionNameValue.match(re);
 		if (match == null || match[0] != extensionNameValue) {
 			$('#extensionName').css("border-color", "red");
-			return;
+			return null;
 		}
 		$('#extensionName').removeAttr("style");
+		return extensionNameValue;
+	}
+	window.exportProject = function() {
+		var extensionNameValue = getExtensionName();
+		if (!extensionNameValue) {
+			return;
+		}
+		var archiveTypeValue = $('.archiveTypeContainer input:radio[name=archiveType]:checked').val();
+		// The archive is downloaded while it is generated
 		window.location.href = $('#exportImportForm').jzURL('ExtensionGeneratorController.exportExtension') + "&extensionName=" + extensionNameValue + "&archiveType=" + archiveTypeValue;
 	}
+	window.submitProject = function() {
+		var extensionNameValue = getExtensionName();
+		if (!extensionNameValue) {
+			return;
+		}
+		var archiveTypeValue = $('.archiveTypeContainer input:radio[name=archiveType]:checked').val();
+		// Generation runs in background, poll its progress then download it
+		$('#generatorContent button[name=submitExport]').attr("disabled", "disabled");
+		showExportProgress(0, "Waiting for generation to start...");
+		$('#exportImportForm').jzAjax("ExtensionGeneratorController.submitExport()", {
+			data : {
+				"extensionName" : extensionNameValue,
+				"archiveType" : archiveTypeValue
+			},
+			dataType : "json",
+			success : function(data) {
+				currentExportJobId = data.jobId;
+				pollExportStatus(data.jobId);
+			},
+			error : function(xhr) {
+				exportFinished("Error while submitting generation: " + xhr.responseText);
+			}
+		});
+	}
+	window.cancelExport = function() {
+		if (currentExportJobId) {
+			cancelExportJob(currentExportJobId, true);
+		}
+		exportFinished("Generation cancelled.");
+	}
+	function cancelExportJob(jobId, async) {
+		currentExportJobId = null;
+		$('#exportImportForm').jzAjax("ExtensionGeneratorController.cancelExport()", {
+			data : {
+				"jobId" : jobId
+			},
+			async : async
+		});
+	}
+	// Don't let the server generate an archive nobody will download
+	$(window).on("beforeunload", function() {
+		if (currentExportJobId) {
+			cancelExportJob(currentExportJobId, false);
+		}
+	});
+	function pollExportStatus(jobId) {
+		if (jobId != currentExportJobId) {
+			return;
+		}
+		$('#exportImportForm').jzAjax("ExtensionGeneratorController.exportStatus()", {
+			data : {
+				"jobId" : jobId
+			},
+			dataType : "json",
+			cache : false,
+			success : function(job) {
+				if (jobId != currentExportJobId) {
+					return;
+				}
+				if (job.status == "DONE") {
+					currentExportJobId = null;
+					showExportProgress(100, "Generated, downloading...");
+					exportFinished();
+					window.location.href = $('#exportImportForm').jzURL('ExtensionGeneratorController.downloadExport') + "&jobId=" + job.jobId;
+				} else if (job.status == "FAILED" || job.status == "CANCELLED") {
+					currentExportJobId = null;
+					exportFinished("Generation " + job.status.toLowerCase() + ": " + job.error);
+				} else {
+					var statusText = job.status == "QUEUED" ? "Waiting for generation to start..." : "Generating: " + formatBytes(job.bytesWritten) + " written";
+					if (job.eta >= 0) {
+						statusText += ", about " + Math.ceil(job.eta / 1000) + "s remaining";
+					}
+					showExportProgress(job.progress, statusText);
+					setTimeout(function() {
+						pollExportStatus(jobId);
+					}, 1000);
+				}
+			},
+			error : function(xhr) {
+				currentExportJobId = null;
+				exportFinished("Error while generating: " + xhr.responseText);
+			}
+		});
+	}
+	function showExportProgress(progress, statusText) {
+		$('#exportProgress').show();
+		$('#exportProgress .bar').css("width", progress + "%");
+		$('#exportProgress .exportProgressStatus').text(statusText);
+	}
+	function exportFinished(errorText) {
+		$('#generatorContent button[name=submitExport]').removeAttr("disabled");
+		if (errorText) {
+			$('#exportProgress .bar').css("width", "0%");
+			$('#exportProgress .exportProgressStatus').text(errorText);
+		} else {
+			$('#exportProgress').hide();
+		}
+	}
+	function formatBytes(bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		} else if (bytes < 1024 * 1024) {
+			return (bytes / 1024).toFixed(1) + " KB";
+		}
+		return (bytes / (1024 * 1024)).toFixed(1) + " MB";
+	}
 })($);
\ No newline at end of file
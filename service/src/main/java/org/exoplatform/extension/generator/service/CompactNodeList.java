@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service;
+
+import org.exoplatform.extension.generator.service.api.Node;
+import org.exoplatform.extension.generator.service.api.NodesPage;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of the resources of a category, stored in arrays. The path
+ * prefix shared by all resources is kept once, interned, and only the path
+ * suffixes are stored; a suffix equal to the text of its resource is the same
+ * String. Equal descriptions are stored once. Nodes are created on access.
+ */
+final class CompactNodeList extends AbstractList<Node> implements RandomAccess {
+
+  /** The path prefix of all resources. */
+  private final String pathPrefix;
+
+  /** The path suffixes. */
+  private final String[] pathSuffixes;
+
+  /** The texts. */
+  private final String[] texts;
+
+  /** The descriptions. */
+  private final String[] descriptions;
+
+  /**
+   * Instantiates a new compact node list.
+   *
+   * @param pathPrefix the path prefix
+   * @param pathSuffixes the path suffixes
+   * @param texts the texts
+   * @param descriptions the descriptions
+   */
+  private CompactNodeList(String pathPrefix, String[] pathSuffixes, String[] texts, String[] descriptions) {
+    this.pathPrefix = pathPrefix;
+    this.pathSuffixes = pathSuffixes;
+    this.texts = texts;
+    this.descriptions = descriptions;
+  }
+
+  /**
+   * Copies nodes in a compact list.
+   *
+   * @param nodes the nodes
+   * @return the compact node list
+   */
+  public static CompactNodeList of(List<Node> nodes) {
+    String pathPrefix = getPathPrefix(nodes);
+    String[] pathSuffixes = new String[nodes.size()];
+    String[] texts = new String[nodes.size()];
+    String[] descriptions = new String[nodes.size()];
+    Map<String, String> sharedDescriptions = new HashMap<String, String>();
+    for (int i = 0; i < nodes.size(); i++) {
+      Node node = nodes.get(i);
+      String pathSuffix = node.getPath().substring(pathPrefix.length());
+      texts[i] = node.getText();
+      pathSuffixes[i] = pathSuffix.equals(node.getText()) ? node.getText() : pathSuffix;
+      String description = node.getDescription();
+      if (description != null) {
+        String sharedDescription = sharedDescriptions.get(description);
+        if (sharedDescription == null) {
+          sharedDescriptions.put(description, description);
+        } else {
+          description = sharedDescription;
+        }
+      }
+      descriptions[i] = description;
+    }
+    return new CompactNodeList(pathPrefix.intern(), pathSuffixes, texts, descriptions);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Node get(int index) {
+    return new Node(texts[index], descriptions[index], getPath(index));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int size() {
+    return texts.length;
+  }
+
+  /**
+   * Gets the path of a resource.
+   *
+   * @param index the index
+   * @return the path
+   */
+  public String getPath(int index) {
+    return pathPrefix.concat(pathSuffixes[index]);
+  }
+
+  /**
+   * Gets a page of the resources whose text or path contains a filter,
+   * ignoring case. Only the nodes of the page are created.
+   *
+   * @param offset the offset of the first resource of the page
+   * @param limit the maximum number of resources, negative for no limit
+   * @param filter the filter, null or empty to match all resources
+   * @return the page
+   */
+  public NodesPage getPage(int offset, int limit, String filter) {
+    offset = Math.max(0, offset);
+    int end = limit < 0 || limit > Integer.MAX_VALUE - offset ? Integer.MAX_VALUE : offset + limit;
+    String text = filter == null ? "" : filter.trim();
+    // All paths match when the shared prefix does
+    boolean matchAll = text.isEmpty() || containsIgnoreCase(pathPrefix, text);
+    List<Node> pageNodes = new ArrayList<Node>();
+    int filteredCount = 0;
+    for (int i = 0; i < texts.length; i++) {
+      if (!matchAll && !containsIgnoreCase(texts[i], text) && !pathContainsIgnoreCase(i, text)) {
+        continue;
+      }
+      if (filteredCount >= offset && filteredCount < end) {
+        pageNodes.add(get(i));
+      }
+      filteredCount++;
+    }
+    return new NodesPage(Collections.unmodifiableList(pageNodes), offset, filteredCount, texts.length);
+  }
+
+  /**
+   * Checks if the path of a resource contains a text, ignoring case, when the
+   * path prefix doesn't.
+   *
+   * @param index the index
+   * @param text the text
+   * @return true, if successful
+   */
+  private boolean pathContainsIgnoreCase(int index, String text) {
+    String pathSuffix = pathSuffixes[index];
+    if (containsIgnoreCase(pathSuffix, text)) {
+      return true;
+    }
+    // The text can start in the prefix and end in the suffix
+    int start = Math.max(0, pathPrefix.length() - text.length() + 1);
+    for (int i = start; i < pathPrefix.length(); i++) {
+      int prefixLength = pathPrefix.length() - i;
+      if (text.length() - prefixLength <= pathSuffix.length() && pathPrefix.regionMatches(true, i, text, 0, prefixLength)
+          && pathSuffix.regionMatches(true, 0, text, prefixLength, text.length() - prefixLength)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if a value contains a text, ignoring case.
+   *
+   * @param value the value, can be null
+   * @param text the text
+   * @return true, if successful
+   */
+  private static boolean containsIgnoreCase(String value, String text) {
+    if (value == null) {
+      return false;
+    }
+    for (int i = 0; i <= value.length() - text.length(); i++) {
+      if (value.regionMatches(true, i, text, 0, text.length())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the path prefix shared by nodes, up to the last path separator.
+   *
+   * @param nodes the nodes
+   * @return the path prefix
+   */
+  private static String getPathPrefix(List<Node> nodes) {
+    if (nodes.isEmpty()) {
+      return "";
+    }
+    String firstPath = nodes.get(0).getPath();
+    int length = firstPath.length();
+    for (Node node : nodes) {
+      String path = node.getPath();
+      length = Math.min(length, path.length());
+      for (int i = 0; i < length; i++) {
+        if (path.charAt(i) != firstPath.charAt(i)) {
+          length = i;
+          break;
+        }
+      }
+    }
+    while (length > 0 && firstPath.charAt(length - 1) != '/' && firstPath.charAt(length - 1) != ':') {
+      length--;
+    }
+    return firstPath.substring(0, length);
+  }
+}
@@ -19,8 +19,11 @@
 package org.exoplatform.extension.generator.service;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.exoplatform.application.gadget.Gadget;
 import org.exoplatform.application.gadget.GadgetRegistryService;
+import org.exoplatform.container.ExoContainer;
+import org.exoplatform.container.ExoContainerContext;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.container.configuration.ConfigurationManager;
 import org.exoplatform.container.xml.Component;
@@ -28,10 +31,29 @@ import org.exoplatform.container.xml.ComponentPlugin;
 import org.exoplatform.container.xml.Configuration;
 import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.PropertiesParam;
+import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.CancellationToken;
+import org.exoplatform.extension.generator.service.api.CompressionPolicy;
 import org.exoplatform.extension.generator.service.api.ConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.ExportCache;
+import org.exoplatform.extension.generator.service.api.ExportDigest;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.ExtensionManifest;
+import org.exoplatform.extension.generator.service.api.ExtensionZipOutputStream;
+import org.exoplatform.extension.generator.service.api.GenerationCancelledException;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.GenerationJob;
+import org.exoplatform.extension.generator.service.api.GenerationMetrics;
+import org.exoplatform.extension.generator.service.api.HandlerManifest;
 import org.exoplatform.extension.generator.service.api.Node;
+import org.exoplatform.extension.generator.service.api.NodesPage;
+import org.exoplatform.extension.generator.service.api.OperationMetrics;
+import org.exoplatform.extension.generator.service.api.PipedArchiveInputStream;
+import org.exoplatform.extension.generator.service.api.PrefixedZipOutputStream;
+import org.exoplatform.extension.generator.service.api.ResourcesSnapshot;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
+import org.exoplatform.extension.generator.service.api.XStreamRegistry;
 import org.exoplatform.extension.generator.service.handler.ApplicationRegistryConfigurationHandler;
 import org.exoplatform.extension.generator.service.handler.CLVTemplatesConfigurationHandler;
 import org.exoplatform.extension.generator.service.handler.DrivesConfigurationHandler;
@@ -62,8 +84,9 @@ import org.gatein.management.api.controller.ManagementController;
 import org.gatein.management.api.operation.OperationNames;
 import org.gatein.management.api.operation.model.ReadResourceModel;
 import org.picocontainer.ComponentAdapter;
+import org.picocontainer.Startable;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -71,15 +94,46 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
-import java.util.Vector;
-import java.util.zip.ZipInputStream;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 import javax.inject.Singleton;
@@ -89,17 +143,79 @@ import javax.ws.rs.core.Response;
  * The Class ExtensionGeneratorImpl.
  */
 @Singleton
-public class ExtensionGeneratorImpl implements ExtensionGenerator {
+public class ExtensionGeneratorImpl implements ExtensionGenerator, Startable {
   
   /** The Constant WEB_XML_LOCATION. */
   private static final String WEB_XML_LOCATION = "WEB-INF/web.xml";
   
-  /** The Constant WEB_XML_TEMPLATE_LOCATION. */
-  private static final String WEB_XML_TEMPLATE_LOCATION = "generator/template/web.xml";
-  
   /** The Constant CONFIGURATION_XML_LOCATION. */
   private static final String CONFIGURATION_XML_LOCATION = "WEB-INF/conf/configuration.xml";
 
+  /** The Constant HANDLERS_THREADS_PROPERTY. */
+  public static final String HANDLERS_THREADS_PROPERTY = "exo.extension.generator.handlers.threads";
+
+  /** The Constant HANDLERS_QUEUE_SIZE_PROPERTY. */
+  public static final String HANDLERS_QUEUE_SIZE_PROPERTY = "exo.extension.generator.handlers.queueSize";
+
+  /** System property: number of threads running submitted generations. */
+  public static final String JOBS_THREADS_PROPERTY = "exo.extension.generator.jobs.threads";
+
+  /** System property: number of submitted generations waiting for a thread. */
+  public static final String JOBS_QUEUE_SIZE_PROPERTY = "exo.extension.generator.jobs.queueSize";
+
+  /**
+   * System property: delay in seconds to keep finished generations not
+   * downloaded.
+   */
+  public static final String JOBS_RETENTION_PROPERTY = "exo.extension.generator.jobs.retention";
+
+  /** System property: timeout in seconds of each handler, 0 for none. */
+  public static final String HANDLERS_TIMEOUT_PROPERTY = "exo.extension.generator.handlers.timeout";
+
+  /** System property: timeout in seconds of a whole generation, 0 for none. */
+  public static final String TIMEOUT_PROPERTY = "exo.extension.generator.timeout";
+
+  /**
+   * System property: delay in seconds after which a running or queued job
+   * which isn't polled anymore is cancelled, 0 to never cancel.
+   */
+  public static final String JOBS_ABANDON_TIMEOUT_PROPERTY = "exo.extension.generator.jobs.abandonTimeout";
+
+  /**
+   * System property: number of rendered activation JARs kept, by extension
+   * name, 0 to disable the cache.
+   */
+  public static final String ACTIVATION_JARS_CACHE_SIZE_PROPERTY = "exo.extension.generator.activationJars.cacheSize";
+
+  /**
+   * System property: time to live in seconds of the resources snapshot, 0 to
+   * create a new snapshot on each call.
+   */
+  public static final String RESOURCES_SNAPSHOT_TTL_PROPERTY = "exo.extension.generator.resources.ttl";
+
+  /** The Constant RESOURCES_THREADS_PROPERTY. */
+  public static final String RESOURCES_THREADS_PROPERTY = "exo.extension.generator.resources.threads";
+
+  /**
+   * The categories of the resources snapshot, actions are left out like their
+   * handler.
+   */
+  private static final String[] RESOURCES_CATEGORIES = new String[] { SITES_PORTAL_PATH, SITES_GROUP_PATH, SITES_USER_PATH, CONTENT_SITES_PATH,
+      ECM_TEMPLATES_APPLICATION_CLV_PATH, ECM_TEMPLATES_DOCUMENT_TYPE_PATH, ECM_TEMPLATES_METADATA_PATH, ECM_TAXONOMY_PATH, ECM_QUERY_PATH, ECM_DRIVE_PATH,
+      ECM_SCRIPT_PATH, ECM_NODETYPE_PATH, REGISTRY_PATH, ECM_VIEW_TEMPLATES_PATH, ECM_VIEW_CONFIGURATION_PATH, IDE_REST_PATH, GADGET_PATH };
+
+  /** The name prefix of group sites of spaces. */
+  private static final String SPACES_GROUP_PREFIX = "spaces/";
+
+  /** The period in milliseconds of cancellation checks while waiting. */
+  private static final long CANCELLATION_CHECK_PERIOD = 500;
+
+  /** The levels of READ_RESOURCE listings digested in change markers. */
+  private static final int CHANGE_MARKER_DEPTH = 2;
+
+  /** The Constant UTF_8. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   /** The Constant log. */
   private static final Log log = ExoLogger.getLogger(ExtensionGeneratorImpl.class);
 
@@ -107,12 +223,168 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
   private ManagementController managementController = null;
 
   /** The handlers. */
-  private List<ConfigurationHandler> handlers = new ArrayList<ConfigurationHandler>();
+  private final List<ConfigurationHandler> handlers = new ArrayList<ConfigurationHandler>();
+
+  /** The handlers ids used in extension manifests, in handlers order. */
+  private List<String> handlerIds = new ArrayList<String>();
+
+  /**
+   * Number of handlers executed concurrently while generating a WAR. A value
+   * lower or equal to 1 keeps the sequential execution.
+   */
+  private int handlersThreads = Integer.getInteger(HANDLERS_THREADS_PROPERTY, 1);
+
+  /** The handlers queue size. */
+  private int handlersQueueSize = Integer.getInteger(HANDLERS_QUEUE_SIZE_PROPERTY, 64);
+
+  /** The compression policy of generated archives. */
+  private CompressionPolicy compressionPolicy = CompressionPolicy.fromSystemProperties();
+
+  /** The handlers executor, lazily created when parallel mode is enabled. */
+  private ExecutorService handlersExecutor = null;
+
+  /** The number of threads running submitted generations. */
+  private int jobsThreads = Integer.getInteger(JOBS_THREADS_PROPERTY, 2);
+
+  /** The number of submitted generations waiting for a thread. */
+  private int jobsQueueSize = Integer.getInteger(JOBS_QUEUE_SIZE_PROPERTY, 8);
+
+  /** The retention of finished generations, in milliseconds. */
+  private long jobsRetention = Long.getLong(JOBS_RETENTION_PROPERTY, 3600) * 1000;
+
+  /** The timeout of each handler, in milliseconds. */
+  private long handlersTimeout = Long.getLong(HANDLERS_TIMEOUT_PROPERTY, 0) * 1000;
+
+  /** The timeout of a whole generation, in milliseconds. */
+  private long generationTimeout = Long.getLong(TIMEOUT_PROPERTY, 0) * 1000;
+
+  /** The delay after which a job not polled anymore is cancelled. */
+  private long jobsAbandonTimeout = Long.getLong(JOBS_ABANDON_TIMEOUT_PROPERTY, 120) * 1000;
+
+  /**
+   * The watchdog enforcing timeouts and purging jobs, lazily created.
+   */
+  private ScheduledExecutorService watchdog = null;
+
+  /** The jobs executor, lazily created on first submitted generation. */
+  private ExecutorService jobsExecutor = null;
+
+  /** The submitted generations, by id. */
+  private Map<String, GenerationJob> jobs = new ConcurrentHashMap<String, GenerationJob>();
+
+  /** The cancellation tokens of streamed generations. */
+  private Set<CancellationToken> streamedGenerations = Collections.newSetFromMap(new ConcurrentHashMap<CancellationToken, Boolean>());
+
+  /** The templates of generated archives, loaded once. */
+  private final TemplateAssets templateAssets;
+
+  /** The number of rendered activation JARs kept. */
+  private final int activationJarsCacheSize = Integer.getInteger(ACTIVATION_JARS_CACHE_SIZE_PROPERTY, 16);
+
+  /** The rendered activation JARs by extension name, in access order. */
+  private final LinkedHashMap<String, byte[]> activationJars = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+  /** The time to live of the resources snapshot, in milliseconds. */
+  private long resourcesSnapshotTTL = Long.getLong(RESOURCES_SNAPSHOT_TTL_PROPERTY, 60) * 1000;
+
+  /** The number of threads fetching listings of the resources snapshot. */
+  private int resourcesThreads = Integer.getInteger(RESOURCES_THREADS_PROPERTY, 4);
+
+  /** The resources snapshot, null when not created yet or invalidated. */
+  private volatile CatalogueSnapshot resourcesSnapshot = null;
+
+  /** The version of the last created resources snapshot. */
+  private final AtomicLong resourcesSnapshotVersion = new AtomicLong();
+
+  /** The lock held while replacing the resources snapshot. */
+  private final Object resourcesSnapshotLock = new Object();
+
+  /** The listings executor, lazily created. */
+  private ExecutorService resourcesExecutor = null;
 
   /**
    * Instantiates a new extension generator impl.
    */
   public ExtensionGeneratorImpl() {
+    this(null, getDefaultHandlers());
+  }
+
+  /**
+   * Instantiates a new extension generator impl running given handlers, with
+   * exports done by a given management controller. Used to generate
+   * extensions outside of the platform, by benchmarks.
+   *
+   * @param managementController the management controller, null to use the
+   *          one of the portal container
+   * @param configurationHandlers the configuration handlers
+   */
+  public ExtensionGeneratorImpl(ManagementController managementController, List<ConfigurationHandler> configurationHandlers) {
+    this.managementController = managementController;
+    handlers.addAll(configurationHandlers);
+    try {
+      templateAssets = TemplateAssets.load(getClass().getClassLoader());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load extension templates", e);
+    }
+    XStreamRegistry.warmUp();
+
+    Map<String, Integer> handlerClassOccurrences = new HashMap<String, Integer>();
+    for (ConfigurationHandler configurationHandler : handlers) {
+      if (managementController != null && configurationHandler instanceof AbstractConfigurationHandler) {
+        ((AbstractConfigurationHandler) configurationHandler).setManagementController(managementController);
+      }
+      String handlerId = configurationHandler.getClass().getSimpleName();
+      Integer occurrence = handlerClassOccurrences.get(handlerId);
+      occurrence = occurrence == null ? 1 : occurrence + 1;
+      handlerClassOccurrences.put(handlerId, occurrence);
+      handlerIds.add(occurrence == 1 ? handlerId : handlerId + "#" + occurrence);
+    }
+  }
+
+  /**
+   * Registers the generation metrics MBean.
+   */
+  @Override
+  public void start() {
+    GenerationMetrics.getInstance().register();
+  }
+
+  /**
+   * Cancels running generations, stops the generator threads and unregisters
+   * the generation metrics MBean, so that the classes of an undeployed webapp
+   * aren't referenced anymore.
+   */
+  @Override
+  public void stop() {
+    for (GenerationJob job : jobs.values()) {
+      if (!job.isFinished()) {
+        job.cancel("Service stopped");
+      }
+    }
+    for (CancellationToken cancellationToken : streamedGenerations) {
+      cancellationToken.cancel("Service stopped");
+    }
+    synchronized (this) {
+      shutdown(watchdog);
+      watchdog = null;
+      shutdown(jobsExecutor);
+      jobsExecutor = null;
+      shutdown(handlersExecutor);
+      handlersExecutor = null;
+      shutdown(resourcesExecutor);
+      resourcesExecutor = null;
+    }
+    StreamedExport.shutdown();
+    GenerationMetrics.getInstance().unregister();
+  }
+
+  /**
+   * Gets the handlers of resources managed by the generator.
+   *
+   * @return the default handlers
+   */
+  private static List<ConfigurationHandler> getDefaultHandlers() {
+    List<ConfigurationHandler> handlers = new ArrayList<ConfigurationHandler>();
     // TODO /ecmadmin/action not used for PLF 4.3+
     //handlers.add(new ActionNodeTypeConfigurationHandler());
     handlers.add(new NodeTypeConfigurationHandler());
@@ -132,6 +404,7 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
     handlers.add(new SiteExplorerViewConfigurationHandler());
     handlers.add(new RESTServicesFromIDEConfigurationHandler());
     handlers.add(new GadgetsConfigurationHandler());
+    return handlers;
   }
 
   /**
@@ -147,7 +420,15 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
    */
   @Override
   public List<Node> getGroupSiteNodes() {
-    return getNodes(SITES_GROUP_PATH);
+    return getNodes(SITES_GROUP_PATH, false);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<Node> getGroupSiteNodes(boolean excludeSpaces) {
+    return getNodes(SITES_GROUP_PATH, excludeSpaces);
   }
 
   /**
@@ -329,6 +610,61 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
     return nodes;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ResourcesSnapshot getResourcesSnapshot() {
+    if (resourcesSnapshotTTL <= 0) {
+      return new CatalogueSnapshot(resourcesSnapshotVersion.incrementAndGet());
+    }
+    CatalogueSnapshot snapshot = resourcesSnapshot;
+    if (snapshot != null && !snapshot.isExpired(resourcesSnapshotTTL)) {
+      return snapshot;
+    }
+    synchronized (resourcesSnapshotLock) {
+      snapshot = resourcesSnapshot;
+      if (snapshot == null || snapshot.isExpired(resourcesSnapshotTTL)) {
+        snapshot = new CatalogueSnapshot(resourcesSnapshotVersion.incrementAndGet());
+        resourcesSnapshot = snapshot;
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public NodesPage getNodes(String categoryPath, int offset, int limit, String filter) {
+    return getResourcesSnapshot().getNodes(categoryPath, offset, limit, filter);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateResourcesSnapshot() {
+    // Users browsing the previous snapshot keep it until they reload
+    resourcesSnapshot = null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateExportCache(String path) {
+    ExportCache.getInstance().invalidate(path);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateExportCache() {
+    ExportCache.getInstance().invalidateAll();
+  }
+
   /**
    * {@inheritDoc}
    * 
@@ -336,14 +672,78 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
   @Override
   public InputStream generateExtensionZip(String extensionName, Set<String> selectedResources) throws Exception {
     File file = File.createTempFile("CustomExtension", ".zip");
-    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+    OutputStream outputStream = new FileOutputStream(file);
+    try {
+      generateExtensionZip(extensionName, selectedResources, outputStream);
+    } finally {
+      outputStream.close();
+    }
+    GenerationMetrics.getInstance().tempFileCreated(file.length());
+    return new ClosableFileInputStream(file);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   */
+  @Override
+  public void generateExtensionZip(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception {
+    generateExtensionZip(extensionName, selectedResources, null, outputStream);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   */
+  @Override
+  public void generateExtensionZip(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception {
+    generateArchive(ARCHIVE_TYPE_PACKAGE, extensionName, selectedResources, previousArchive, outputStream, null);
+  }
 
-    // Put WAR file
-    Utils.writeZipEnry(zos, "webapps/" + extensionName + ".war", extensionName, generateWARExtension(extensionName, selectedResources), false);
+  /**
+   * Generate extension zip.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previous archive
+   * @param outputStream the output stream
+   * @param job the job tracking progress, null if not submitted
+   * @throws Exception the exception
+   */
+  private void generateExtensionZip(String extensionName,
+                                    Set<String> selectedResources,
+                                    File previousArchive,
+                                    OutputStream outputStream,
+                                    GenerationJob job) throws Exception {
+    ZipOutputStream zos = new ZipOutputStream(outputStream);
+
+    // Put WAR file: spooled on disk to compute its CRC, then written STORED
+    // since it's already compressed
+    File warFile = File.createTempFile(extensionName, ".war");
+    try {
+      CheckedOutputStream warOutputStream = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(warFile)), new CRC32());
+      try {
+        generateWARExtension(extensionName, selectedResources, previousArchive, warOutputStream, job);
+      } finally {
+        warOutputStream.close();
+      }
+      GenerationMetrics.getInstance().tempFileCreated(warFile.length());
+      InputStream warInputStream = new FileInputStream(warFile);
+      try {
+        Utils.writeStoredZipEnry(zos, "webapps/" + extensionName + ".war", warInputStream, warFile.length(), warOutputStream.getChecksum().getValue());
+      } finally {
+        warInputStream.close();
+      }
+    } finally {
+      if (warFile.exists()) {
+        GenerationMetrics.getInstance().tempFileDeleted(warFile.length());
+      }
+      FileUtils.deleteQuietly(warFile);
+    }
     // Put JAR file
-    Utils.writeZipEnry(zos, "lib/" + extensionName + "-config.jar", extensionName, generateActiovationJar(extensionName), false);
-    zos.close();
-    return new ClosableFileInputStream(file);
+    Utils.writeStoredZipEnry(zos, "lib/" + extensionName + "-config.jar", generateActiovationJar(extensionName));
+    zos.finish();
+    zos.flush();
   }
 
   /**
@@ -354,22 +754,67 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
   public InputStream generateExtensionMavenProject(String extensionName, Set<String> selectedResources) throws Exception {
     File zipFile = File.createTempFile("Maven-CustomExtension", ".zip");
     zipFile.deleteOnExit();
-    ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zipFile));
+    OutputStream outputStream = new FileOutputStream(zipFile);
+    try {
+      generateExtensionMavenProject(extensionName, selectedResources, outputStream);
+    } finally {
+      outputStream.close();
+    }
+    GenerationMetrics.getInstance().tempFileCreated(zipFile.length());
+    return new ClosableFileInputStream(zipFile);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   */
+  @Override
+  public void generateExtensionMavenProject(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception {
+    generateExtensionMavenProject(extensionName, selectedResources, null, outputStream);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   */
+  @Override
+  public void generateExtensionMavenProject(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception {
+    generateArchive(ARCHIVE_TYPE_MAVEN, extensionName, selectedResources, previousArchive, outputStream, null);
+  }
+
+  /**
+   * Generate extension maven project.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previous archive
+   * @param outputStream the output stream
+   * @param job the job tracking progress, null if not submitted
+   * @throws Exception the exception
+   */
+  private void generateExtensionMavenProject(String extensionName,
+                                             Set<String> selectedResources,
+                                             File previousArchive,
+                                             OutputStream outputStream,
+                                             GenerationJob job) throws Exception {
+    ExtensionZipOutputStream zipOutputStream = new ExtensionZipOutputStream(outputStream, compressionPolicy);
 
-    // Copy Zip file containing Maven Project Structure in Temp File
-    InputStream inputStream = getClass().getClassLoader().getResourceAsStream("generator/template/maven.zip");
-    Utils.copyZipEnries(new ZipInputStream(inputStream), zipOutputStream, extensionName, null);
+    // Write Maven Project Structure
+    templateAssets.writeMavenProjectEntries(zipOutputStream, extensionName);
 
     // Add Activation JAR Configuration File in Maven Project
-    InputStream jarInputStream = generateActiovationJar(extensionName);
-    Utils.copyZipEnries(new ZipInputStream(jarInputStream), zipOutputStream, extensionName, "config/src/main/resources");
+    ZipOutputStream configZipOutputStream = new PrefixedZipOutputStream(zipOutputStream, "config/src/main/resources");
+    writeActivationJarEntries(configZipOutputStream, extensionName);
+    configZipOutputStream.close();
 
     // Add Extension WAR files in Maven Project
-    InputStream warInputStream = generateWARExtension(extensionName, selectedResources);
-    Utils.copyZipEnries(new ZipInputStream(warInputStream), zipOutputStream, extensionName, "war/src/main/webapp");
+    ZipOutputStream warZipOutputStream = new PrefixedZipOutputStream(zipOutputStream, "war/src/main/webapp");
+    writeWARExtension(warZipOutputStream, extensionName, selectedResources, previousArchive, job);
+    warZipOutputStream.close();
 
-    zipOutputStream.close();
-    return new ClosableFileInputStream(zipFile);
+    zipOutputStream.finish();
+    zipOutputStream.flush();
+    log.info("Maven project '" + extensionName + "' generated, " + zipOutputStream.getReport());
   }
 
   /**
@@ -379,118 +824,972 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
   @Override
   public InputStream generateWARExtension(String extensionName, Set<String> selectedResources) throws Exception {
     File file = File.createTempFile(extensionName, ".war");
-    ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
-    Vector<String> tempSelectedResources = new Vector<String>(selectedResources);
-
-    Configuration configuration = new Configuration();
-    for (ConfigurationHandler configurationHandler : handlers) {
-      try {
-        boolean extracted = configurationHandler.writeData(zos, extensionName, tempSelectedResources);
-        if (extracted) {
-          List<String> configurationPaths = configurationHandler.getConfigurationPaths();
-          if (configurationPaths != null) {
-            for (String path : configurationPaths) {
-              path = path.replace("custom-extension", extensionName);
-              configuration.addImport(path);
-            }
-          }
-        }
-      } catch (Exception e) {
-        log.error("Error while handling resources for " + configurationHandler.getClass().getName(), e);
-      }
-    }
-
-    // Write main configuration.xml file
-    Utils.writeConfiguration(zos, CONFIGURATION_XML_LOCATION, extensionName, configuration);
-
-    // Write web.xml file
-    InputStream applicationXMLInputStream = getClass().getClassLoader().getResourceAsStream(WEB_XML_TEMPLATE_LOCATION);
-    Utils.writeZipEnry(zos, WEB_XML_LOCATION, extensionName, applicationXMLInputStream, true);
-
+    OutputStream outputStream = new FileOutputStream(file);
     try {
-      zos.flush();
-      zos.close();
-    } catch (IOException e) {
-      log.error("Error while closing ZipOutputStream.", e);
+      generateWARExtension(extensionName, selectedResources, outputStream);
+    } finally {
+      outputStream.close();
     }
-
+    GenerationMetrics.getInstance().tempFileCreated(file.length());
     return new ClosableFileInputStream(file);
   }
 
   /**
    * {@inheritDoc}
+   * 
    */
   @Override
-  public Set<String> filterSelectedResources(Collection<String> selectedResources, String parentPath) {
-    Set<String> filteredSelectedResources = new HashSet<String>();
-    for (String resourcePath : selectedResources) {
-      if (resourcePath.contains(parentPath)) {
-        filteredSelectedResources.add(resourcePath);
-      }
-    }
-    return filteredSelectedResources;
+  public void generateWARExtension(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception {
+    generateWARExtension(extensionName, selectedResources, null, outputStream);
+  }
+
+  /**
+   * {@inheritDoc}
+   * 
+   */
+  @Override
+  public void generateWARExtension(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception {
+    generateArchive(ARCHIVE_TYPE_WAR, extensionName, selectedResources, previousArchive, outputStream, null);
   }
 
   /**
-   * Generate actiovation jar.
+   * Generate WAR extension.
    *
    * @param extensionName the extension name
-   * @return the input stream
+   * @param selectedResources the selected resources
+   * @param previousArchive the previous archive
+   * @param outputStream the output stream
+   * @param job the job tracking progress, null if not submitted
    * @throws Exception the exception
    */
-  private InputStream generateActiovationJar(String extensionName) throws Exception {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    ZipOutputStream zos = new ZipOutputStream(out);
-
-    InputStream xmlInputStream = getClass().getClassLoader().getResourceAsStream("generator/template/configuration.xml");
-    Utils.writeZipEnry(zos, "conf/configuration.xml", extensionName, xmlInputStream, true);
-    zos.close();
-    return new ByteArrayInputStream(out.toByteArray());
+  private void generateWARExtension(String extensionName,
+                                    Set<String> selectedResources,
+                                    File previousArchive,
+                                    OutputStream outputStream,
+                                    GenerationJob job) throws Exception {
+    ExtensionZipOutputStream zos = new ExtensionZipOutputStream(outputStream, compressionPolicy);
+    writeWARExtension(zos, extensionName, selectedResources, previousArchive, job);
+    zos.finish();
+    zos.flush();
+    log.info("WAR extension '" + extensionName + "' generated, " + zos.getReport());
   }
 
   /**
-   * Gets the nodes.
+   * Generates an archive of a given type and records its metrics.
    *
-   * @param path the path
-   * @return the nodes
+   * @param archiveType the archive type
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previous archive
+   * @param outputStream the output stream
+   * @param job the job tracking progress, null if not submitted
+   * @throws Exception the exception
    */
-  private List<Node> getNodes(String path) {
-    ManagedRequest request = ManagedRequest.Factory.create(OperationNames.READ_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
-    ManagedResponse response = getManagementController().execute(request);
-    if (!response.getOutcome().isSuccess()) {
-      log.error(response.getOutcome().getFailureDescription());
-      throw new RuntimeException(response.getOutcome().getFailureDescription());
-    }
-    ReadResourceModel result = (ReadResourceModel) response.getResult();
-    List<Node> children = new ArrayList<Node>(result.getChildren().size());
-    if (result.getChildren() != null && !result.getChildren().isEmpty()) {
-      for (String childName : result.getChildren()) {
-        String description = result.getChildDescription(childName).getDescription();
-        String childPath = path + "/" + childName;
-        Node child = new Node(childName, description, childPath);
-        children.add(child);
+  private void generateArchive(String archiveType,
+                               String extensionName,
+                               Set<String> selectedResources,
+                               File previousArchive,
+                               OutputStream outputStream,
+                               GenerationJob job) throws Exception {
+    GenerationMetrics metrics = GenerationMetrics.getInstance();
+    CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+    OperationMetrics.Outcome outcome = OperationMetrics.Outcome.FAILURE;
+    long startTime = System.currentTimeMillis();
+    metrics.generationStarted();
+    try {
+      if (ARCHIVE_TYPE_MAVEN.equals(archiveType)) {
+        generateExtensionMavenProject(extensionName, selectedResources, previousArchive, countingOutputStream, job);
+      } else if (ARCHIVE_TYPE_PACKAGE.equals(archiveType)) {
+        generateExtensionZip(extensionName, selectedResources, previousArchive, countingOutputStream, job);
+      } else {
+        generateWARExtension(extensionName, selectedResources, previousArchive, countingOutputStream, job);
       }
-      Collections.sort(children);
-    } else {
-      Node parent = new Node(path, result.getDescription(), path);
-      children.add(parent);
+      outcome = OperationMetrics.Outcome.SUCCESS;
+    } catch (Exception e) {
+      // Released resources make a cancelled generation fail with other exceptions
+      if (e instanceof GenerationCancelledException || (job != null && job.getCancellationToken() != null && job.getCancellationToken().isCancelled())) {
+        outcome = OperationMetrics.Outcome.CANCELLED;
+      }
+      throw e;
+    } finally {
+      metrics.generationFinished(archiveType, outcome, System.currentTimeMillis() - startTime, countingOutputStream.getByteCount());
     }
-    return children;
   }
 
   /**
-   * Gets the predefined scripts.
-   *
-   * @return the predefined scripts
+   * {@inheritDoc}
    */
-  private Set<String> getPredefinedScripts() {
-    Set<String> predefinedScripts = new HashSet<String>();
-    addPredefinedScriptsForComponent(predefinedScripts, GroovyScript2RestLoader.class.getName());
-    addPredefinedScriptsForComponent(predefinedScripts, "org.exoplatform.platform.gadget.services.GroovyScript2RestLoader.GroovyScript2RestLoaderExt");
-    return predefinedScripts;
-  }
-
-  /**
+  @Override
+  public String submitGeneration(String extensionName, String archiveType, Set<String> selectedResources) {
+    if (!ARCHIVE_TYPE_MAVEN.equals(archiveType) && !ARCHIVE_TYPE_PACKAGE.equals(archiveType) && !ARCHIVE_TYPE_WAR.equals(archiveType)) {
+      throw new IllegalArgumentException("Wrong archive type: " + archiveType);
+    }
+    purgeExpiredJobs();
+    // Jobs are purged and abandoned ones cancelled by the watchdog
+    getWatchdog();
+    GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), extensionName, archiveType, handlerIds);
+    jobs.put(job.getId(), job);
+    GenerationMetrics.getInstance().generationQueued();
+    try {
+      getJobsExecutor().execute(new GenerationJobTask(job, new HashSet<String>(selectedResources), ExoContainerContext.getCurrentContainerIfPresent()));
+    } catch (RejectedExecutionException e) {
+      GenerationMetrics.getInstance().generationDequeued();
+      jobs.remove(job.getId());
+      throw e;
+    }
+    return job.getId();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public InputStream streamGeneration(String extensionName, String archiveType, Set<String> selectedResources) throws IOException {
+    if (!ARCHIVE_TYPE_MAVEN.equals(archiveType) && !ARCHIVE_TYPE_PACKAGE.equals(archiveType) && !ARCHIVE_TYPE_WAR.equals(archiveType)) {
+      throw new IllegalArgumentException("Wrong archive type: " + archiveType);
+    }
+    // The timeout includes the wait in queue, the download is held meanwhile
+    CancellationToken cancellationToken = new CancellationToken(generationTimeout);
+    ScheduledFuture<?> generationTimeoutFuture = scheduleCancellation(cancellationToken, "Generation of '" + extensionName + "' timed out");
+    PipedArchiveInputStream inputStream = new PipedArchiveInputStream(PipedArchiveInputStream.DEFAULT_PIPE_SIZE, cancellationToken);
+    // Closing the pipe makes a producer blocked on an abandoned download fail
+    cancellationToken.register(inputStream);
+    streamedGenerations.add(cancellationToken);
+    GenerationMetrics.getInstance().generationQueued();
+    try {
+      getJobsExecutor().execute(new StreamedGenerationTask(extensionName,
+                                                           archiveType,
+                                                           new HashSet<String>(selectedResources),
+                                                           inputStream,
+                                                           cancellationToken,
+                                                           generationTimeoutFuture,
+                                                           ExoContainerContext.getCurrentContainerIfPresent()));
+    } catch (RejectedExecutionException e) {
+      GenerationMetrics.getInstance().generationDequeued();
+      streamedGenerations.remove(cancellationToken);
+      if (generationTimeoutFuture != null) {
+        generationTimeoutFuture.cancel(false);
+      }
+      throw e;
+    }
+    return inputStream;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public GenerationJob getGenerationJob(String jobId) {
+    purgeExpiredJobs();
+    GenerationJob job = jobId == null ? null : jobs.get(jobId);
+    if (job != null) {
+      job.touch();
+    }
+    return job;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void cancelGenerationJob(String jobId) {
+    GenerationJob job = jobId == null ? null : jobs.get(jobId);
+    if (job != null && !job.isFinished()) {
+      job.cancel("Cancelled by user");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public InputStream takeGenerationResult(String jobId) throws IOException {
+    GenerationJob job = getGenerationJob(jobId);
+    if (job == null || job.getStatus() != GenerationJob.Status.DONE || jobs.remove(jobId) == null) {
+      return null;
+    }
+    return new ClosableFileInputStream(job.getResultFile());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeGenerationJob(String jobId) {
+    GenerationJob job = jobId == null ? null : jobs.remove(jobId);
+    if (job != null) {
+      deleteJobResult(job);
+    }
+  }
+
+  /**
+   * Removes finished jobs which weren't downloaded during retention delay.
+   */
+  private void purgeExpiredJobs() {
+    long expirationTime = System.currentTimeMillis() - jobsRetention;
+    Iterator<GenerationJob> jobsIterator = jobs.values().iterator();
+    while (jobsIterator.hasNext()) {
+      GenerationJob job = jobsIterator.next();
+      if (job.isFinished() && job.getEndTime() < expirationTime) {
+        jobsIterator.remove();
+        deleteJobResult(job);
+      }
+    }
+  }
+
+  /**
+   * Cancels running or queued jobs which aren't polled anymore.
+   */
+  private void cancelAbandonedJobs() {
+    if (jobsAbandonTimeout <= 0) {
+      return;
+    }
+    long abandonTime = System.currentTimeMillis() - jobsAbandonTimeout;
+    for (GenerationJob job : jobs.values()) {
+      if (!job.isFinished() && job.getCancelReason() == null && job.getLastAccessTime() < abandonTime) {
+        log.info("Generation " + job.getId() + " of '" + job.getExtensionName() + "' isn't polled anymore, cancel it.");
+        job.cancel("Abandoned");
+      }
+    }
+  }
+
+  /**
+   * Delete job result.
+   *
+   * @param job the job
+   */
+  private void deleteJobResult(GenerationJob job) {
+    try {
+      job.deleteResultFile();
+    } catch (IOException e) {
+      log.warn("Error while deleting result of generation " + job.getId(), e);
+    }
+  }
+
+  /**
+   * Writes WAR Extension entries in zos, without finishing it.
+   *
+   * @param zos the zos
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previously generated extension, null for a
+   *          full generation
+   * @param job the job tracking progress, null if not submitted
+   * @throws Exception the exception
+   */
+  private void writeWARExtension(ZipOutputStream zos,
+                                 String extensionName,
+                                 Set<String> selectedResources,
+                                 File previousArchive,
+                                 GenerationJob job) throws Exception {
+    // Sorted once, each handler reads only the range of its paths
+    NavigableSet<String> tempSelectedResources = new TreeSet<String>(selectedResources);
+
+    PreviousExtensionArchive previousExtensionArchive = null;
+    if (previousArchive != null) {
+      try {
+        previousExtensionArchive = PreviousExtensionArchive.open(previousArchive, extensionName);
+      } catch (IOException e) {
+        log.warn("Previous extension archive can't be read, generate all resources.", e);
+      }
+    }
+    CancellationToken cancellationToken = job == null ? null : job.getCancellationToken();
+    ScheduledFuture<?> generationTimeoutFuture = null;
+    if (cancellationToken == null) {
+      cancellationToken = new CancellationToken(generationTimeout);
+      generationTimeoutFuture = scheduleCancellation(cancellationToken, "Generation of '" + extensionName + "' timed out");
+    }
+    GenerationContext context = new GenerationContext(extensionName,
+                                                      previousExtensionArchive == null ? null : previousExtensionArchive.getManifest(),
+                                                      job,
+                                                      cancellationToken);
+    ExtensionManifest manifest = new ExtensionManifest(extensionName);
+    Configuration configuration = new Configuration();
+    try {
+      if (handlersThreads > 1) {
+        writeHandlersDataInParallel(zos, context, previousExtensionArchive, tempSelectedResources, configuration, manifest);
+      } else {
+        for (int i = 0; i < handlers.size(); i++) {
+          ConfigurationHandler configurationHandler = handlers.get(i);
+          GenerationContext handlerContext = context.forHandler(handlerIds.get(i), handlersTimeout);
+          try {
+            boolean extracted = writeHandlerData(configurationHandler, handlerContext, previousExtensionArchive, zos, tempSelectedResources);
+            if (extracted) {
+              addConfigurationImports(configuration, extensionName, handlerContext.getHandlerManifest().getConfigurationPaths());
+            }
+            manifest.addHandler(handlerContext.getHandlerManifest());
+          } catch (GenerationCancelledException e) {
+            // Only this handler timed out: generate the other resources
+            context.checkCancelled();
+            log.warn("Resources of " + handlerIds.get(i) + " skipped: " + e.getMessage());
+          } catch (Exception e) {
+            context.checkCancelled();
+            log.error("Error while handling resources for " + configurationHandler.getClass().getName(), e);
+          }
+        }
+      }
+      context.checkCancelled();
+    } finally {
+      if (generationTimeoutFuture != null) {
+        generationTimeoutFuture.cancel(false);
+      }
+      if (previousExtensionArchive != null) {
+        previousExtensionArchive.close();
+      }
+    }
+
+    // Write main configuration.xml file
+    Utils.writeConfiguration(zos, CONFIGURATION_XML_LOCATION, extensionName, configuration);
+
+    // Write web.xml file
+    templateAssets.writeWebXML(zos, WEB_XML_LOCATION, extensionName);
+
+    // Write manifest used by next incremental generations
+    Utils.writeZipEnry(zos, ExtensionManifest.MANIFEST_LOCATION, extensionName, manifest.toXML(), false);
+  }
+
+  /**
+   * Runs a handler, or copies its entries from the previous extension when
+   * its selected resources and the digests of its exports didn't change.
+   * Its duration and outcome are recorded in {@link GenerationMetrics}.
+   *
+   * @param configurationHandler the configuration handler
+   * @param handlerContext the handler context
+   * @param previousExtensionArchive the previous extension archive, null for a
+   *          full generation
+   * @param zos the zos
+   * @param selectedResources the selected resources
+   * @return true, if the handler extracted data
+   * @throws Exception the exception
+   */
+  private boolean writeHandlerData(ConfigurationHandler configurationHandler,
+                                   GenerationContext handlerContext,
+                                   PreviousExtensionArchive previousExtensionArchive,
+                                   ZipOutputStream zos,
+                                   Collection<String> selectedResources) throws Exception {
+    GenerationJob job = handlerContext.getJob();
+    String handlerId = handlerContext.getHandlerManifest().getId();
+    if (job != null) {
+      job.handlerStarted(handlerId);
+    }
+    // Actively cancel the handler at its deadline, to release what it holds
+    ScheduledFuture<?> handlerTimeoutFuture = null;
+    if (handlersTimeout > 0) {
+      handlerTimeoutFuture = scheduleCancellation(handlerContext.getCancellationToken(), "Handler " + handlerId + " timed out");
+    }
+    GenerationJob.HandlerStatus handlerStatus = GenerationJob.HandlerStatus.FAILED;
+    OperationMetrics.Outcome outcome = OperationMetrics.Outcome.FAILURE;
+    long startTime = System.currentTimeMillis();
+    try {
+      handlerContext.checkCancelled();
+      boolean extracted;
+      if (previousExtensionArchive != null && isHandlerDataUnchanged(configurationHandler, handlerContext, previousExtensionArchive, selectedResources)) {
+        extracted = copyHandlerData(handlerContext, previousExtensionArchive, zos);
+        outcome = OperationMetrics.Outcome.REUSED;
+      } else {
+        extracted = doWriteHandlerData(configurationHandler, handlerContext, zos, selectedResources);
+        outcome = OperationMetrics.Outcome.SUCCESS;
+      }
+      // Handlers may have caught the cancellation while reading a resource
+      handlerContext.checkCancelled();
+      handlerStatus = GenerationJob.HandlerStatus.DONE;
+      return extracted;
+    } catch (Exception e) {
+      outcome = OperationMetrics.Outcome.FAILURE;
+      if (handlerContext.getCancellationToken().isCancelled()) {
+        handlerStatus = GenerationJob.HandlerStatus.CANCELLED;
+        outcome = OperationMetrics.Outcome.CANCELLED;
+        throw e instanceof GenerationCancelledException ? e : new GenerationCancelledException(handlerContext.getCancellationToken().getReason());
+      }
+      throw e;
+    } finally {
+      if (handlerTimeoutFuture != null) {
+        handlerTimeoutFuture.cancel(false);
+      }
+      GenerationMetrics.getInstance().recordHandler(handlerId, outcome, System.currentTimeMillis() - startTime);
+      if (job != null) {
+        job.handlerFinished(handlerId, handlerStatus);
+      }
+    }
+  }
+
+  /**
+   * Copies handler entries from the previous extension.
+   *
+   * @param handlerContext the handler context
+   * @param previousExtensionArchive the previous extension archive
+   * @param zos the zos
+   * @return true, if the handler extracted data
+   * @throws Exception the exception
+   */
+  private boolean copyHandlerData(GenerationContext handlerContext, PreviousExtensionArchive previousExtensionArchive, ZipOutputStream zos) throws Exception {
+    HandlerManifest handlerManifest = handlerContext.getHandlerManifest();
+    HandlerManifest previousHandlerManifest = handlerContext.getPreviousHandlerManifest();
+    previousExtensionArchive.copyEntries(previousHandlerManifest.getEntries(), zos);
+    handlerManifest.copy(previousHandlerManifest);
+    log.info("Resources of " + handlerManifest.getId() + " unchanged, reused from previous extension.");
+    return handlerManifest.isExtracted();
+  }
+
+  /**
+   * Do write handler data.
+   *
+   * @param configurationHandler the configuration handler
+   * @param handlerContext the handler context
+   * @param zos the zos
+   * @param selectedResources the selected resources
+   * @return true, if the handler extracted data
+   * @throws Exception the exception
+   */
+  private boolean doWriteHandlerData(ConfigurationHandler configurationHandler,
+                                     GenerationContext handlerContext,
+                                     ZipOutputStream zos,
+                                     Collection<String> selectedResources) throws Exception {
+    HandlerManifest handlerManifest = handlerContext.getHandlerManifest();
+    handlerManifest.setIncremental(configurationHandler.isIncrementalSupported());
+    PrefixedZipOutputStream handlerZos = new PrefixedZipOutputStream(zos, null);
+    boolean extracted = false;
+    try {
+      extracted = configurationHandler.writeData(handlerContext, handlerZos, handlerContext.getExtensionName(), selectedResources);
+    } finally {
+      try {
+        // Releases the deflater of the handler stream even if the handler
+        // failed
+        handlerZos.close();
+      } finally {
+        // Handlers are shared by concurrent generations, the state of this
+        // run is owned by its context
+        handlerContext.release();
+      }
+    }
+    handlerManifest.setEntries(handlerZos.getEntryNames());
+    handlerManifest.setExtracted(extracted);
+    if (handlerManifest.isIncremental()) {
+      recordChangeMarkers(handlerContext, handlerManifest);
+    }
+    if (extracted) {
+      List<String> configurationPaths = new ArrayList<String>();
+      if (configurationHandler.getConfigurationPaths() != null) {
+        configurationPaths.addAll(configurationHandler.getConfigurationPaths());
+      }
+      configurationPaths.addAll(handlerContext.getConfigurationPaths());
+      handlerManifest.setConfigurationPaths(configurationPaths);
+    }
+    return extracted;
+  }
+
+  /**
+   * Checks if handler data is unchanged since the previous generation. GateIN
+   * doesn't provide modification dates, so the READ_RESOURCE listings of the
+   * paths exported by the handler are compared to the change markers recorded
+   * in previous manifest. Nothing is exported unless the handler has to run.
+   *
+   * @param configurationHandler the configuration handler
+   * @param handlerContext the handler context
+   * @param previousExtensionArchive the previous extension archive
+   * @param selectedResources the selected resources
+   * @return true, if handler data is unchanged
+   * @throws Exception the exception
+   */
+  private boolean isHandlerDataUnchanged(ConfigurationHandler configurationHandler,
+                                         GenerationContext handlerContext,
+                                         PreviousExtensionArchive previousExtensionArchive,
+                                         Collection<String> selectedResources) throws Exception {
+    HandlerManifest previousHandlerManifest = handlerContext.getPreviousHandlerManifest();
+    if (previousHandlerManifest == null || !previousHandlerManifest.isIncremental() || !configurationHandler.isIncrementalSupported()
+        || previousHandlerManifest.getSelectionRoot() == null || !previousExtensionArchive.containsEntries(previousHandlerManifest.getEntries())) {
+      return false;
+    }
+    Set<String> handlerSelectedResources = AbstractConfigurationHandler.filterSelectedResources(selectedResources, previousHandlerManifest.getSelectionRoot());
+    if (!handlerSelectedResources.equals(new HashSet<String>(previousHandlerManifest.getSelectedResources()))) {
+      return false;
+    }
+    Map<String, String> markers = new HashMap<String, String>();
+    for (ExportDigest exportDigest : previousHandlerManifest.getExports()) {
+      handlerContext.checkCancelled();
+      String marker = markers.get(exportDigest.getPath());
+      if (marker == null) {
+        marker = readChangeMarker(exportDigest.getPath());
+        markers.put(exportDigest.getPath(), marker);
+      }
+      if (exportDigest.getMarker() == null || !exportDigest.getMarker().equals(marker)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Records the change markers of the paths exported by a handler, compared by
+   * the next incremental generation.
+   *
+   * @param handlerContext the handler context
+   * @param handlerManifest the handler manifest
+   */
+  private void recordChangeMarkers(GenerationContext handlerContext, HandlerManifest handlerManifest) {
+    Map<String, String> markers = new HashMap<String, String>();
+    for (ExportDigest exportDigest : handlerManifest.getExports()) {
+      handlerContext.checkCancelled();
+      String marker = markers.get(exportDigest.getPath());
+      if (marker == null) {
+        marker = readChangeMarker(exportDigest.getPath());
+        markers.put(exportDigest.getPath(), marker);
+      }
+      exportDigest.setMarker(marker);
+    }
+  }
+
+  /**
+   * Reads the change marker of a managed path: the SHA-1 digest of its
+   * READ_RESOURCE listing and of the listings of its children, down to
+   * {@link #CHANGE_MARKER_DEPTH}.
+   *
+   * @param path the managed path
+   * @return the change marker, empty if the path can't be read
+   */
+  private String readChangeMarker(String path) {
+    try {
+      MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+      if (!digestListing(messageDigest, path, CHANGE_MARKER_DEPTH)) {
+        return "";
+      }
+      return Utils.toHex(messageDigest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 isn't available", e);
+    }
+  }
+
+  /**
+   * Adds the READ_RESOURCE listing of a path and of its children to a digest.
+   *
+   * @param messageDigest the message digest
+   * @param path the managed path
+   * @param depth the number of levels to read
+   * @return true, if the path was read
+   */
+  private boolean digestListing(MessageDigest messageDigest, String path, int depth) {
+    ManagedRequest request = ManagedRequest.Factory.create(OperationNames.READ_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
+    ManagedResponse response = getManagementController().execute(request);
+    if (!response.getOutcome().isSuccess()) {
+      log.debug("Can't read change marker of " + path + ": " + response.getOutcome().getFailureDescription());
+      return false;
+    }
+    ReadResourceModel result = (ReadResourceModel) response.getResult();
+    messageDigest.update((path + "\n" + result.getDescription() + "\n").getBytes(UTF_8));
+    List<String> children = result.getChildren() == null ? new ArrayList<String>() : new ArrayList<String>(result.getChildren());
+    Collections.sort(children);
+    for (String child : children) {
+      messageDigest.update((child + "\n").getBytes(UTF_8));
+    }
+    if (depth > 1) {
+      for (String child : children) {
+        if (!digestListing(messageDigest, path + "/" + child, depth - 1)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Set<String> filterSelectedResources(Collection<String> selectedResources, String parentPath) {
+    return AbstractConfigurationHandler.filterSelectedResources(selectedResources, parentPath);
+  }
+
+  /**
+   * Runs all handlers concurrently, each one writing in its own staging file.
+   * Staged entries and configuration imports are then merged in the target
+   * WAR in the handlers registration order, so the generated archive doesn't
+   * depend on the handlers completion order.
+   *
+   * @param zos the WAR zos
+   * @param context the generation context
+   * @param previousExtensionArchive the previous extension archive, null for a
+   *          full generation
+   * @param selectedResources the selected resources
+   * @param configuration the main configuration
+   * @param manifest the manifest
+   */
+  private void writeHandlersDataInParallel(ZipOutputStream zos,
+                                           GenerationContext context,
+                                           PreviousExtensionArchive previousExtensionArchive,
+                                           Collection<String> selectedResources,
+                                           Configuration configuration,
+                                           ExtensionManifest manifest) {
+    ExecutorService executor = getHandlersExecutor();
+    ExoContainer container = ExoContainerContext.getCurrentContainerIfPresent();
+
+    List<StagedHandlerData> stagedHandlers = new ArrayList<StagedHandlerData>(handlers.size());
+    List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(handlers.size());
+    for (int i = 0; i < handlers.size(); i++) {
+      StagedHandlerData stagedHandler = new StagedHandlerData(handlers.get(i),
+                                                              handlerIds.get(i),
+                                                              context,
+                                                              previousExtensionArchive,
+                                                              container,
+                                                              selectedResources);
+      stagedHandlers.add(stagedHandler);
+      futures.add(executor.submit(stagedHandler));
+    }
+
+    Set<String> writtenEntries = new HashSet<String>();
+    int i = 0;
+    try {
+      for (; i < stagedHandlers.size(); i++) {
+        mergeStagedHandlerData(zos, context, stagedHandlers.get(i), futures.get(i), configuration, manifest, writtenEntries);
+      }
+    } finally {
+      // Generation cancelled: stop handlers not merged yet
+      for (; i < stagedHandlers.size(); i++) {
+        futures.get(i).cancel(true);
+        stagedHandlers.get(i).deleteStagingFile();
+      }
+    }
+  }
+
+  /**
+   * Waits for a staged handler then merges its entries and configuration
+   * imports.
+   *
+   * @param zos the WAR zos
+   * @param context the generation context
+   * @param stagedHandler the staged handler
+   * @param future the staged handler future
+   * @param configuration the main configuration
+   * @param manifest the manifest
+   * @param writtenEntries the written entries
+   */
+  private void mergeStagedHandlerData(ZipOutputStream zos,
+                                      GenerationContext context,
+                                      StagedHandlerData stagedHandler,
+                                      Future<Boolean> future,
+                                      Configuration configuration,
+                                      ExtensionManifest manifest,
+                                      Set<String> writtenEntries) {
+    String handlerName = stagedHandler.getHandler().getClass().getName();
+    try {
+      boolean extracted = waitFor(future, context.getCancellationToken());
+      // Empty staging file: the handler didn't write any entry
+      if (stagedHandler.getStagingFile() != null && stagedHandler.getStagingFile().length() > 0) {
+        ZipFile stagingZipFile = new ZipFile(stagedHandler.getStagingFile());
+        try {
+          Utils.mergeZipEntries(stagingZipFile, zos, writtenEntries);
+        } finally {
+          stagingZipFile.close();
+        }
+      }
+      HandlerManifest handlerManifest = stagedHandler.getContext().getHandlerManifest();
+      if (extracted) {
+        addConfigurationImports(configuration, context.getExtensionName(), handlerManifest.getConfigurationPaths());
+      }
+      manifest.addHandler(handlerManifest);
+    } catch (GenerationCancelledException e) {
+      // Only this handler timed out: generate the other resources
+      context.checkCancelled();
+      log.warn("Resources of " + stagedHandler.getHandlerId() + " skipped: " + e.getMessage());
+    } catch (Exception e) {
+      context.checkCancelled();
+      log.error("Error while handling resources for " + handlerName, e);
+    } finally {
+      stagedHandler.deleteStagingFile();
+    }
+  }
+
+  /**
+   * Waits for a handler result, checking periodically if the generation is
+   * cancelled to stop waiting for a handler which doesn't check it.
+   *
+   * @param future the future
+   * @param cancellationToken the generation cancellation token
+   * @return the handler result
+   * @throws Exception the exception thrown by the handler
+   */
+  private boolean waitFor(Future<Boolean> future, CancellationToken cancellationToken) throws Exception {
+    while (true) {
+      cancellationToken.checkCancelled();
+      try {
+        return future.get(CANCELLATION_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // Check cancellation again
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Schedules the cancellation of a token at its deadline, so that resources
+   * held by a blocked handler are released.
+   *
+   * @param cancellationToken the cancellation token
+   * @param reason the reason
+   * @return the scheduled future, null if the token has no deadline
+   */
+  private ScheduledFuture<?> scheduleCancellation(final CancellationToken cancellationToken, final String reason) {
+    if (cancellationToken.getDeadline() <= 0) {
+      return null;
+    }
+    long delay = Math.max(0, cancellationToken.getDeadline() - System.currentTimeMillis());
+    return getWatchdog().schedule(new Runnable() {
+      @Override
+      public void run() {
+        cancellationToken.cancel(reason);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds the configuration imports.
+   *
+   * @param configuration the configuration
+   * @param extensionName the extension name
+   * @param configurationPaths the configuration paths
+   */
+  private void addConfigurationImports(Configuration configuration, String extensionName, List<String> configurationPaths) {
+    if (configurationPaths != null) {
+      for (String path : configurationPaths) {
+        path = path.replace("custom-extension", extensionName);
+        configuration.addImport(path);
+      }
+    }
+  }
+
+  /**
+   * Shuts an executor down, interrupting its running tasks.
+   *
+   * @param executor the executor, can be null
+   */
+  private static void shutdown(ExecutorService executor) {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Gets the handlers executor.
+   *
+   * @return the handlers executor
+   */
+  private synchronized ExecutorService getHandlersExecutor() {
+    if (handlersExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(handlersThreads,
+                                                           handlersThreads,
+                                                           60L,
+                                                           TimeUnit.SECONDS,
+                                                           new ArrayBlockingQueue<Runnable>(Math.max(1, handlersQueueSize)),
+                                                           new GeneratorThreadFactory("extension-generator-handler"),
+                                                           new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      handlersExecutor = executor;
+    }
+    return handlersExecutor;
+  }
+
+  /**
+   * Gets the executor fetching listings of the resources snapshot.
+   *
+   * @return the resources executor
+   */
+  private synchronized ExecutorService getResourcesExecutor() {
+    if (resourcesExecutor == null) {
+      int threads = Math.max(1, resourcesThreads);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                           threads,
+                                                           60L,
+                                                           TimeUnit.SECONDS,
+                                                           new ArrayBlockingQueue<Runnable>(RESOURCES_CATEGORIES.length),
+                                                           new GeneratorThreadFactory("extension-generator-listing"),
+                                                           new ThreadPoolExecutor.CallerRunsPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      resourcesExecutor = executor;
+    }
+    return resourcesExecutor;
+  }
+
+  /**
+   * Gets the jobs executor. Jobs are rejected when all threads are busy and
+   * the queue is full, to avoid piling up generations.
+   *
+   * @return the jobs executor
+   */
+  private synchronized ExecutorService getJobsExecutor() {
+    if (jobsExecutor == null) {
+      int threads = Math.max(1, jobsThreads);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                           threads,
+                                                           60L,
+                                                           TimeUnit.SECONDS,
+                                                           new ArrayBlockingQueue<Runnable>(Math.max(1, jobsQueueSize)),
+                                                           new GeneratorThreadFactory("extension-generator-job"),
+                                                           new ThreadPoolExecutor.AbortPolicy());
+      executor.allowCoreThreadTimeOut(true);
+      jobsExecutor = executor;
+    }
+    return jobsExecutor;
+  }
+
+  /**
+   * Gets the watchdog, which also purges expired jobs and cancels abandoned
+   * ones periodically.
+   *
+   * @return the watchdog
+   */
+  private synchronized ScheduledExecutorService getWatchdog() {
+    if (watchdog == null) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new GeneratorThreadFactory("extension-generator-watchdog"));
+      executor.setRemoveOnCancelPolicy(true);
+      executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            purgeExpiredJobs();
+            cancelAbandonedJobs();
+          } catch (Exception e) {
+            log.warn("Error while checking generation jobs", e);
+          }
+        }
+      }, 10, 10, TimeUnit.SECONDS);
+      watchdog = executor;
+    }
+    return watchdog;
+  }
+
+  /**
+   * Generate actiovation jar. The most recently rendered JARs are kept by
+   * extension name, the returned content must not be modified.
+   *
+   * @param extensionName the extension name
+   * @return the jar content
+   * @throws Exception the exception
+   */
+  private byte[] generateActiovationJar(String extensionName) throws Exception {
+    synchronized (activationJars) {
+      byte[] activationJar = activationJars.get(extensionName);
+      if (activationJar != null) {
+        return activationJar;
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ZipOutputStream zos = new ExtensionZipOutputStream(out, compressionPolicy);
+    writeActivationJarEntries(zos, extensionName);
+    zos.close();
+    byte[] activationJar = out.toByteArray();
+    if (activationJarsCacheSize > 0) {
+      synchronized (activationJars) {
+        activationJars.put(extensionName, activationJar);
+        Iterator<String> iterator = activationJars.keySet().iterator();
+        while (activationJars.size() > activationJarsCacheSize && iterator.hasNext()) {
+          iterator.next();
+          iterator.remove();
+        }
+      }
+    }
+    return activationJar;
+  }
+
+  /**
+   * Writes activation jar entries in zos.
+   *
+   * @param zos the zos
+   * @param extensionName the extension name
+   * @throws Exception the exception
+   */
+  private void writeActivationJarEntries(ZipOutputStream zos, String extensionName) throws Exception {
+    templateAssets.writeActivationJarEntries(zos, extensionName);
+  }
+
+  /**
+   * Gets the nodes of a category. Group sites of spaces are excluded, they
+   * are not selectable.
+   *
+   * @param category the category path
+   * @return the nodes
+   */
+  private List<Node> getCategoryNodes(String category) {
+    if (IDE_REST_PATH.equals(category)) {
+      return getIDEGroovyRestServices();
+    } else if (GADGET_PATH.equals(category)) {
+      return getGadgets();
+    } else if (SITES_GROUP_PATH.equals(category)) {
+      return getGroupSiteNodes(true);
+    }
+    return getNodes(category);
+  }
+
+  /**
+   * Checks if a group site is the site of a space.
+   *
+   * @param childName the name of the group site resource
+   * @return true, if the group is under /spaces
+   */
+  private static boolean isSpaceGroupSite(String childName) {
+    return childName.startsWith(SPACES_GROUP_PREFIX) || childName.contains("/" + SPACES_GROUP_PREFIX);
+  }
+
+  /**
+   * Gets the nodes.
+   *
+   * @param path the path
+   * @return the nodes
+   */
+  private List<Node> getNodes(String path) {
+    return getNodes(path, false);
+  }
+
+  /**
+   * Gets the nodes, space sites are skipped by name before reading their
+   * description.
+   *
+   * @param path the path
+   * @param excludeSpaces true to exclude group sites of spaces
+   * @return the nodes
+   */
+  private List<Node> getNodes(String path, boolean excludeSpaces) {
+    ManagedRequest request = ManagedRequest.Factory.create(OperationNames.READ_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
+    ManagedResponse response = getManagementController().execute(request);
+    if (!response.getOutcome().isSuccess()) {
+      log.error(response.getOutcome().getFailureDescription());
+      throw new RuntimeException(response.getOutcome().getFailureDescription());
+    }
+    ReadResourceModel result = (ReadResourceModel) response.getResult();
+    List<Node> children = new ArrayList<Node>(result.getChildren().size());
+    if (result.getChildren() != null && !result.getChildren().isEmpty()) {
+      for (String childName : result.getChildren()) {
+        if (excludeSpaces && isSpaceGroupSite(childName)) {
+          continue;
+        }
+        String description = result.getChildDescription(childName).getDescription();
+        String childPath = path + "/" + childName;
+        Node child = new Node(childName, description, childPath);
+        children.add(child);
+      }
+      Collections.sort(children);
+    } else {
+      Node parent = new Node(path, result.getDescription(), path);
+      children.add(parent);
+    }
+    return children;
+  }
+
+  /**
+   * Gets the predefined scripts.
+   *
+   * @return the predefined scripts
+   */
+  private Set<String> getPredefinedScripts() {
+    Set<String> predefinedScripts = new HashSet<String>();
+    addPredefinedScriptsForComponent(predefinedScripts, GroovyScript2RestLoader.class.getName());
+    addPredefinedScriptsForComponent(predefinedScripts, "org.exoplatform.platform.gadget.services.GroovyScript2RestLoader.GroovyScript2RestLoaderExt");
+    return predefinedScripts;
+  }
+
+  /**
    * Adds the predefined scripts for component.
    *
    * @param predefinedScripts the predefined scripts
@@ -561,6 +1860,548 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
     return managementController;
   }
 
+  /**
+   * Executes one handler against a dedicated staging archive.
+   */
+  private class StagedHandlerData implements Callable<Boolean> {
+
+    /** The handler. */
+    private final ConfigurationHandler handler;
+
+    /** The handler id. */
+    private final String handlerId;
+
+    /** The generation context. */
+    private final GenerationContext generationContext;
+
+    /** The handler context, created when the handler starts. */
+    private volatile GenerationContext context;
+
+    /** The previous extension archive. */
+    private final PreviousExtensionArchive previousExtensionArchive;
+
+    /** The container. */
+    private final ExoContainer container;
+
+    /** The selected resources. */
+    private final Collection<String> selectedResources;
+
+    /** The staging file. */
+    private volatile File stagingFile;
+
+    /** The staging file length recorded in metrics. */
+    private long stagingFileLength;
+
+    /**
+     * Instantiates a new staged handler data.
+     *
+     * @param handler the handler
+     * @param handlerId the handler id
+     * @param generationContext the generation context
+     * @param previousExtensionArchive the previous extension archive
+     * @param container the container
+     * @param selectedResources the selected resources
+     */
+    public StagedHandlerData(ConfigurationHandler handler,
+                             String handlerId,
+                             GenerationContext generationContext,
+                             PreviousExtensionArchive previousExtensionArchive,
+                             ExoContainer container,
+                             Collection<String> selectedResources) {
+      this.handler = handler;
+      this.handlerId = handlerId;
+      this.generationContext = generationContext;
+      this.previousExtensionArchive = previousExtensionArchive;
+      this.container = container;
+      this.selectedResources = selectedResources;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Boolean call() throws Exception {
+      ExoContainer previousContainer = ExoContainerContext.getCurrentContainerIfPresent();
+      ExoContainerContext.setCurrentContainer(container);
+      ZipOutputStream stagingZos = null;
+      try {
+        // The handler timeout starts when it leaves the queue
+        context = generationContext.forHandler(handlerId, handlersTimeout);
+        stagingFile = File.createTempFile("CustomExtension-staging", ".zip");
+        stagingZos = new ZipOutputStream(new FileOutputStream(stagingFile));
+        // Entries are inflated again while merging, don't waste CPU twice
+        stagingZos.setLevel(Deflater.NO_COMPRESSION);
+        return writeHandlerData(handler, context, previousExtensionArchive, stagingZos, selectedResources);
+      } finally {
+        if (stagingZos != null) {
+          try {
+            stagingZos.close();
+          } catch (Exception e) {
+            // ZipException is thrown when the handler didn't write any entry
+            log.debug("Error while closing staging archive of " + handler.getClass().getName(), e);
+          }
+          stagingFileWritten();
+        }
+        // Nobody will merge it
+        if (generationContext.getCancellationToken().isCancelled()) {
+          deleteStagingFile();
+        }
+        ExoContainerContext.setCurrentContainer(previousContainer);
+      }
+    }
+
+    /**
+     * Gets the handler.
+     *
+     * @return the handler
+     */
+    public ConfigurationHandler getHandler() {
+      return handler;
+    }
+
+    /**
+     * Gets the handler id.
+     *
+     * @return the handler id
+     */
+    public String getHandlerId() {
+      return handlerId;
+    }
+
+    /**
+     * Gets the handler context.
+     *
+     * @return the context, null if the handler didn't start
+     */
+    public GenerationContext getContext() {
+      return context;
+    }
+
+    /**
+     * Gets the staging file.
+     *
+     * @return the staging file
+     */
+    public File getStagingFile() {
+      return stagingFile;
+    }
+
+    /**
+     * Delete staging file.
+     */
+    public synchronized void deleteStagingFile() {
+      if (stagingFile != null && stagingFile.exists()) {
+        GenerationMetrics.getInstance().tempFileDeleted(stagingFileLength);
+        stagingFileLength = 0;
+        if (!stagingFile.delete()) {
+          stagingFile.deleteOnExit();
+        }
+      }
+    }
+
+    /**
+     * Records the written staging file in metrics, unless it's already
+     * deleted.
+     */
+    private synchronized void stagingFileWritten() {
+      if (stagingFile.exists()) {
+        stagingFileLength = stagingFile.length();
+        GenerationMetrics.getInstance().tempFileCreated(stagingFileLength);
+      }
+    }
+  }
+
+  /**
+   * Runs a submitted generation in a temp file.
+   */
+  private class GenerationJobTask implements Runnable {
+
+    /** The job. */
+    private final GenerationJob job;
+
+    /** The selected resources. */
+    private final Set<String> selectedResources;
+
+    /** The container. */
+    private final ExoContainer container;
+
+    /**
+     * Instantiates a new generation job task.
+     *
+     * @param job the job
+     * @param selectedResources the selected resources
+     * @param container the container
+     */
+    public GenerationJobTask(GenerationJob job, Set<String> selectedResources, ExoContainer container) {
+      this.job = job;
+      this.selectedResources = selectedResources;
+      this.container = container;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      GenerationMetrics.getInstance().generationDequeued();
+      if (job.getCancelReason() != null) {
+        job.cancelled(job.getCancelReason());
+        return;
+      }
+      ExoContainer previousContainer = ExoContainerContext.getCurrentContainerIfPresent();
+      ExoContainerContext.setCurrentContainer(container);
+      CancellationToken cancellationToken = new CancellationToken(generationTimeout);
+      ScheduledFuture<?> generationTimeoutFuture = scheduleCancellation(cancellationToken, "Generation timed out");
+      job.started(cancellationToken);
+      File file = null;
+      try {
+        String extensionName = job.getExtensionName();
+        file = File.createTempFile("CustomExtension-" + job.getId(), ARCHIVE_TYPE_WAR.equals(job.getArchiveType()) ? ".war" : ".zip");
+        OutputStream outputStream = job.countBytes(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+          generateArchive(job.getArchiveType(), extensionName, selectedResources, null, outputStream, job);
+        } finally {
+          outputStream.close();
+        }
+        GenerationMetrics.getInstance().tempFileCreated(file.length());
+        job.done(file);
+        log.info("Generation " + job.getId() + " of '" + extensionName + "' done in " + (job.getEndTime() - job.getStartTime()) + "ms, "
+            + job.getBytesWritten() + " bytes written.");
+      } catch (Throwable e) {
+        // Released resources make the generation fail with other exceptions
+        if (cancellationToken.isCancelled()) {
+          log.info("Generation " + job.getId() + " of '" + job.getExtensionName() + "' cancelled: " + cancellationToken.getReason());
+          job.cancelled(cancellationToken.getReason());
+        } else {
+          log.error("Error while generating extension '" + job.getExtensionName() + "'", e);
+          job.failed(e);
+        }
+        FileUtils.deleteQuietly(file);
+      } finally {
+        if (generationTimeoutFuture != null) {
+          generationTimeoutFuture.cancel(false);
+        }
+        // The job may have been removed while running
+        if (!jobs.containsKey(job.getId())) {
+          deleteJobResult(job);
+        }
+        ExoContainerContext.setCurrentContainer(previousContainer);
+      }
+    }
+  }
+
+  /**
+   * Streamed generation, writing the archive entries in the pipe read by the
+   * download while they are generated.
+   */
+  private class StreamedGenerationTask implements Runnable {
+
+    /** The extension name. */
+    private final String extensionName;
+
+    /** The archive type. */
+    private final String archiveType;
+
+    /** The selected resources. */
+    private final Set<String> selectedResources;
+
+    /** The pipe read by the download. */
+    private final PipedArchiveInputStream inputStream;
+
+    /** The cancellation token. */
+    private final CancellationToken cancellationToken;
+
+    /** The timeout of the generation, null if none. */
+    private final ScheduledFuture<?> generationTimeoutFuture;
+
+    /** The container. */
+    private final ExoContainer container;
+
+    /**
+     * Instantiates a new streamed generation task.
+     *
+     * @param extensionName the extension name
+     * @param archiveType the archive type
+     * @param selectedResources the selected resources
+     * @param inputStream the pipe read by the download
+     * @param cancellationToken the cancellation token
+     * @param generationTimeoutFuture the timeout of the generation
+     * @param container the container
+     */
+    public StreamedGenerationTask(String extensionName,
+                                  String archiveType,
+                                  Set<String> selectedResources,
+                                  PipedArchiveInputStream inputStream,
+                                  CancellationToken cancellationToken,
+                                  ScheduledFuture<?> generationTimeoutFuture,
+                                  ExoContainer container) {
+      this.extensionName = extensionName;
+      this.archiveType = archiveType;
+      this.selectedResources = selectedResources;
+      this.inputStream = inputStream;
+      this.cancellationToken = cancellationToken;
+      this.generationTimeoutFuture = generationTimeoutFuture;
+      this.container = container;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      GenerationMetrics.getInstance().generationDequeued();
+      ExoContainer previousContainer = ExoContainerContext.getCurrentContainerIfPresent();
+      ExoContainerContext.setCurrentContainer(container);
+      // The job isn't registered, it only carries the cancellation token
+      GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), extensionName, archiveType, handlerIds);
+      job.started(cancellationToken);
+      OutputStream outputStream = inputStream.getOutputStream();
+      try {
+        cancellationToken.checkCancelled();
+        generateArchive(archiveType, extensionName, selectedResources, null, outputStream, job);
+        cancellationToken.unregister(inputStream);
+      } catch (Throwable e) {
+        // Released resources make the generation fail with other exceptions
+        if (cancellationToken.isCancelled()) {
+          log.info("Streamed generation of '" + extensionName + "' cancelled: " + cancellationToken.getReason());
+        } else {
+          log.error("Error while generating extension '" + extensionName + "'", e);
+        }
+        inputStream.fail(e);
+      } finally {
+        try {
+          outputStream.close();
+        } catch (IOException e) {
+          log.debug("Error while closing the pipe of the streamed generation of '" + extensionName + "'", e);
+        }
+        if (generationTimeoutFuture != null) {
+          generationTimeoutFuture.cancel(false);
+        }
+        streamedGenerations.remove(cancellationToken);
+        ExoContainerContext.setCurrentContainer(previousContainer);
+      }
+    }
+  }
+
+  /**
+   * Fetches the listing of a category, in the container of the caller.
+   */
+  private class CategoryListing implements Callable<CompactNodeList> {
+
+    /** The category path. */
+    private final String category;
+
+    /** The container. */
+    private final ExoContainer container;
+
+    /**
+     * Instantiates a new category listing.
+     *
+     * @param category the category path
+     * @param container the container
+     */
+    public CategoryListing(String category, ExoContainer container) {
+      this.category = category;
+      this.container = container;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompactNodeList call() {
+      ExoContainer previousContainer = ExoContainerContext.getCurrentContainerIfPresent();
+      ExoContainerContext.setCurrentContainer(container);
+      try {
+        return CompactNodeList.of(getCategoryNodes(category));
+      } finally {
+        ExoContainerContext.setCurrentContainer(previousContainer);
+      }
+    }
+  }
+
+  /**
+   * Snapshot of the resources, each category is listed once, when first read,
+   * and kept in a {@link CompactNodeList}. Listings are futures, so that only
+   * the callers reading a category being listed wait for it.
+   */
+  private class CatalogueSnapshot implements ResourcesSnapshot {
+
+    /** The version. */
+    private final long version;
+
+    /** The creation time. */
+    private final long creationTime = System.currentTimeMillis();
+
+    /** The listings of categories, by category path. */
+    private final ConcurrentHashMap<String, FutureTask<CompactNodeList>> listings = new ConcurrentHashMap<String, FutureTask<CompactNodeList>>();
+
+    /**
+     * Instantiates a new catalogue snapshot.
+     *
+     * @param version the version
+     */
+    public CatalogueSnapshot(long version) {
+      this.version = version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+      return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCreationTime() {
+      return creationTime;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Node> getNodes(String categoryPath) {
+      return getListing(categoryPath);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodesPage getNodes(String categoryPath, int offset, int limit, String filter) {
+      return getListing(categoryPath).getPage(offset, limit, filter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<Node>> getResources() {
+      // Missing categories are listed concurrently
+      Map<String, FutureTask<CompactNodeList>> categoryListings = new LinkedHashMap<String, FutureTask<CompactNodeList>>();
+      for (String category : RESOURCES_CATEGORIES) {
+        FutureTask<CompactNodeList> listing = listings.get(category);
+        if (listing == null) {
+          FutureTask<CompactNodeList> newListing = newListing(category);
+          listing = listings.putIfAbsent(category, newListing);
+          if (listing == null) {
+            listing = newListing;
+            getResourcesExecutor().execute(listing);
+          }
+        }
+        categoryListings.put(category, listing);
+      }
+      Map<String, List<Node>> resources = new LinkedHashMap<String, List<Node>>();
+      for (Map.Entry<String, FutureTask<CompactNodeList>> categoryListing : categoryListings.entrySet()) {
+        resources.put(categoryListing.getKey(), getListing(categoryListing.getKey(), categoryListing.getValue()));
+      }
+      return Collections.unmodifiableMap(resources);
+    }
+
+    /**
+     * Checks if is expired.
+     *
+     * @param ttl the time to live in milliseconds
+     * @return true, if is expired
+     */
+    public boolean isExpired(long ttl) {
+      return System.currentTimeMillis() - creationTime > ttl;
+    }
+
+    /**
+     * Gets the listing of a category, listed on first call.
+     *
+     * @param category the category path
+     * @return the listing
+     */
+    private CompactNodeList getListing(String category) {
+      if (!Arrays.asList(RESOURCES_CATEGORIES).contains(category)) {
+        throw new IllegalArgumentException("Unknown category: " + category);
+      }
+      FutureTask<CompactNodeList> listing = listings.get(category);
+      if (listing == null) {
+        FutureTask<CompactNodeList> newListing = newListing(category);
+        listing = listings.putIfAbsent(category, newListing);
+        if (listing == null) {
+          listing = newListing;
+        }
+      }
+      return getListing(category, listing);
+    }
+
+    /**
+     * Creates the listing of a category, in the container of the caller.
+     *
+     * @param category the category path
+     * @return the listing, not started yet
+     */
+    private FutureTask<CompactNodeList> newListing(String category) {
+      return new FutureTask<CompactNodeList>(new CategoryListing(category, ExoContainerContext.getCurrentContainerIfPresent()));
+    }
+
+    /**
+     * Waits for the listing of a category. The listing runs in the caller
+     * thread if no other thread started it, so that a listing queued in the
+     * resources executor, or dropped by its shutdown, doesn't block callers. A
+     * failed listing is removed to be listed again by the next call.
+     *
+     * @param category the category path
+     * @param listing the listing
+     * @return the nodes
+     */
+    private CompactNodeList getListing(String category, FutureTask<CompactNodeList> listing) {
+      listing.run();
+      try {
+        return listing.get();
+      } catch (ExecutionException e) {
+        listings.remove(category, listing);
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new RuntimeException("Error while getting the list of resources", e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while getting the list of resources", e);
+      }
+    }
+  }
+
+  /**
+   * Creates named daemon threads for generator executors.
+   */
+  private static class GeneratorThreadFactory implements ThreadFactory {
+
+    /** The thread index. */
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    /** The prefix. */
+    private final String prefix;
+
+    /**
+     * Instantiates a new generator thread factory.
+     *
+     * @param prefix the prefix
+     */
+    public GeneratorThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + "-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   /**
    * The Class ClosableFileInputStream.
    */
@@ -586,6 +2427,9 @@ public class ExtensionGeneratorImpl implements ExtensionGenerator {
     @Override
     public void close() throws IOException {
       super.close();
+      if (file.exists()) {
+        GenerationMetrics.getInstance().tempFileDeleted(file.length());
+      }
       try {
         FileUtils.forceDelete(file);
       } catch (Exception e) {
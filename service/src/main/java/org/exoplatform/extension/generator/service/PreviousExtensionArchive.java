@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.extension.generator.service.api.ExtensionManifest;
+import org.exoplatform.extension.generator.service.api.GenerationMetrics;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Extension generated previously, used as source of unchanged entries by an
+ * incremental generation. The archive can be a WAR Extension, a package ZIP
+ * (the nested WAR is extracted in a temp file) or a Maven Project.
+ */
+class PreviousExtensionArchive {
+
+  /** The Constant MAVEN_WAR_ROOT. */
+  private static final String MAVEN_WAR_ROOT = "war/src/main/webapp/";
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(PreviousExtensionArchive.class);
+
+  /** The zip file. */
+  private final ZipFile zipFile;
+
+  /** The WAR root path in zip file. */
+  private final String warRoot;
+
+  /** The extracted WAR file to delete on close, if any. */
+  private final File extractedWarFile;
+
+  /** The manifest. */
+  private final ExtensionManifest manifest;
+
+  /**
+   * Instantiates a new previous extension archive.
+   *
+   * @param zipFile the zip file
+   * @param warRoot the war root
+   * @param extractedWarFile the extracted war file
+   * @param manifest the manifest
+   */
+  private PreviousExtensionArchive(ZipFile zipFile, String warRoot, File extractedWarFile, ExtensionManifest manifest) {
+    this.zipFile = zipFile;
+    this.warRoot = warRoot;
+    this.extractedWarFile = extractedWarFile;
+    this.manifest = manifest;
+  }
+
+  /**
+   * Opens a previously generated extension.
+   *
+   * @param file the archive file
+   * @param extensionName the name of the extension to generate
+   * @return the previous extension archive, or null if the archive doesn't
+   *         contain a manifest usable to generate extensionName
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static PreviousExtensionArchive open(File file, String extensionName) throws IOException {
+    ZipFile zipFile = new ZipFile(file);
+    if (hasManifest(zipFile)) {
+      return open(zipFile, null, extensionName);
+    }
+    // Package ZIP: look for the nested WAR
+    File warFile = null;
+    try {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements() && warFile == null) {
+        ZipEntry entry = entries.nextElement();
+        if (entry.getName().startsWith("webapps/") && entry.getName().endsWith(".war")) {
+          warFile = File.createTempFile("PreviousExtension", ".war");
+          InputStream inputStream = zipFile.getInputStream(entry);
+          OutputStream outputStream = new FileOutputStream(warFile);
+          try {
+            IOUtils.copyLarge(inputStream, outputStream);
+          } finally {
+            inputStream.close();
+            outputStream.close();
+          }
+          GenerationMetrics.getInstance().tempFileCreated(warFile.length());
+        }
+      }
+    } finally {
+      zipFile.close();
+    }
+    if (warFile != null) {
+      ZipFile warZipFile = new ZipFile(warFile);
+      if (hasManifest(warZipFile)) {
+        return open(warZipFile, warFile, extensionName);
+      }
+      warZipFile.close();
+      deleteExtractedWarFile(warFile);
+    }
+    log.info("No extension manifest found in " + file.getName() + ", generate all resources.");
+    return null;
+  }
+
+  /**
+   * Gets the manifest.
+   *
+   * @return the manifest
+   */
+  public ExtensionManifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Checks if the archive contains all entries.
+   *
+   * @param entryNames the entry names, relative to WAR root
+   * @return true, if successful
+   */
+  public boolean containsEntries(List<String> entryNames) {
+    for (String entryName : entryNames) {
+      if (zipFile.getEntry(warRoot + entryName) == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy entries, as is, from this archive.
+   *
+   * @param entryNames the entry names, relative to WAR root
+   * @param zos the target WAR output stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void copyEntries(List<String> entryNames, ZipOutputStream zos) throws IOException {
+    for (String entryName : entryNames) {
+      ZipEntry entry = zipFile.getEntry(warRoot + entryName);
+      InputStream inputStream = zipFile.getInputStream(entry);
+      try {
+        zos.putNextEntry(new ZipEntry(entryName));
+        IOUtils.copyLarge(inputStream, zos);
+        zos.closeEntry();
+      } finally {
+        inputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Close.
+   */
+  public void close() {
+    try {
+      zipFile.close();
+    } catch (IOException e) {
+      log.warn("Error while closing previous extension archive", e);
+    }
+    if (extractedWarFile != null) {
+      deleteExtractedWarFile(extractedWarFile);
+    }
+  }
+
+  /**
+   * Deletes a WAR extracted from a package ZIP.
+   *
+   * @param warFile the WAR file
+   */
+  private static void deleteExtractedWarFile(File warFile) {
+    if (warFile.exists()) {
+      GenerationMetrics.getInstance().tempFileDeleted(warFile.length());
+    }
+    FileUtils.deleteQuietly(warFile);
+  }
+
+  /**
+   * Checks for manifest.
+   *
+   * @param zipFile the zip file
+   * @return true, if the archive is a WAR or a Maven Project with a manifest
+   */
+  private static boolean hasManifest(ZipFile zipFile) {
+    return zipFile.getEntry(ExtensionManifest.MANIFEST_LOCATION) != null || zipFile.getEntry(MAVEN_WAR_ROOT + ExtensionManifest.MANIFEST_LOCATION) != null;
+  }
+
+  /**
+   * Reads the manifest of a WAR or Maven Project. The zip file is closed and
+   * the extracted WAR deleted when the manifest can't be used.
+   *
+   * @param zipFile the zip file
+   * @param extractedWarFile the extracted war file
+   * @param extensionName the extension name
+   * @return the previous extension archive or null
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static PreviousExtensionArchive open(ZipFile zipFile, File extractedWarFile, String extensionName) throws IOException {
+    String warRoot = zipFile.getEntry(ExtensionManifest.MANIFEST_LOCATION) != null ? "" : MAVEN_WAR_ROOT;
+    ExtensionManifest manifest = null;
+    InputStream inputStream = zipFile.getInputStream(zipFile.getEntry(warRoot + ExtensionManifest.MANIFEST_LOCATION));
+    try {
+      manifest = ExtensionManifest.fromXML(inputStream);
+    } catch (Exception e) {
+      log.warn("Unreadable extension manifest, generate all resources.", e);
+    } finally {
+      inputStream.close();
+    }
+    if (manifest == null || manifest.getVersion() != ExtensionManifest.CURRENT_VERSION || !extensionName.equals(manifest.getExtensionName())) {
+      if (manifest != null) {
+        log.info("Previous extension manifest can't be used to generate '" + extensionName + "', generate all resources.");
+      }
+      zipFile.close();
+      if (extractedWarFile != null) {
+        deleteExtractedWarFile(extractedWarFile);
+      }
+      return null;
+    }
+    return new PreviousExtensionArchive(zipFile, warRoot, extractedWarFile, manifest);
+  }
+}
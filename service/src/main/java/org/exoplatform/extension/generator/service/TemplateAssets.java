@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service;
+
+import org.apache.commons.io.IOUtils;
+import org.exoplatform.extension.generator.service.api.PlaceholderReplacingOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Templates of generated archives (Maven project, web.xml and activation JAR
+ * configuration.xml), read once from the classloader. Rendering them for an
+ * extension name does no I/O nor unzipping, the placeholder is replaced by
+ * {@link PlaceholderReplacingOutputStream} while they are written. Instances
+ * are immutable.
+ */
+class TemplateAssets {
+
+  /** The Constant PLACEHOLDER. */
+  private static final String PLACEHOLDER = "custom-extension";
+
+  /** The Constant MAVEN_PROJECT_TEMPLATE_LOCATION. */
+  private static final String MAVEN_PROJECT_TEMPLATE_LOCATION = "generator/template/maven.zip";
+
+  /** The Constant WEB_XML_TEMPLATE_LOCATION. */
+  private static final String WEB_XML_TEMPLATE_LOCATION = "generator/template/web.xml";
+
+  /** The Constant ACTIVATION_CONFIGURATION_TEMPLATE_LOCATION. */
+  private static final String ACTIVATION_CONFIGURATION_TEMPLATE_LOCATION = "generator/template/configuration.xml";
+
+  /** The Constant ACTIVATION_CONFIGURATION_ENTRY. */
+  private static final String ACTIVATION_CONFIGURATION_ENTRY = "conf/configuration.xml";
+
+  /** The Maven project entries. */
+  private final List<TemplateEntry> mavenProjectEntries;
+
+  /** The web.xml template. */
+  private final byte[] webXML;
+
+  /** The activation JAR configuration.xml template. */
+  private final byte[] activationConfiguration;
+
+  /**
+   * Instantiates new template assets.
+   *
+   * @param mavenProjectEntries the maven project entries
+   * @param webXML the web XML
+   * @param activationConfiguration the activation configuration
+   */
+  private TemplateAssets(List<TemplateEntry> mavenProjectEntries, byte[] webXML, byte[] activationConfiguration) {
+    this.mavenProjectEntries = Collections.unmodifiableList(mavenProjectEntries);
+    this.webXML = webXML;
+    this.activationConfiguration = activationConfiguration;
+  }
+
+  /**
+   * Loads the templates.
+   *
+   * @param classLoader the class loader of the templates
+   * @return the template assets
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static TemplateAssets load(ClassLoader classLoader) throws IOException {
+    List<TemplateEntry> mavenProjectEntries = new ArrayList<TemplateEntry>();
+    ZipInputStream zin = new ZipInputStream(getResourceAsStream(classLoader, MAVEN_PROJECT_TEMPLATE_LOCATION));
+    try {
+      ZipEntry entry;
+      while ((entry = zin.getNextEntry()) != null) {
+        // Same entries and names as Utils.copyZipEnries
+        if (entry.isDirectory() || !entry.getName().contains(".")) {
+          continue;
+        }
+        String entryName = ("/" + entry.getName()).replaceAll("/+", "/").substring(1).replaceAll("/ecmadmin", "");
+        mavenProjectEntries.add(new TemplateEntry(entryName, IOUtils.toByteArray(zin)));
+      }
+    } finally {
+      zin.close();
+    }
+    return new TemplateAssets(mavenProjectEntries,
+                              readResource(classLoader, WEB_XML_TEMPLATE_LOCATION),
+                              readResource(classLoader, ACTIVATION_CONFIGURATION_TEMPLATE_LOCATION));
+  }
+
+  /**
+   * Writes the Maven project structure.
+   *
+   * @param zos the zos
+   * @param extensionName the extension name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeMavenProjectEntries(ZipOutputStream zos, String extensionName) throws IOException {
+    for (TemplateEntry entry : mavenProjectEntries) {
+      writeEntry(zos, entry.getName().replace(PLACEHOLDER, extensionName), entry.getContent(), extensionName);
+    }
+    zos.flush();
+  }
+
+  /**
+   * Writes the web.xml.
+   *
+   * @param zos the zos
+   * @param entryName the entry name
+   * @param extensionName the extension name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeWebXML(ZipOutputStream zos, String entryName, String extensionName) throws IOException {
+    writeEntry(zos, entryName, webXML, extensionName);
+  }
+
+  /**
+   * Writes the activation JAR entries.
+   *
+   * @param zos the zos
+   * @param extensionName the extension name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void writeActivationJarEntries(ZipOutputStream zos, String extensionName) throws IOException {
+    writeEntry(zos, ACTIVATION_CONFIGURATION_ENTRY, activationConfiguration, extensionName);
+  }
+
+  /**
+   * Writes a rendered template entry.
+   *
+   * @param zos the zos
+   * @param entryName the entry name
+   * @param content the template content
+   * @param extensionName the extension name
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void writeEntry(ZipOutputStream zos, String entryName, byte[] content, String extensionName) throws IOException {
+    zos.putNextEntry(new ZipEntry(entryName));
+    PlaceholderReplacingOutputStream outputStream = new PlaceholderReplacingOutputStream(zos, Collections.singletonMap(PLACEHOLDER, extensionName));
+    outputStream.write(content);
+    outputStream.close();
+    zos.closeEntry();
+  }
+
+  /**
+   * Reads a resource.
+   *
+   * @param classLoader the class loader
+   * @param location the location
+   * @return the content
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static byte[] readResource(ClassLoader classLoader, String location) throws IOException {
+    InputStream inputStream = getResourceAsStream(classLoader, location);
+    try {
+      return IOUtils.toByteArray(inputStream);
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Gets a resource as stream.
+   *
+   * @param classLoader the class loader
+   * @param location the location
+   * @return the input stream
+   * @throws IOException if the resource doesn't exist
+   */
+  private static InputStream getResourceAsStream(ClassLoader classLoader, String location) throws IOException {
+    InputStream inputStream = classLoader.getResourceAsStream(location);
+    if (inputStream == null) {
+      throw new IOException("Template not found: " + location);
+    }
+    return inputStream;
+  }
+
+  /**
+   * Entry of the Maven project template.
+   */
+  static class TemplateEntry {
+
+    /** The name, with the placeholder. */
+    private final String name;
+
+    /** The content, with the placeholder. */
+    private final byte[] content;
+
+    /**
+     * Instantiates a new template entry.
+     *
+     * @param name the name
+     * @param content the content
+     */
+    TemplateEntry(String name, byte[] content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the name
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the content.
+     *
+     * @return the content
+     */
+    byte[] getContent() {
+      return content;
+    }
+  }
+}
@@ -20,7 +20,7 @@ package org.exoplatform.extension.generator.service.api;
 
 import com.thoughtworks.xstream.XStream;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.container.xml.ComponentPlugin;
 import org.exoplatform.container.xml.ExternalComponentPlugins;
@@ -28,30 +28,27 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.Parameter;
 import org.exoplatform.container.xml.ValueParam;
 import org.exoplatform.management.ecmadmin.operations.templates.applications.ApplicationTemplatesMetadata;
+import org.exoplatform.services.jcr.RepositoryService;
+import org.exoplatform.services.jcr.ext.common.SessionProvider;
 import org.exoplatform.services.log.Log;
-import org.gatein.management.api.ContentType;
-import org.gatein.management.api.PathAddress;
-import org.gatein.management.api.controller.ManagedRequest;
-import org.gatein.management.api.controller.ManagedResponse;
 import org.gatein.management.api.controller.ManagementController;
-import org.gatein.management.api.operation.OperationNames;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
 /**
  * The Class AbstractConfigurationHandler.
  */
@@ -60,13 +57,13 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
   /** The Constant DMS_CONFIGURATION_LOCATION. */
   protected static final String DMS_CONFIGURATION_LOCATION = "WEB-INF/conf/custom-extension/dms/";
 
+  /** The Constant APPLICATION_TEMPLATES_METADATA_ENTRY. */
+  protected static final String APPLICATION_TEMPLATES_METADATA_ENTRY = "ecmadmin/templates/applications/metadata.xml";
+
   /** The management controller. */
   // GateIN Management Controller
   private ManagementController managementController = null;
 
-  /** The temp files. */
-  protected List<File> tempFiles = new ArrayList<File>();
-
   /**
    * Gets the logger.
    *
@@ -74,71 +71,178 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
    */
   protected abstract Log getLogger();
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isIncrementalSupported() {
+    return true;
+  }
+
   /**
    * Call GateIN Management Controller to export selected resource using options
-   * passed in filters.
+   * passed in filters. Successful exports are reused from {@link ExportCache}
+   * when it's enabled. The export digest is recorded in the context.
    *
+   * @param context the generation context
    * @param path managed path
    * @param filters passed to GateIN Management SPI
    * @return archive file exported from GateIN Management Controller call
    */
-  protected ZipFile getExportedFileFromOperation(String path, String... filters) {
-    ManagedRequest request = null;
-    if (filters != null && filters.length > 0) {
-      Map<String, List<String>> attributes = new HashMap<String, List<String>>();
-      attributes.put("filter", Arrays.asList(filters));
-      request = ManagedRequest.Factory.create(OperationNames.EXPORT_RESOURCE, PathAddress.pathAddress(path), attributes, ContentType.ZIP);
-    } else {
-      request = ManagedRequest.Factory.create(OperationNames.EXPORT_RESOURCE, PathAddress.pathAddress(path), ContentType.ZIP);
-    }
-    FileOutputStream outputStream = null;
-    File tmpFile = null;
+  protected ZipFile getExportedFileFromOperation(GenerationContext context, String path, String... filters) {
+    context.checkCancelled();
+    ExportedResource exportedResource = null;
     try {
-      // Call GateIN Management SPI
-      ManagedResponse response = getManagementController().execute(request);
-      // Create temp file
-      tmpFile = File.createTempFile("exo", "-extension-generator.zip");
-      outputStream = new FileOutputStream(tmpFile);
-      // Create temp file
-      response.writeResult(outputStream, false);
-      return new ZipFile(tmpFile);
+      exportedResource = ExportedResource.export(getManagementController(), context.getCancellationToken(), path, filters);
+      if (!exportedResource.isCached()) {
+        context.addTempFile(exportedResource.getFile());
+      }
+      context.recordExport(exportedResource);
+      ZipFile zipFile = exportedResource.open();
+      // Closed on cancellation, so that the handler stops reading it
+      context.getCancellationToken().register(zipFile);
+      if (exportedResource.isCached()) {
+        // Unpinned from the cache when the handler is released
+        context.addResource(new ExportedResourceRelease(exportedResource));
+      } else {
+        context.getCancellationToken().register(new ExportedResourceRelease(exportedResource));
+      }
+      return zipFile;
+    } catch (GenerationCancelledException e) {
+      throw e;
     } catch (Exception e) {
+      if (exportedResource != null) {
+        exportedResource.release();
+      }
       throw new RuntimeException("Error while handling Response from GateIN Management, export operation", e);
-    } finally {
-      if (outputStream != null) {
-        try {
-          outputStream.flush();
-          outputStream.close();
-        } catch (IOException ioExp) {
-          // Nothing to do
-        }
+    }
+  }
+
+  /**
+   * Call GateIN Management Controller to export selected resource using options
+   * passed in filters, and read it entry by entry while it's written, see
+   * {@link StreamedExport}. Exports are written in a file first when
+   * {@link ExportCache} is enabled or when streaming is disabled. Callers
+   * close it with {@link #closeExportedStream(GenerationContext, StreamedExport)}.
+   *
+   * @param context the generation context
+   * @param path managed path
+   * @param filters passed to GateIN Management SPI
+   * @return the streamed export
+   */
+  protected StreamedExport getExportedStreamFromOperation(GenerationContext context, String path, String... filters) {
+    context.checkCancelled();
+    ExportedResource exportedResource = null;
+    try {
+      StreamedExport streamedExport = null;
+      if (StreamedExport.isEnabled() && !ExportCache.getInstance().isEnabled()) {
+        streamedExport = StreamedExport.export(getManagementController(), context.getCancellationToken(), path, filters);
+      } else {
+        exportedResource = ExportedResource.export(getManagementController(), context.getCancellationToken(), path, filters);
+        streamedExport = StreamedExport.open(exportedResource);
       }
-      if (tmpFile != null && tmpFile.exists()) {
-        tempFiles.add(tmpFile);
+      // Closed on cancellation, so that the handler stops reading it
+      context.getCancellationToken().register(streamedExport);
+      return streamedExport;
+    } catch (GenerationCancelledException e) {
+      throw e;
+    } catch (Exception e) {
+      if (exportedResource != null) {
+        exportedResource.release();
       }
+      throw new RuntimeException("Error while handling Response from GateIN Management, export operation", e);
     }
   }
 
   /**
-   * Delete temp files created by GateIN management operations.
+   * Closes an export opened by
+   * {@link #getExportedStreamFromOperation(GenerationContext, String, String...)}
+   * and records its digest in the context if all its entries were read.
+   *
+   * @param context the generation context
+   * @param streamedExport the streamed export, can be null
    */
-  protected void clearTempFiles() {
-    for (File tempFile : tempFiles) {
-      if (tempFile != null && tempFile.exists()) {
-        try {
-          FileUtils.forceDelete(tempFile);
-        } catch (Exception e) {
-          getLogger().warn("Unable to delete temp file: " + tempFile.getAbsolutePath() + ". Not blocker.");
-          tempFile.deleteOnExit();
-        }
+  protected void closeExportedStream(GenerationContext context, StreamedExport streamedExport) {
+    if (streamedExport == null) {
+      return;
+    }
+    context.getCancellationToken().unregister(streamedExport);
+    try {
+      String digest = streamedExport.readDigest();
+      if (digest != null) {
+        context.recordExport(streamedExport.getPath(), streamedExport.getFilters(), digest);
       }
+    } catch (IOException e) {
+      getLogger().warn("Error while reading the end of export: " + streamedExport.getPath(), e);
+    } finally {
+      streamedExport.close();
     }
-    tempFiles.clear();
+  }
+
+  /**
+   * Plans the exports of resources selected under a category, so that a fully
+   * selected category, or subcategory, is exported in one request.
+   *
+   * @param context the generation context
+   * @param categoryPath the managed path of the category
+   * @param selectedResources the selected resources of the category
+   * @return the managed paths to export
+   * @see ExportPlanner
+   */
+  protected List<String> planExports(GenerationContext context, String categoryPath, Collection<String> selectedResources) {
+    context.checkCancelled();
+    return new ExportPlanner(getManagementController()).plan(categoryPath, selectedResources);
+  }
+
+  /**
+   * Opens a system JCR session. The session is logged out if the generation
+   * is cancelled, callers log it out with
+   * {@link #closeSession(GenerationContext, Session)}.
+   *
+   * @param context the generation context
+   * @param workspace the workspace
+   * @return the session
+   * @throws RepositoryException the repository exception
+   */
+  protected Session openSession(GenerationContext context, String workspace) throws RepositoryException {
+    context.checkCancelled();
+    RepositoryService repositoryService = (RepositoryService) PortalContainer.getInstance().getComponentInstanceOfType(RepositoryService.class);
+    Session session = SessionProvider.createSystemProvider().getSession(workspace, repositoryService.getCurrentRepository());
+    SessionRelease sessionRelease = new SessionRelease(session);
+    context.getCancellationToken().register(sessionRelease);
+    context.addResource(sessionRelease);
+    return session;
+  }
+
+  /**
+   * Logs out a session opened by {@link #openSession(GenerationContext, String)}.
+   *
+   * @param context the generation context
+   * @param session the session, can be null
+   */
+  protected void closeSession(GenerationContext context, Session session) {
+    if (session == null) {
+      return;
+    }
+    SessionRelease sessionRelease = new SessionRelease(session);
+    context.getCancellationToken().unregister(sessionRelease);
+    context.removeResource(sessionRelease);
+    sessionRelease.close();
+  }
+
+  /**
+   * Delete temp files created by GateIN management operations.
+   *
+   * @param context the generation context
+   */
+  protected void clearTempFiles(GenerationContext context) {
+    context.deleteTempFiles();
   }
 
   /**
    * Filters subresources of parentPath. This operation retains only paths that
-   * contains parentPath.
+   * start with parentPath. When selectedResources is a {@link NavigableSet} in
+   * natural order, only the range of paths starting with parentPath is read.
    * 
    * @param selectedResources
    *          Set of managed resources paths
@@ -148,14 +252,38 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
    */
   public static Set<String> filterSelectedResources(Collection<String> selectedResources, String parentPath) {
     Set<String> filteredSelectedResources = new HashSet<String>();
-    for (String resourcePath : selectedResources) {
-      if (resourcePath.contains(parentPath)) {
+    if (selectedResources instanceof NavigableSet && ((NavigableSet<String>) selectedResources).comparator() == null) {
+      for (String resourcePath : ((NavigableSet<String>) selectedResources).tailSet(parentPath, true)) {
+        if (!resourcePath.startsWith(parentPath)) {
+          break;
+        }
         filteredSelectedResources.add(resourcePath);
       }
+    } else {
+      for (String resourcePath : selectedResources) {
+        if (resourcePath.startsWith(parentPath)) {
+          filteredSelectedResources.add(resourcePath);
+        }
+      }
     }
     return filteredSelectedResources;
   }
 
+  /**
+   * Filters subresources of parentPath and records them as the handler
+   * selection in the generation context.
+   *
+   * @param context the generation context
+   * @param selectedResources Set of managed resources paths
+   * @param parentPath parent resource path
+   * @return Set of sub resources path of type String
+   */
+  protected Set<String> filterSelectedResources(GenerationContext context, Collection<String> selectedResources, String parentPath) {
+    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, parentPath);
+    context.recordSelection(parentPath, filteredSelectedResources);
+    return filteredSelectedResources;
+  }
+
   /**
    * Adds the component plugin.
    *
@@ -231,13 +359,10 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
    * @return the application templates metadata
    */
   protected ApplicationTemplatesMetadata getApplicationTemplatesMetadata(ZipFile zipFile) {
-    ZipEntry applicationTemplateMetadataEntry = zipFile.getEntry("ecmadmin/templates/applications/metadata.xml");
+    ZipEntry applicationTemplateMetadataEntry = zipFile.getEntry(APPLICATION_TEMPLATES_METADATA_ENTRY);
     if (applicationTemplateMetadataEntry != null) {
       try {
-        InputStream inputStream = zipFile.getInputStream(applicationTemplateMetadataEntry);
-        XStream xStream = new XStream();
-        xStream.alias("metadata", ApplicationTemplatesMetadata.class);
-        return (ApplicationTemplatesMetadata) xStream.fromXML(new InputStreamReader(inputStream));
+        return getApplicationTemplatesMetadata(zipFile.getInputStream(applicationTemplateMetadataEntry));
       } catch (IOException e) {
         getLogger().error("Error while gettin Application Template Metadata", e);
       }
@@ -245,6 +370,19 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
     return null;
   }
 
+  /**
+   * Gets the application templates metadata from the content of the
+   * {@link #APPLICATION_TEMPLATES_METADATA_ENTRY} entry. The input stream isn't
+   * closed.
+   *
+   * @param inputStream the input stream
+   * @return the application templates metadata
+   */
+  protected ApplicationTemplatesMetadata getApplicationTemplatesMetadata(InputStream inputStream) {
+    XStream xStream = XStreamRegistry.getXStream(ApplicationTemplatesMetadata.class);
+    return (ApplicationTemplatesMetadata) xStream.fromXML(new InputStreamReader(new CloseShieldInputStream(inputStream)));
+  }
+
   /**
    * Gets the management controller.
    *
@@ -256,4 +394,84 @@ public abstract class AbstractConfigurationHandler implements ConfigurationHandl
     }
     return managementController;
   }
+
+  /**
+   * Sets the management controller used for exports, instead of the one of
+   * the portal container.
+   *
+   * @param managementController the new management controller
+   */
+  public void setManagementController(ManagementController managementController) {
+    this.managementController = managementController;
+  }
+
+  /**
+   * Logs out a JCR session when the generation is cancelled.
+   */
+  private static class SessionRelease implements Closeable {
+
+    /** The session. */
+    private final Session session;
+
+    /**
+     * Instantiates a new session release.
+     *
+     * @param session the session
+     */
+    public SessionRelease(Session session) {
+      this.session = session;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+      if (session.isLive()) {
+        session.logout();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof SessionRelease && ((SessionRelease) obj).session == session;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(session);
+    }
+  }
+
+  /**
+   * Deletes a temp exported file when the generation is cancelled.
+   */
+  private static class ExportedResourceRelease implements Closeable {
+
+    /** The exported resource. */
+    private final ExportedResource exportedResource;
+
+    /**
+     * Instantiates a new exported resource release.
+     *
+     * @param exportedResource the exported resource
+     */
+    public ExportedResourceRelease(ExportedResource exportedResource) {
+      this.exportedResource = exportedResource;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+      exportedResource.release();
+    }
+  }
 }
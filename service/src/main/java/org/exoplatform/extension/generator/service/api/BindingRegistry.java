@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.jibx.runtime.BindingDirectory;
+import org.jibx.runtime.IBindingFactory;
+import org.jibx.runtime.IMarshallingContext;
+import org.jibx.runtime.IUnmarshallingContext;
+import org.jibx.runtime.JiBXException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches JiBX binding factories by class, their lookup being the costly part.
+ * Marshalling and unmarshalling contexts are cheap to create from a cached
+ * factory and are created for each document, so that no context is kept by
+ * container threads.
+ */
+public class BindingRegistry {
+
+  /** The binding factories by bound class. */
+  private static final Map<Class<?>, IBindingFactory> factories = new ConcurrentHashMap<Class<?>, IBindingFactory>();
+
+  /**
+   * Instantiates a new binding registry.
+   */
+  private BindingRegistry() {
+  }
+
+  /**
+   * Gets the binding factory of a class, looked up once.
+   *
+   * @param clazz the bound class
+   * @return the binding factory
+   * @throws JiBXException the JiBX exception
+   */
+  public static IBindingFactory getFactory(Class<?> clazz) throws JiBXException {
+    IBindingFactory factory = factories.get(clazz);
+    if (factory == null) {
+      factory = BindingDirectory.getFactory(clazz);
+      factories.put(clazz, factory);
+    }
+    return factory;
+  }
+
+  /**
+   * Creates a marshalling context from the cached factory of a class.
+   *
+   * @param clazz the bound class
+   * @return the marshalling context
+   * @throws JiBXException the JiBX exception
+   */
+  public static IMarshallingContext newMarshallingContext(Class<?> clazz) throws JiBXException {
+    return getFactory(clazz).createMarshallingContext();
+  }
+
+  /**
+   * Creates an unmarshalling context from the cached factory of a class.
+   *
+   * @param clazz the bound class
+   * @return the unmarshalling context
+   * @throws JiBXException the JiBX exception
+   */
+  public static IUnmarshallingContext newUnmarshallingContext(Class<?> clazz) throws JiBXException {
+    return getFactory(clazz).createUnmarshallingContext();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cooperative cancellation of a generation. Handlers check the token between
+ * resources, and register the resources they hold (exported archives, JCR
+ * sessions) so that a cancellation from another thread releases them
+ * immediately, which also makes blocked reads fail fast.
+ * <p>
+ * A child token is created for each handler with its own deadline, it's
+ * cancelled with its parent while its own cancellation doesn't affect the
+ * parent.
+ */
+public class CancellationToken {
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(CancellationToken.class);
+
+  /** The parent token, null for a generation token. */
+  private final CancellationToken parent;
+
+  /** The deadline in milliseconds, 0 if none. */
+  private final long deadline;
+
+  /** The resources to release on cancellation. */
+  private final List<Closeable> resources = new ArrayList<Closeable>();
+
+  /** The children tokens. */
+  private final List<CancellationToken> children = new ArrayList<CancellationToken>();
+
+  /** The cancellation reason, null if not cancelled. */
+  private volatile String reason;
+
+  /**
+   * Instantiates a new generation token.
+   *
+   * @param timeout the generation timeout in milliseconds, 0 for none
+   */
+  public CancellationToken(long timeout) {
+    this(null, timeout);
+  }
+
+  /**
+   * Instantiates a new cancellation token.
+   *
+   * @param parent the parent
+   * @param timeout the timeout in milliseconds, 0 for none
+   */
+  private CancellationToken(CancellationToken parent, long timeout) {
+    this.parent = parent;
+    long parentDeadline = parent == null ? 0 : parent.deadline;
+    long ownDeadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    if (parentDeadline > 0 && (ownDeadline == 0 || parentDeadline < ownDeadline)) {
+      this.deadline = parentDeadline;
+    } else {
+      this.deadline = ownDeadline;
+    }
+  }
+
+  /**
+   * Creates a child token, cancelled with this one.
+   *
+   * @param timeout the child timeout in milliseconds, 0 for none
+   * @return the child token
+   */
+  public CancellationToken newChild(long timeout) {
+    CancellationToken child = new CancellationToken(this, timeout);
+    synchronized (this) {
+      if (reason == null) {
+        children.add(child);
+        return child;
+      }
+    }
+    child.cancel(reason);
+    return child;
+  }
+
+  /**
+   * Cancels the token and its children, then releases registered resources.
+   *
+   * @param reason the reason
+   */
+  public void cancel(String reason) {
+    List<Closeable> resourcesToRelease;
+    List<CancellationToken> childrenToCancel;
+    synchronized (this) {
+      if (this.reason != null) {
+        return;
+      }
+      this.reason = reason;
+      resourcesToRelease = new ArrayList<Closeable>(resources);
+      resources.clear();
+      childrenToCancel = new ArrayList<CancellationToken>(children);
+      children.clear();
+    }
+    for (CancellationToken child : childrenToCancel) {
+      child.cancel(reason);
+    }
+    for (Closeable resource : resourcesToRelease) {
+      release(resource);
+    }
+  }
+
+  /**
+   * Checks if is cancelled, explicitly or because the deadline is reached.
+   *
+   * @return true, if is cancelled
+   */
+  public boolean isCancelled() {
+    if (reason != null) {
+      return true;
+    }
+    if (parent != null && parent.isCancelled()) {
+      cancel(parent.getReason());
+      return true;
+    }
+    if (deadline > 0 && System.currentTimeMillis() > deadline) {
+      cancel("Deadline exceeded");
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Throws a {@link GenerationCancelledException} if cancelled.
+   */
+  public void checkCancelled() {
+    if (isCancelled()) {
+      throw new GenerationCancelledException(reason);
+    }
+  }
+
+  /**
+   * Gets the cancellation reason.
+   *
+   * @return the reason, null if not cancelled
+   */
+  public String getReason() {
+    return reason;
+  }
+
+  /**
+   * Gets the deadline.
+   *
+   * @return the deadline in milliseconds, 0 if none
+   */
+  public long getDeadline() {
+    return deadline;
+  }
+
+  /**
+   * Registers a resource to release on cancellation. The resource is released
+   * immediately if the token is already cancelled.
+   *
+   * @param resource the resource
+   */
+  public void register(Closeable resource) {
+    synchronized (this) {
+      if (reason == null) {
+        resources.add(resource);
+        return;
+      }
+    }
+    release(resource);
+    throw new GenerationCancelledException(reason);
+  }
+
+  /**
+   * Unregisters a resource released by its owner.
+   *
+   * @param resource the resource
+   */
+  public synchronized void unregister(Closeable resource) {
+    resources.remove(resource);
+  }
+
+  /**
+   * Release.
+   *
+   * @param resource the resource
+   */
+  private void release(Closeable resource) {
+    try {
+      resource.close();
+    } catch (Exception e) {
+      log.debug("Error while releasing resource of cancelled generation", e);
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Decides how generated archive entries are compressed. Payloads that are
+ * already compressed (images, PDF, archives, media...) are detected using
+ * their file extension or their first bytes and are stored, other entries are
+ * deflated using the configured level.
+ */
+public class CompressionPolicy {
+
+  /** The Constant LEVEL_PROPERTY. */
+  public static final String LEVEL_PROPERTY = "exo.extension.generator.compression.level";
+
+  /** The Constant STORED_EXTENSIONS_PROPERTY. */
+  public static final String STORED_EXTENSIONS_PROPERTY = "exo.extension.generator.compression.storedExtensions";
+
+  /** The Constant SNIFF_CONTENT_PROPERTY. */
+  public static final String SNIFF_CONTENT_PROPERTY = "exo.extension.generator.compression.sniffContent";
+
+  /** The Constant DEFAULT_STORED_EXTENSIONS. */
+  public static final String DEFAULT_STORED_EXTENSIONS = "png,jpg,jpeg,gif,webp,ico,pdf,zip,jar,war,ear,gz,tgz,bz2,xz,7z,rar,mp3,mp4,m4a,m4v,ogg,ogv,webm,avi,mov,flv,swf,woff,woff2,docx,xlsx,pptx,odt,ods,odp";
+
+  /** The Constant MIN_SNIFF_LENGTH. */
+  public static final int MIN_SNIFF_LENGTH = 12;
+
+  /** The deflate level. */
+  private final int level;
+
+  /** The stored extensions. */
+  private final Set<String> storedExtensions;
+
+  /** The sniff content. */
+  private final boolean sniffContent;
+
+  /**
+   * Instantiates a new compression policy.
+   *
+   * @param level the deflate level used for compressible entries, from
+   *          {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}
+   *          or {@link Deflater#DEFAULT_COMPRESSION}
+   * @param storedExtensions file extensions of entries to store
+   * @param sniffContent whether the first bytes of entries are used to detect
+   *          incompressible content
+   */
+  public CompressionPolicy(int level, Set<String> storedExtensions, boolean sniffContent) {
+    if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.level = level;
+    this.storedExtensions = Collections.unmodifiableSet(new HashSet<String>(storedExtensions));
+    this.sniffContent = sniffContent;
+  }
+
+  /**
+   * Creates the policy configured by system properties.
+   *
+   * @return the compression policy
+   */
+  public static CompressionPolicy fromSystemProperties() {
+    int level = Integer.getInteger(LEVEL_PROPERTY, Deflater.DEFAULT_COMPRESSION);
+    String extensions = System.getProperty(STORED_EXTENSIONS_PROPERTY, DEFAULT_STORED_EXTENSIONS);
+    boolean sniffContent = Boolean.parseBoolean(System.getProperty(SNIFF_CONTENT_PROPERTY, "true"));
+    return new CompressionPolicy(level, parseExtensions(extensions), sniffContent);
+  }
+
+  /**
+   * Gets the deflate level used for compressible entries.
+   *
+   * @return the level
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Checks if the entry has to be stored regarding its name.
+   *
+   * @param entryName the entry name
+   * @return true, if the entry extension is declared as incompressible
+   */
+  public boolean isStoredByName(String entryName) {
+    int slashIndex = entryName.lastIndexOf('/');
+    int dotIndex = entryName.lastIndexOf('.');
+    if (dotIndex < 0 || dotIndex < slashIndex) {
+      return false;
+    }
+    return storedExtensions.contains(entryName.substring(dotIndex + 1).toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Checks if the entry has to be stored regarding its first bytes.
+   *
+   * @param bytes the buffer
+   * @param offset the offset of the content first byte in buffer
+   * @param length the available bytes
+   * @return true, if the content signature is one of a compressed format
+   */
+  public boolean isStoredByContent(byte[] bytes, int offset, int length) {
+    if (!sniffContent || length < 4) {
+      return false;
+    }
+    // PNG
+    if (startsWith(bytes, offset, length, 0x89, 'P', 'N', 'G')) {
+      return true;
+    }
+    // JPEG
+    if (startsWith(bytes, offset, length, 0xFF, 0xD8, 0xFF)) {
+      return true;
+    }
+    // GIF
+    if (startsWith(bytes, offset, length, 'G', 'I', 'F', '8')) {
+      return true;
+    }
+    // PDF
+    if (startsWith(bytes, offset, length, '%', 'P', 'D', 'F')) {
+      return true;
+    }
+    // ZIP, JAR, WAR, Office Open XML and ODF documents
+    if (startsWith(bytes, offset, length, 'P', 'K', 0x03, 0x04)) {
+      return true;
+    }
+    // GZIP
+    if (startsWith(bytes, offset, length, 0x1F, 0x8B)) {
+      return true;
+    }
+    // BZIP2
+    if (startsWith(bytes, offset, length, 'B', 'Z', 'h')) {
+      return true;
+    }
+    // 7z
+    if (startsWith(bytes, offset, length, '7', 'z', 0xBC, 0xAF)) {
+      return true;
+    }
+    // RAR
+    if (startsWith(bytes, offset, length, 'R', 'a', 'r', '!')) {
+      return true;
+    }
+    // OGG
+    if (startsWith(bytes, offset, length, 'O', 'g', 'g', 'S')) {
+      return true;
+    }
+    // MP3 with ID3 tag
+    if (startsWith(bytes, offset, length, 'I', 'D', '3')) {
+      return true;
+    }
+    // ISO media: MP4, M4A, MOV
+    if (length >= 8 && bytes[offset + 4] == 'f' && bytes[offset + 5] == 't' && bytes[offset + 6] == 'y' && bytes[offset + 7] == 'p') {
+      return true;
+    }
+    // RIFF WEBP
+    if (length >= MIN_SNIFF_LENGTH && startsWith(bytes, offset, length, 'R', 'I', 'F', 'F') && bytes[offset + 8] == 'W' && bytes[offset + 9] == 'E'
+        && bytes[offset + 10] == 'B' && bytes[offset + 11] == 'P') {
+      return true;
+    }
+    // WOFF, WOFF2
+    if (startsWith(bytes, offset, length, 'w', 'O', 'F', 'F') || startsWith(bytes, offset, length, 'w', 'O', 'F', '2')) {
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Parses a comma separated list of extensions.
+   *
+   * @param extensions the extensions
+   * @return the set of extensions, lower cased and without leading dot
+   */
+  public static Set<String> parseExtensions(String extensions) {
+    Set<String> result = new HashSet<String>();
+    if (extensions == null) {
+      return result;
+    }
+    for (String extension : extensions.split(",")) {
+      extension = extension.trim().toLowerCase(Locale.ENGLISH);
+      if (extension.startsWith(".")) {
+        extension = extension.substring(1);
+      }
+      if (!extension.isEmpty()) {
+        result.add(extension);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Starts with.
+   *
+   * @param bytes the bytes
+   * @param offset the offset
+   * @param length the length
+   * @param signature the signature
+   * @return true, if successful
+   */
+  private static boolean startsWith(byte[] bytes, int offset, int length, int... signature) {
+    if (length < signature.length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length; i++) {
+      if ((bytes[offset + i] & 0xFF) != signature[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
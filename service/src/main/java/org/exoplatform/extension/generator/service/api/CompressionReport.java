@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics about entries compression of a generated archive.
+ */
+public class CompressionReport {
+
+  /** The stored entries. */
+  private long storedEntries;
+
+  /** The stored bytes. */
+  private long storedBytes;
+
+  /** The stored nanos. */
+  private long storedNanos;
+
+  /** The deflated entries. */
+  private long deflatedEntries;
+
+  /** The deflated bytes. */
+  private long deflatedBytes;
+
+  /** The deflated nanos. */
+  private long deflatedNanos;
+
+  /**
+   * Adds an entry.
+   *
+   * @param stored whether the entry was stored
+   */
+  public void addEntry(boolean stored) {
+    if (stored) {
+      storedEntries++;
+    } else {
+      deflatedEntries++;
+    }
+  }
+
+  /**
+   * Adds written bytes and the CPU time spent to write them.
+   *
+   * @param stored whether the bytes belong to a stored entry
+   * @param bytes the bytes
+   * @param nanos the nanos
+   */
+  public void addWrite(boolean stored, long bytes, long nanos) {
+    if (stored) {
+      storedBytes += bytes;
+      storedNanos += nanos;
+    } else {
+      deflatedBytes += bytes;
+      deflatedNanos += nanos;
+    }
+  }
+
+  /**
+   * Gets the stored entries.
+   *
+   * @return the stored entries
+   */
+  public long getStoredEntries() {
+    return storedEntries;
+  }
+
+  /**
+   * Gets the stored bytes.
+   *
+   * @return the stored bytes
+   */
+  public long getStoredBytes() {
+    return storedBytes;
+  }
+
+  /**
+   * Gets the deflated entries.
+   *
+   * @return the deflated entries
+   */
+  public long getDeflatedEntries() {
+    return deflatedEntries;
+  }
+
+  /**
+   * Gets the deflated bytes.
+   *
+   * @return the deflated bytes
+   */
+  public long getDeflatedBytes() {
+    return deflatedBytes;
+  }
+
+  /**
+   * Gets the CPU time spent to deflate entries.
+   *
+   * @return the deflated nanos
+   */
+  public long getDeflatedNanos() {
+    return deflatedNanos;
+  }
+
+  /**
+   * Estimates the CPU time saved by storing incompressible entries: time that
+   * deflating the stored bytes would have taken, at the throughput observed
+   * for deflated entries, minus the time actually spent to store them.
+   *
+   * @return the estimated saved nanos
+   */
+  public long getEstimatedSavedNanos() {
+    if (deflatedBytes == 0 || storedBytes == 0) {
+      return 0;
+    }
+    long estimatedDeflateNanos = (long) ((double) deflatedNanos / deflatedBytes * storedBytes);
+    return Math.max(0, estimatedDeflateNanos - storedNanos);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return "stored " + storedEntries + " entries (" + storedBytes + " bytes), deflated " + deflatedEntries + " entries (" + deflatedBytes + " bytes in "
+        + TimeUnit.NANOSECONDS.toMillis(deflatedNanos) + " ms), estimated CPU time saved: " + TimeUnit.NANOSECONDS.toMillis(getEstimatedSavedNanos()) + " ms";
+  }
+}
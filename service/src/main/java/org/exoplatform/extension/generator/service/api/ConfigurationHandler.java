@@ -31,15 +31,28 @@ public interface ConfigurationHandler {
    * Writes XML files corresponding to the set of selected managed resources in
    * Archive.
    *
+   * @param context the generation context of this handler
    * @param zos Generated WAR output stream
    * @param extensionName the extension name
    * @param tempSelectedResources Set of selected managed resources path
    * @return true if some files was written in archive
    */
-  public abstract boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> tempSelectedResources);
+  public abstract boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> tempSelectedResources);
 
   /**
-   * Gets the configuration paths.
+   * Checks if the handler output only depends on its selected resources and
+   * the GateIN exports recorded in its {@link GenerationContext}, in which case
+   * it can be reused by an incremental generation.
+   *
+   * @return true, if incremental generation is supported
+   */
+  public abstract boolean isIncrementalSupported();
+
+  /**
+   * Gets the configuration paths that don't depend on the selection. Paths
+   * computed from the selected resources are added to the generation context
+   * with {@link GenerationContext#addConfigurationPath(String)}, handlers are
+   * shared by concurrent generations and don't keep per-generation state.
    *
    * @return list of configuration paths written in archive
    */
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Post-processes a marshalled kernel configuration in one pass while it's
+ * written: the root element gets the kernel XSD declaration, empty field
+ * elements (&lt;field name="xxx"/&gt;) are dropped and "custom-extension" is
+ * replaced by the extension name. Matching is done on bytes, which is safe
+ * for UTF-8 since all patterns are ASCII. JiBX closes this stream, the
+ * target ZipOutputStream then stays open.
+ */
+public class ConfigurationXMLOutputStream extends PatternReplacingOutputStream {
+
+  /** The Constant CONFIGURATION_ELEMENT. */
+  private static final byte[] CONFIGURATION_ELEMENT = getBytes("<configuration>", "US-ASCII");
+
+  /** The Constant EMPTY_FIELD_START. */
+  private static final byte[] EMPTY_FIELD_START = getBytes("<field name=\"", "US-ASCII");
+
+  /** The Constant EMPTY_FIELD_END. */
+  private static final byte[] EMPTY_FIELD_END = getBytes("\"/>", "US-ASCII");
+
+  /** The Constant CUSTOM_EXTENSION. */
+  private static final byte[] CUSTOM_EXTENSION = getBytes("custom-extension", "US-ASCII");
+
+  /** The Constant MAX_FIELD_NAME_LENGTH, longer names are written as is. */
+  private static final int MAX_FIELD_NAME_LENGTH = 256;
+
+  /** The configuration element replacement. */
+  private final byte[] configurationElementReplacement;
+
+  /** The extension name. */
+  private final byte[] extensionName;
+
+  /**
+   * Instantiates a new configuration XML output stream.
+   *
+   * @param out the target stream
+   * @param configurationElementReplacement the root element with its
+   *          namespace declarations
+   * @param extensionName the extension name
+   */
+  public ConfigurationXMLOutputStream(OutputStream out, String configurationElementReplacement, String extensionName) {
+    super(out, EMPTY_FIELD_START.length + MAX_FIELD_NAME_LENGTH + EMPTY_FIELD_END.length);
+    this.configurationElementReplacement = getBytes(configurationElementReplacement, "UTF-8");
+    this.extensionName = getBytes(extensionName, "UTF-8");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isPatternStart(byte b) {
+    return b == '<' || b == 'c';
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected int matchPending() throws IOException {
+    int configurationMatch = matchLiteral(CONFIGURATION_ELEMENT);
+    int fieldMatch = matchEmptyField();
+    int extensionMatch = matchLiteral(CUSTOM_EXTENSION);
+    if (configurationMatch == FULL_MATCH) {
+      writeOut(configurationElementReplacement);
+      return FULL_MATCH;
+    } else if (fieldMatch == FULL_MATCH) {
+      return FULL_MATCH;
+    } else if (extensionMatch == FULL_MATCH) {
+      writeOut(extensionName);
+      return FULL_MATCH;
+    } else if (configurationMatch == PARTIAL_MATCH || fieldMatch == PARTIAL_MATCH || extensionMatch == PARTIAL_MATCH) {
+      return PARTIAL_MATCH;
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * Matches pending bytes against an empty field element, whose name is made
+   * of characters between 'A' and 'z'.
+   *
+   * @return the match status
+   */
+  private int matchEmptyField() {
+    int i = 0;
+    for (; i < EMPTY_FIELD_START.length; i++) {
+      if (i == pendingCount) {
+        return PARTIAL_MATCH;
+      }
+      if (pending[i] != EMPTY_FIELD_START[i]) {
+        return NO_MATCH;
+      }
+    }
+    while (i < pendingCount && pending[i] >= 'A' && pending[i] <= 'z') {
+      i++;
+    }
+    if (i - EMPTY_FIELD_START.length > MAX_FIELD_NAME_LENGTH) {
+      return NO_MATCH;
+    }
+    for (int j = 0; j < EMPTY_FIELD_END.length; j++, i++) {
+      if (i == pendingCount) {
+        return PARTIAL_MATCH;
+      }
+      if (pending[i] != EMPTY_FIELD_END[j]) {
+        return NO_MATCH;
+      }
+    }
+    return i == pendingCount ? FULL_MATCH : NO_MATCH;
+  }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk-backed cache of archives exported by GateIN Management Controller,
+ * keyed by managed path and export filters. The cache is bounded by the total
+ * size of its files, least recently used exports are evicted first, and
+ * entries expire after a configured time to live since GateIN doesn't notify
+ * resources modifications. Files returned by {@link #get(String, String...)}
+ * and {@link #put(String, String[], File)} are pinned until they are released
+ * by {@link #release(File)}, evicted files are deleted once they aren't pinned
+ * anymore.
+ */
+public class ExportCache {
+
+  /** The Constant MAX_SIZE_PROPERTY. */
+  public static final String MAX_SIZE_PROPERTY = "exo.extension.generator.exportCache.maxSize";
+
+  /** The Constant TTL_PROPERTY. */
+  public static final String TTL_PROPERTY = "exo.extension.generator.exportCache.ttl";
+
+  /** The Constant DIRECTORY_PROPERTY. */
+  public static final String DIRECTORY_PROPERTY = "exo.extension.generator.exportCache.dir";
+
+  /** The log. */
+  private static final Log log = ExoLogger.getLogger(ExportCache.class);
+
+  /** The instance. */
+  private static ExportCache instance;
+
+  /** The directory. */
+  private final File directory;
+
+  /** The max size in bytes. */
+  private final long maxSize;
+
+  /** The time to live in milliseconds. */
+  private final long ttl;
+
+  /** The entries in access order. */
+  private final LinkedHashMap<String, CachedExport> entries = new LinkedHashMap<String, CachedExport>(16, 0.75f, true);
+
+  /** The pinned exports by file. */
+  private final Map<File, CachedExport> pinnedExports = new HashMap<File, CachedExport>();
+
+  /** The current size. */
+  private long size;
+
+  /** The hits. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** The misses. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Instantiates a new export cache. Files left in directory by a previous
+   * instance are deleted since they aren't indexed anymore.
+   *
+   * @param directory the directory
+   * @param maxSize the max size in bytes, 0 disables the cache
+   * @param ttl the time to live in milliseconds
+   */
+  public ExportCache(File directory, long maxSize, long ttl) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+    this.ttl = ttl;
+    if (isEnabled()) {
+      try {
+        FileUtils.forceMkdir(directory);
+        FileUtils.cleanDirectory(directory);
+      } catch (IOException e) {
+        log.warn("Unable to initialize export cache directory: " + directory.getAbsolutePath(), e);
+      }
+    }
+  }
+
+  /**
+   * Gets the shared instance configured by system properties. The cache is
+   * disabled unless exo.extension.generator.exportCache.maxSize is set.
+   *
+   * @return the instance
+   */
+  public static synchronized ExportCache getInstance() {
+    if (instance == null) {
+      long maxSize = Long.getLong(MAX_SIZE_PROPERTY, 0L);
+      long ttl = TimeUnit.SECONDS.toMillis(Long.getLong(TTL_PROPERTY, 600L));
+      File directory = new File(System.getProperty(DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir") + File.separator + "extension-generator-export-cache"));
+      instance = new ExportCache(directory, maxSize, ttl);
+    }
+    return instance;
+  }
+
+  /**
+   * Checks if is enabled.
+   *
+   * @return true, if is enabled
+   */
+  public boolean isEnabled() {
+    return maxSize > 0 && ttl > 0;
+  }
+
+  /**
+   * Gets the cached export file, pinned until it's released by
+   * {@link #release(File)}.
+   *
+   * @param path the managed path
+   * @param filters the export filters
+   * @return the cached file or null if not found or expired
+   */
+  public File get(String path, String... filters) {
+    if (!isEnabled()) {
+      return null;
+    }
+    String key = ExportDigest.getKey(path, filters);
+    synchronized (this) {
+      CachedExport cachedExport = entries.get(key);
+      if (cachedExport != null && !cachedExport.isExpired()) {
+        if (cachedExport.getFile().exists()) {
+          hits.incrementAndGet();
+          return pin(cachedExport);
+        }
+        remove(key);
+      } else if (cachedExport != null) {
+        remove(key);
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Moves an exported file in the cache. The file isn't cached if the cache is
+   * disabled or if it's bigger than the cache.
+   *
+   * @param path the managed path
+   * @param filters the export filters
+   * @param exportedFile the exported file
+   * @return the cached file pinned until it's released by
+   *         {@link #release(File)}, or null if the exported file wasn't cached
+   *         and remains owned by the caller
+   */
+  public File put(String path, String[] filters, File exportedFile) {
+    if (!isEnabled() || exportedFile.length() > maxSize) {
+      return null;
+    }
+    String key = ExportDigest.getKey(path, filters);
+    File cachedFile = new File(directory, Integer.toHexString(key.hashCode()) + "-" + System.nanoTime() + ".zip");
+    try {
+      FileUtils.moveFile(exportedFile, cachedFile);
+    } catch (IOException e) {
+      log.warn("Unable to cache export of " + path, e);
+      return null;
+    }
+    synchronized (this) {
+      remove(key);
+      CachedExport cachedExport = new CachedExport(path, cachedFile, System.currentTimeMillis() + ttl);
+      entries.put(key, cachedExport);
+      size += cachedExport.getLength();
+      pin(cachedExport);
+      Iterator<Map.Entry<String, CachedExport>> iterator = entries.entrySet().iterator();
+      while (size > maxSize && iterator.hasNext()) {
+        Map.Entry<String, CachedExport> eldest = iterator.next();
+        if (eldest.getKey().equals(key)) {
+          continue;
+        }
+        iterator.remove();
+        delete(eldest.getValue());
+      }
+    }
+    return cachedFile;
+  }
+
+  /**
+   * Releases a file returned by {@link #get(String, String...)} or
+   * {@link #put(String, String[], File)}. The file is deleted if it was
+   * evicted and isn't pinned anymore.
+   *
+   * @param file the cached file
+   */
+  public synchronized void release(File file) {
+    CachedExport cachedExport = pinnedExports.get(file);
+    if (cachedExport == null) {
+      return;
+    }
+    cachedExport.pins--;
+    if (cachedExport.pins == 0) {
+      pinnedExports.remove(file);
+      if (cachedExport.evicted) {
+        deleteFile(cachedExport.getFile());
+      }
+    }
+  }
+
+  /**
+   * Invalidates cached exports of a managed path and its sub resources.
+   *
+   * @param path the managed path
+   */
+  public synchronized void invalidate(String path) {
+    Iterator<CachedExport> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      CachedExport cachedExport = iterator.next();
+      if (cachedExport.getPath().equals(path) || cachedExport.getPath().startsWith(path.endsWith("/") ? path : path + "/")) {
+        iterator.remove();
+        delete(cachedExport);
+      }
+    }
+  }
+
+  /**
+   * Invalidates all cached exports.
+   */
+  public synchronized void invalidateAll() {
+    for (CachedExport cachedExport : entries.values()) {
+      delete(cachedExport);
+    }
+    entries.clear();
+  }
+
+  /**
+   * Gets the current size of cached files.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the number of cached exports.
+   *
+   * @return the count
+   */
+  public synchronized int getCount() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the hits.
+   *
+   * @return the hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the misses.
+   *
+   * @return the misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Removes the entry of a key.
+   *
+   * @param key the key
+   */
+  private void remove(String key) {
+    CachedExport cachedExport = entries.remove(key);
+    if (cachedExport != null) {
+      delete(cachedExport);
+    }
+  }
+
+  /**
+   * Pins a cached export.
+   *
+   * @param cachedExport the cached export
+   * @return the cached file
+   */
+  private File pin(CachedExport cachedExport) {
+    cachedExport.pins++;
+    pinnedExports.put(cachedExport.getFile(), cachedExport);
+    return cachedExport.getFile();
+  }
+
+  /**
+   * Deletes the file of an evicted export, or defers it until the file is
+   * released if it's still read by a generation.
+   *
+   * @param cachedExport the cached export
+   */
+  private void delete(CachedExport cachedExport) {
+    size -= cachedExport.getLength();
+    cachedExport.evicted = true;
+    if (cachedExport.pins == 0) {
+      deleteFile(cachedExport.getFile());
+    }
+  }
+
+  /**
+   * Deletes a file.
+   *
+   * @param file the file
+   */
+  private static void deleteFile(File file) {
+    if (file.exists() && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * A cached export.
+   */
+  private static class CachedExport {
+
+    /** The path. */
+    private final String path;
+
+    /** The file. */
+    private final File file;
+
+    /** The length. */
+    private final long length;
+
+    /** The expiration time. */
+    private final long expirationTime;
+
+    /** The number of pins, guarded by the cache. */
+    private int pins;
+
+    /** Whether it's evicted, guarded by the cache. */
+    private boolean evicted;
+
+    /**
+     * Instantiates a new cached export.
+     *
+     * @param path the path
+     * @param file the file
+     * @param expirationTime the expiration time
+     */
+    public CachedExport(String path, File file, long expirationTime) {
+      this.path = path;
+      this.file = file;
+      this.length = file.length();
+      this.expirationTime = expirationTime;
+    }
+
+    /**
+     * Gets the path.
+     *
+     * @return the path
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Gets the file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+      return file;
+    }
+
+    /**
+     * Gets the length.
+     *
+     * @return the length
+     */
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * Checks if is expired.
+     *
+     * @return true, if is expired
+     */
+    public boolean isExpired() {
+      return System.currentTimeMillis() > expirationTime;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * SHA-1 digest of the content of an exported archive: its entry names sorted
+ * and the uncompressed content of each entry. Zip metadata, like entries
+ * timestamps, order or compression, is ignored since GateIN writes a new
+ * archive for each export even if resources weren't modified.
+ */
+class ExportContentDigest {
+
+  /** The Constant UTF_8. */
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** The digests of entries content by entry name. */
+  private final Map<String, byte[]> entryDigests = new TreeMap<String, byte[]>();
+
+  /** The digest of the current entry. */
+  private final MessageDigest entryDigest = ExportedResource.newMessageDigest();
+
+  /** The current entry name. */
+  private String entryName;
+
+  /**
+   * Computes the content digest of an archive file.
+   *
+   * @param file the file
+   * @return the hexadecimal digest
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static String digest(File file) throws IOException {
+    ExportContentDigest contentDigest = new ExportContentDigest();
+    ZipInputStream zipInputStream = new ZipInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      byte[] buffer = new byte[8192];
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        contentDigest.startEntry(entry.getName());
+        int read;
+        while ((read = zipInputStream.read(buffer)) > 0) {
+          contentDigest.update(buffer, 0, read);
+        }
+      }
+    } finally {
+      zipInputStream.close();
+    }
+    return contentDigest.digest();
+  }
+
+  /**
+   * Starts an entry, the previous one ends.
+   *
+   * @param name the entry name
+   */
+  void startEntry(String name) {
+    endEntry();
+    entryName = name;
+  }
+
+  /**
+   * Updates the digest of the current entry.
+   *
+   * @param bytes the bytes
+   * @param offset the offset
+   * @param length the length
+   */
+  void update(byte[] bytes, int offset, int length) {
+    if (entryName != null) {
+      entryDigest.update(bytes, offset, length);
+    }
+  }
+
+  /**
+   * Ends the archive and computes its digest.
+   *
+   * @return the hexadecimal digest
+   */
+  String digest() {
+    endEntry();
+    MessageDigest messageDigest = ExportedResource.newMessageDigest();
+    for (Map.Entry<String, byte[]> entry : entryDigests.entrySet()) {
+      messageDigest.update(entry.getKey().getBytes(UTF_8));
+      messageDigest.update((byte) 0);
+      messageDigest.update(entry.getValue());
+    }
+    return Utils.toHex(messageDigest.digest());
+  }
+
+  /**
+   * Ends the current entry.
+   */
+  private void endEntry() {
+    if (entryName != null) {
+      entryDigests.put(entryName, entryDigest.digest());
+      entryName = null;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Digest of an archive exported by GateIN Management Controller, identified by
+ * its managed path and export filters. The change marker summarizes the
+ * READ_RESOURCE listing of the path, it's compared instead of exporting again
+ * to detect modifications.
+ */
+public class ExportDigest {
+
+  /** The path. */
+  private String path;
+
+  /** The filters. */
+  private List<String> filters;
+
+  /** The SHA-1 digest of exported archive content. */
+  private String digest;
+
+  /** The change marker, null if unknown. */
+  private String marker;
+
+  /**
+   * Instantiates a new export digest.
+   *
+   * @param path the path
+   * @param filters the filters
+   * @param digest the digest
+   */
+  public ExportDigest(String path, String[] filters, String digest) {
+    this.path = path;
+    this.filters = filters == null ? new ArrayList<String>() : new ArrayList<String>(Arrays.asList(filters));
+    this.digest = digest;
+  }
+
+  /**
+   * Gets the path.
+   *
+   * @return the path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Gets the filters.
+   *
+   * @return the filters
+   */
+  public String[] getFilters() {
+    return filters == null ? new String[0] : filters.toArray(new String[filters.size()]);
+  }
+
+  /**
+   * Gets the digest.
+   *
+   * @return the digest
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  /**
+   * Gets the change marker.
+   *
+   * @return the change marker, null if unknown
+   */
+  public String getMarker() {
+    return marker;
+  }
+
+  /**
+   * Sets the change marker.
+   *
+   * @param marker the new change marker
+   */
+  public void setMarker(String marker) {
+    this.marker = marker;
+  }
+
+  /**
+   * Gets the key of this export.
+   *
+   * @return the key
+   */
+  public String getKey() {
+    return getKey(path, getFilters());
+  }
+
+  /**
+   * Computes a key identifying an export regardless of filters order.
+   *
+   * @param path the managed path
+   * @param filters the export filters
+   * @return the key
+   */
+  public static String getKey(String path, String... filters) {
+    if (filters == null || filters.length == 0) {
+      return path;
+    }
+    List<String> sortedFilters = new ArrayList<String>(Arrays.asList(filters));
+    Collections.sort(sortedFilters);
+    StringBuilder key = new StringBuilder(path);
+    for (String filter : sortedFilters) {
+      key.append('|').append(filter);
+    }
+    return key.toString();
+  }
+}
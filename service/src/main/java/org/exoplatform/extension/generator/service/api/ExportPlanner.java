@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.gatein.management.api.ContentType;
+import org.gatein.management.api.PathAddress;
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+import org.gatein.management.api.operation.OperationNames;
+import org.gatein.management.api.operation.model.ReadResourceModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Turns a selection of managed resources into the smallest list of paths to
+ * export. When all children of a managed resource are selected, the resource
+ * is exported once instead of each child, GateIN exports of a parent path
+ * containing the same entries as the exports of its children. Group sites are
+ * always exported one by one: group sites of spaces are hidden from the
+ * selection, so selecting all listed group sites doesn't select them all.
+ */
+public class ExportPlanner {
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(ExportPlanner.class);
+
+  /** The management controller. */
+  private final ManagementController managementController;
+
+  /**
+   * Instantiates a new export planner.
+   *
+   * @param managementController the management controller
+   */
+  public ExportPlanner(ManagementController managementController) {
+    this.managementController = managementController;
+  }
+
+  /**
+   * Plans the exports of resources selected under a category.
+   *
+   * @param categoryPath the managed path of the category
+   * @param selectedResources the selected resources of the category
+   * @return the paths to export, the category path alone if all its resources
+   *         are selected
+   */
+  public List<String> plan(String categoryPath, Collection<String> selectedResources) {
+    String rootPath = categoryPath.endsWith("/") ? categoryPath.substring(0, categoryPath.length() - 1) : categoryPath;
+    List<String> exports = new ArrayList<String>();
+    TreeSet<String> resourcesUnderRoot = new TreeSet<String>();
+    for (String resourcePath : selectedResources) {
+      if (resourcePath.equals(rootPath) || resourcePath.startsWith(rootPath + "/")) {
+        resourcesUnderRoot.add(resourcePath);
+      } else {
+        // Not addressable from the category, export it as is
+        exports.add(resourcePath);
+      }
+    }
+    if (isGroupSitePath(rootPath)) {
+      exports.addAll(resourcesUnderRoot);
+    } else if (!resourcesUnderRoot.isEmpty()) {
+      exports.addAll(plan(rootPath, resourcesUnderRoot));
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Export of " + selectedResources.size() + " resources of " + rootPath + " planned in " + exports.size() + " requests: " + exports);
+    }
+    return exports;
+  }
+
+  /**
+   * Plans the exports of a resource subtree.
+   *
+   * @param path the managed path
+   * @param selectedResources the selected resources of the subtree
+   * @return the paths to export, path alone if the subtree is fully selected
+   */
+  private List<String> plan(String path, SortedSet<String> selectedResources) {
+    if (selectedResources.contains(path)) {
+      return Collections.singletonList(path);
+    }
+    Set<String> children = getChildren(path);
+    if (children == null || children.isEmpty()) {
+      return new ArrayList<String>(selectedResources);
+    }
+    List<String> exports = new ArrayList<String>();
+    SortedSet<String> remainingResources = new TreeSet<String>(selectedResources);
+    boolean complete = true;
+    for (String child : children) {
+      String childPath = path + "/" + child;
+      SortedSet<String> childResources = new TreeSet<String>(selectedResources.subSet(childPath + "/", childPath + "/\uffff"));
+      if (selectedResources.contains(childPath)) {
+        childResources.add(childPath);
+      }
+      if (childResources.isEmpty()) {
+        complete = false;
+        continue;
+      }
+      remainingResources.removeAll(childResources);
+      List<String> childExports = plan(childPath, childResources);
+      complete &= childExports.size() == 1 && childExports.get(0).equals(childPath);
+      exports.addAll(childExports);
+    }
+    if (complete && remainingResources.isEmpty()) {
+      return Collections.singletonList(path);
+    }
+    // Selected resources unknown by the read operation
+    exports.addAll(remainingResources);
+    return exports;
+  }
+
+  /**
+   * Checks if a path is the group sites category or one of its resources.
+   *
+   * @param path the managed path
+   * @return true, if it's a group sites path
+   */
+  private static boolean isGroupSitePath(String path) {
+    return path.equals(ExtensionGenerator.SITES_GROUP_PATH) || path.startsWith(ExtensionGenerator.SITES_GROUP_PATH + "/");
+  }
+
+  /**
+   * Reads the children of a managed resource.
+   *
+   * @param path the managed path
+   * @return the children names, null if they can't be read
+   */
+  private Set<String> getChildren(String path) {
+    try {
+      ManagedRequest request = ManagedRequest.Factory.create(OperationNames.READ_RESOURCE, PathAddress.pathAddress(path), ContentType.JSON);
+      ManagedResponse response = managementController.execute(request);
+      if (response == null || !response.getOutcome().isSuccess() || !(response.getResult() instanceof ReadResourceModel)) {
+        log.debug("Unable to read children of " + path + ", export selected resources one by one.");
+        return null;
+      }
+      return ((ReadResourceModel) response.getResult()).getChildren();
+    } catch (Exception e) {
+      log.warn("Error while reading children of " + path + ", export selected resources one by one.", e);
+      return null;
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.gatein.management.api.ContentType;
+import org.gatein.management.api.PathAddress;
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+import org.gatein.management.api.operation.OperationNames;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipFile;
+
+/**
+ * Archive exported by GateIN Management Controller for a managed path, with
+ * the SHA-1 digest of its content, see {@link ExportContentDigest}.
+ */
+public class ExportedResource {
+
+  /** The path. */
+  private final String path;
+
+  /** The filters. */
+  private final String[] filters;
+
+  /** The file. */
+  private final File file;
+
+  /** The digest. */
+  private final String digest;
+
+  /** Whether the file is owned by {@link ExportCache}. */
+  private final boolean cached;
+
+  /** Whether it's released. */
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  /**
+   * Instantiates a new exported resource.
+   *
+   * @param path the path
+   * @param filters the filters
+   * @param file the file
+   * @param digest the digest
+   * @param cached the cached
+   */
+  public ExportedResource(String path, String[] filters, File file, String digest, boolean cached) {
+    this.path = path;
+    this.filters = filters;
+    this.file = file;
+    this.digest = digest;
+    this.cached = cached;
+  }
+
+  /**
+   * Call GateIN Management Controller to export a resource using options
+   * passed in filters. Successful exports are reused from {@link ExportCache}
+   * when it's enabled.
+   *
+   * @param managementController the management controller
+   * @param path managed path
+   * @param filters passed to GateIN Management SPI
+   * @return the exported resource
+   * @throws Exception the exception
+   */
+  public static ExportedResource export(ManagementController managementController, String path, String... filters) throws Exception {
+    return export(managementController, null, path, filters);
+  }
+
+  /**
+   * Call GateIN Management Controller to export a resource using options
+   * passed in filters. The cancellation token is checked before the call and
+   * while the result is written, a cancellation closes the written file.
+   *
+   * @param managementController the management controller
+   * @param cancellationToken the cancellation token, can be null
+   * @param path managed path
+   * @param filters passed to GateIN Management SPI
+   * @return the exported resource
+   * @throws Exception the exception
+   */
+  public static ExportedResource export(ManagementController managementController,
+                                        final CancellationToken cancellationToken,
+                                        String path,
+                                        String... filters) throws Exception {
+    GenerationMetrics metrics = GenerationMetrics.getInstance();
+    long startTime = System.currentTimeMillis();
+    ExportCache exportCache = ExportCache.getInstance();
+    File cachedFile = exportCache.get(path, filters);
+    if (cachedFile != null) {
+      try {
+        ExportedResource exportedResource = new ExportedResource(path, filters, cachedFile, ExportContentDigest.digest(cachedFile), true);
+        metrics.recordExport(path, OperationMetrics.Outcome.REUSED, System.currentTimeMillis() - startTime, -1);
+        return exportedResource;
+      } catch (IOException e) {
+        // Deleted meanwhile, export it again
+        exportCache.release(cachedFile);
+        exportCache.invalidate(path);
+      }
+    }
+
+    ManagedRequest request = newExportRequest(path, filters);
+    // Call GateIN Management SPI
+    if (cancellationToken != null) {
+      cancellationToken.checkCancelled();
+    }
+    ManagedResponse response = null;
+    File tmpFile = null;
+    String digest = null;
+    OutputStream outputStream = null;
+    try {
+      response = managementController.execute(request);
+      tmpFile = File.createTempFile("exo", "-extension-generator.zip");
+      outputStream = new BufferedOutputStream(new FileOutputStream(tmpFile));
+      if (cancellationToken != null) {
+        outputStream = new ProxyOutputStream(outputStream) {
+          @Override
+          protected void beforeWrite(int n) {
+            cancellationToken.checkCancelled();
+          }
+        };
+        cancellationToken.register(outputStream);
+      }
+      response.writeResult(outputStream, false);
+      if (cancellationToken != null) {
+        cancellationToken.unregister(outputStream);
+        cancellationToken.checkCancelled();
+      }
+      outputStream.close();
+      outputStream = null;
+      digest = ExportContentDigest.digest(tmpFile);
+    } catch (Exception e) {
+      if (outputStream != null) {
+        try {
+          outputStream.close();
+        } catch (IOException ioExp) {
+          // Nothing to do
+        }
+      }
+      if (tmpFile != null && !tmpFile.delete()) {
+        tmpFile.deleteOnExit();
+      }
+      boolean cancelled = cancellationToken != null && cancellationToken.isCancelled();
+      metrics.recordExport(path,
+                           cancelled ? OperationMetrics.Outcome.CANCELLED : OperationMetrics.Outcome.FAILURE,
+                           System.currentTimeMillis() - startTime,
+                           -1);
+      throw e;
+    }
+    long length = tmpFile.length();
+    metrics.tempFileCreated(length);
+    metrics.recordExport(path,
+                         response.getOutcome().isSuccess() ? OperationMetrics.Outcome.SUCCESS : OperationMetrics.Outcome.FAILURE,
+                         System.currentTimeMillis() - startTime,
+                         length);
+    if (response.getOutcome().isSuccess()) {
+      cachedFile = exportCache.put(path, filters, tmpFile);
+      if (cachedFile != null) {
+        // Owned by the cache now
+        metrics.tempFileDeleted(length);
+        return new ExportedResource(path, filters, cachedFile, digest, true);
+      }
+    }
+    return new ExportedResource(path, filters, tmpFile, digest, false);
+  }
+
+  /**
+   * Opens the exported archive.
+   *
+   * @return the zip file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public ZipFile open() throws IOException {
+    return new ZipFile(file);
+  }
+
+  /**
+   * Deletes the exported file if it's not owned by the cache, unpins it
+   * otherwise. Next calls do nothing.
+   */
+  public void release() {
+    if (!released.compareAndSet(false, true)) {
+      return;
+    }
+    if (cached) {
+      ExportCache.getInstance().release(file);
+    } else if (file.exists()) {
+      GenerationMetrics.getInstance().tempFileDeleted(file.length());
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Gets the path.
+   *
+   * @return the path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Gets the filters.
+   *
+   * @return the filters
+   */
+  public String[] getFilters() {
+    return filters;
+  }
+
+  /**
+   * Gets the file.
+   *
+   * @return the file
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Gets the SHA-1 digest of the exported archive content.
+   *
+   * @return the digest
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  /**
+   * Checks if the file is owned by {@link ExportCache}.
+   *
+   * @return true, if is cached
+   */
+  public boolean isCached() {
+    return cached;
+  }
+
+  /**
+   * New export request.
+   *
+   * @param path managed path
+   * @param filters passed to GateIN Management SPI
+   * @return the managed request
+   */
+  static ManagedRequest newExportRequest(String path, String... filters) {
+    if (filters != null && filters.length > 0) {
+      Map<String, List<String>> attributes = new HashMap<String, List<String>>();
+      attributes.put("filter", Arrays.asList(filters));
+      return ManagedRequest.Factory.create(OperationNames.EXPORT_RESOURCE, PathAddress.pathAddress(path), attributes, ContentType.ZIP);
+    }
+    return ManagedRequest.Factory.create(OperationNames.EXPORT_RESOURCE, PathAddress.pathAddress(path), ContentType.ZIP);
+  }
+
+  /**
+   * New message digest.
+   *
+   * @return the message digest
+   */
+  static MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (Exception e) {
+      throw new IllegalStateException("SHA-1 algorithm isn't available", e);
+    }
+  }
+}
@@ -18,7 +18,10 @@
  */
 package org.exoplatform.extension.generator.service.api;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -82,6 +85,15 @@ public interface ExtensionGenerator {
   /** The Constant GADGET_PATH. */
   public static final String GADGET_PATH = "/gadget::";
 
+  /** The Constant ARCHIVE_TYPE_MAVEN. */
+  public static final String ARCHIVE_TYPE_MAVEN = "maven";
+
+  /** The Constant ARCHIVE_TYPE_PACKAGE. */
+  public static final String ARCHIVE_TYPE_PACKAGE = "package";
+
+  /** The Constant ARCHIVE_TYPE_WAR. */
+  public static final String ARCHIVE_TYPE_WAR = "war";
+
   /**
    * Returns the list of sub resources of MOP of type portalsites computed from
    * GateIN Management SPI.
@@ -98,6 +110,15 @@ public interface ExtensionGenerator {
    */
   List<Node> getGroupSiteNodes();
 
+  /**
+   * Returns the list of sub resources of MOP of type groupsites computed from
+   * GateIN Management SPI, optionally without the sites of spaces.
+   *
+   * @param excludeSpaces true to exclude group sites of spaces
+   * @return list of group sites managed paths.
+   */
+  List<Node> getGroupSiteNodes(boolean excludeSpaces);
+
   /**
    * Returns the list of sub resources of MOP of type usersites computed from
    * GateIN Management SPI.
@@ -229,6 +250,49 @@ public interface ExtensionGenerator {
    */
   List<Node> getGadgets();
 
+  /**
+   * Returns the current snapshot of the resources displayed to select
+   * resources, shared by all users until it expires or is invalidated. Users
+   * keep the snapshot they browse, to page consistent listings.
+   *
+   * @return the resources snapshot
+   */
+  ResourcesSnapshot getResourcesSnapshot();
+
+  /**
+   * Returns a page of the resources of a category, from the current
+   * snapshot. The filter matches, ignoring case, the text or the path of
+   * resources.
+   *
+   * @param categoryPath the category path, one of the keys of
+   *          {@link ResourcesSnapshot#getResources()}
+   * @param offset the offset of the first resource of the page
+   * @param limit the maximum number of resources of the page, negative for no
+   *          limit
+   * @param filter the text filter, null or empty to match all resources
+   * @return the page of resources
+   */
+  NodesPage getNodes(String categoryPath, int offset, int limit, String filter);
+
+  /**
+   * Invalidates the snapshot returned by {@link #getResourcesSnapshot()}, the
+   * next call returns a new snapshot listing resources again.
+   */
+  void invalidateResourcesSnapshot();
+
+  /**
+   * Invalidates the exports of a managed path and its sub resources cached by
+   * {@link ExportCache}, to include modifications done since their export.
+   *
+   * @param path the managed path
+   */
+  void invalidateExportCache(String path);
+
+  /**
+   * Invalidates all the exports cached by {@link ExportCache}.
+   */
+  void invalidateExportCache();
+
   /**
    * Generates the WAR Extension by including seleted managed paths to export.
    *
@@ -261,9 +325,158 @@ public interface ExtensionGenerator {
    */
   InputStream generateExtensionMavenProject(String extensionName, Set<String> selectedResources) throws Exception;
 
+  /**
+   * Streams the WAR Extension in outputStream by including seleted managed
+   * paths to export. The archive is finished but outputStream is not closed.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateWARExtension(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the ZIP file containing WAR Extension and Activation JAR in
+   * outputStream. The archive is finished but outputStream is not closed.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateExtensionZip(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the Maven Project containing modules for WAR Extension and
+   * Activation JAR in outputStream. The archive is finished but outputStream is
+   * not closed.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources Selected Managed Resources Paths.
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateExtensionMavenProject(String extensionName, Set<String> selectedResources, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the WAR Extension in outputStream, reusing from previousArchive
+   * the generated files of resources that didn't change. previousArchive is a
+   * WAR Extension, a package ZIP or a Maven Project generated with a manifest
+   * for the same extension name, otherwise all resources are generated.
+   * Resources are compared by their READ_RESOURCE listings, a modification
+   * that doesn't change those listings isn't detected.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previously generated extension, null for a
+   *          full generation
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateWARExtension(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the ZIP file containing WAR Extension and Activation JAR in
+   * outputStream, reusing from previousArchive the generated files of
+   * resources that didn't change.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources the selected resources
+   * @param previousArchive the previously generated extension, null for a
+   *          full generation
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateExtensionZip(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the Maven Project containing modules for WAR Extension and
+   * Activation JAR in outputStream, reusing from previousArchive the generated
+   * files of resources that didn't change.
+   *
+   * @param extensionName the extension name
+   * @param selectedResources Selected Managed Resources Paths.
+   * @param previousArchive the previously generated extension, null for a
+   *          full generation
+   * @param outputStream the output stream
+   * @throws Exception the exception
+   */
+  void generateExtensionMavenProject(String extensionName, Set<String> selectedResources, File previousArchive, OutputStream outputStream) throws Exception;
+
+  /**
+   * Streams the generation of an extension, run by the bounded pool of
+   * threads of submitted generations. Archive entries are read from the
+   * returned stream while they are generated, so that a download starts
+   * without waiting for the end of the generation. Closing the stream before
+   * its end cancels the generation.
+   *
+   * @param extensionName the extension name
+   * @param archiveType {@link #ARCHIVE_TYPE_MAVEN},
+   *          {@link #ARCHIVE_TYPE_PACKAGE} or {@link #ARCHIVE_TYPE_WAR}
+   * @param selectedResources the selected resources
+   * @return the stream of the generated archive, failing with an
+   *         {@link IOException} at its end if the generation failed
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws java.util.concurrent.RejectedExecutionException if too many
+   *           generations are already waiting
+   */
+  InputStream streamGeneration(String extensionName, String archiveType, Set<String> selectedResources) throws IOException;
+
+  /**
+   * Submits the generation of an extension, run in background by a bounded
+   * pool of threads. The generated archive is kept on disk until it is
+   * downloaded with {@link #takeGenerationResult(String)}.
+   *
+   * @param extensionName the extension name
+   * @param archiveType {@link #ARCHIVE_TYPE_MAVEN},
+   *          {@link #ARCHIVE_TYPE_PACKAGE} or {@link #ARCHIVE_TYPE_WAR}
+   * @param selectedResources the selected resources
+   * @return the job id
+   * @throws java.util.concurrent.RejectedExecutionException if too many
+   *           generations are already waiting
+   */
+  String submitGeneration(String extensionName, String archiveType, Set<String> selectedResources);
+
+  /**
+   * Gets a submitted generation, to poll its progress.
+   *
+   * @param jobId the job id
+   * @return the generation job, null if unknown, downloaded or expired
+   */
+  GenerationJob getGenerationJob(String jobId);
+
+  /**
+   * Cancels a submitted generation. A queued generation won't start, a
+   * running one stops at the next cancellation check of its handlers and
+   * releases its temp files and JCR sessions.
+   *
+   * @param jobId the job id
+   */
+  void cancelGenerationJob(String jobId);
+
+  /**
+   * Takes the archive generated by a job. The job is removed and the archive
+   * deleted when the returned stream is closed.
+   *
+   * @param jobId the job id
+   * @return the archive input stream, null if the job isn't done
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  InputStream takeGenerationResult(String jobId) throws IOException;
+
+  /**
+   * Removes a submitted generation and its archive. A running generation
+   * finishes but its archive is deleted.
+   *
+   * @param jobId the job id
+   */
+  void removeGenerationJob(String jobId);
+
   /**
    * Filters subresources of parentPath. This operation retains only paths that
-   * contains parentPath.
+   * start with parentPath, in O(log n) per call when selectedResources is a
+   * {@link java.util.NavigableSet} in natural order.
    * 
    * @param selectedResources
    *          Set of managed resources paths
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import com.thoughtworks.xstream.XStream;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manifest embedded in generated extensions. It lists, for each configuration
+ * handler, the source resources and their change markers, so a later
+ * generation can reuse the parts of this extension whose sources didn't
+ * change.
+ */
+public class ExtensionManifest {
+
+  /** The Constant MANIFEST_LOCATION. */
+  public static final String MANIFEST_LOCATION = "META-INF/extension-generator/manifest.xml";
+
+  /** The Constant CURRENT_VERSION. */
+  public static final int CURRENT_VERSION = 1;
+
+  /** The version. */
+  private int version = CURRENT_VERSION;
+
+  /** The extension name. */
+  private String extensionName;
+
+  /** The generation time. */
+  private long generationTime;
+
+  /** The handlers. */
+  private List<HandlerManifest> handlers = new ArrayList<HandlerManifest>();
+
+  /**
+   * Instantiates a new extension manifest.
+   *
+   * @param extensionName the extension name
+   */
+  public ExtensionManifest(String extensionName) {
+    this.extensionName = extensionName;
+    this.generationTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Gets the version.
+   *
+   * @return the version
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the extension name.
+   *
+   * @return the extension name
+   */
+  public String getExtensionName() {
+    return extensionName;
+  }
+
+  /**
+   * Gets the generation time.
+   *
+   * @return the generation time
+   */
+  public long getGenerationTime() {
+    return generationTime;
+  }
+
+  /**
+   * Adds the handler.
+   *
+   * @param handlerManifest the handler manifest
+   */
+  public void addHandler(HandlerManifest handlerManifest) {
+    handlers.add(handlerManifest);
+  }
+
+  /**
+   * Gets the handler.
+   *
+   * @param id the handler id
+   * @return the handler manifest or null
+   */
+  public HandlerManifest getHandler(String id) {
+    if (handlers == null) {
+      return null;
+    }
+    for (HandlerManifest handlerManifest : handlers) {
+      if (handlerManifest.getId().equals(id)) {
+        return handlerManifest;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the handlers.
+   *
+   * @return the handlers
+   */
+  public List<HandlerManifest> getHandlers() {
+    return handlers;
+  }
+
+  /**
+   * Serializes the manifest.
+   *
+   * @return the XML content
+   */
+  public String toXML() {
+    return getXStream().toXML(this);
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @param inputStream the input stream
+   * @return the extension manifest
+   */
+  public static ExtensionManifest fromXML(InputStream inputStream) {
+    return (ExtensionManifest) getXStream().fromXML(inputStream);
+  }
+
+  /**
+   * Gets the XStream instance.
+   *
+   * @return the x stream
+   */
+  private static XStream getXStream() {
+    return XStreamRegistry.getXStream(ExtensionManifest.class);
+  }
+}
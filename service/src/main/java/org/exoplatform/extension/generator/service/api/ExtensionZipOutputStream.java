@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZipOutputStream applying a {@link CompressionPolicy} per entry. Entries are
+ * streamed, so their size isn't known when they are opened: incompressible
+ * entries keep the DEFLATED method but are written with
+ * {@link Deflater#NO_COMPRESSION}, which only wraps the content in stored
+ * blocks. Entries explicitly opened with the STORED method are left as is.
+ * Writes are timed in CPU time of the current thread, so time blocked on a
+ * slow downstream, like a download, isn't reported as compression time.
+ */
+public class ExtensionZipOutputStream extends ZipOutputStream {
+
+  /** The thread MX bean. */
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  /** Whether the CPU time of the current thread can be measured. */
+  private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+
+  /** The policy. */
+  private final CompressionPolicy policy;
+
+  /** The report. */
+  private final CompressionReport report = new CompressionReport();
+
+  /** Whether an entry is open. */
+  private boolean entryOpen;
+
+  /** Whether the current entry is deflated by this stream. */
+  private boolean deflatedEntry;
+
+  /** Whether the current entry is written without compression. */
+  private boolean storedEntry;
+
+  /** Whether the current entry content wasn't sniffed yet. */
+  private boolean sniffPending;
+
+  /**
+   * Instantiates a new extension zip output stream.
+   *
+   * @param outputStream the output stream
+   * @param policy the policy
+   */
+  public ExtensionZipOutputStream(OutputStream outputStream, CompressionPolicy policy) {
+    super(outputStream);
+    this.policy = policy;
+  }
+
+  /**
+   * Gets the compression report of entries written so far.
+   *
+   * @return the report
+   */
+  public CompressionReport getReport() {
+    return report;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void putNextEntry(ZipEntry entry) throws IOException {
+    // Close previous entry before changing the deflater level
+    if (entryOpen) {
+      closeEntry();
+    }
+    deflatedEntry = entry.getMethod() != ZipEntry.STORED;
+    sniffPending = false;
+    if (deflatedEntry) {
+      storedEntry = policy.isStoredByName(entry.getName());
+      sniffPending = !storedEntry;
+      setLevel(storedEntry ? Deflater.NO_COMPRESSION : policy.getLevel());
+    }
+    super.putNextEntry(entry);
+    entryOpen = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    if (!deflatedEntry) {
+      super.write(bytes, offset, length);
+      return;
+    }
+    if (sniffPending && length > 0) {
+      sniffPending = false;
+      if (policy.isStoredByContent(bytes, offset, length)) {
+        storedEntry = true;
+        setLevel(Deflater.NO_COMPRESSION);
+      }
+    }
+    long start = getTime();
+    super.write(bytes, offset, length);
+    report.addWrite(storedEntry, length, getTime() - start);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void closeEntry() throws IOException {
+    entryOpen = false;
+    if (!deflatedEntry) {
+      super.closeEntry();
+      return;
+    }
+    long start = getTime();
+    super.closeEntry();
+    report.addWrite(storedEntry, 0, getTime() - start);
+    report.addEntry(storedEntry);
+    deflatedEntry = false;
+  }
+
+  /**
+   * Gets the CPU time of the current thread, or the wall-clock time when the
+   * JVM doesn't measure it.
+   *
+   * @return the time in nanoseconds
+   */
+  private static long getTime() {
+    return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+}
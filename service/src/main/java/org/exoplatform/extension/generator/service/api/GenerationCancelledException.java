@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+/**
+ * Thrown when a generation, or one of its handlers, is cancelled or exceeds
+ * its deadline.
+ */
+public class GenerationCancelledException extends RuntimeException {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = -2404516458436720215L;
+
+  /**
+   * Instantiates a new generation cancelled exception.
+   *
+   * @param message the message
+   */
+  public GenerationCancelledException(String message) {
+    super(message);
+  }
+}
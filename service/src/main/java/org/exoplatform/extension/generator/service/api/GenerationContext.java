@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.apache.commons.io.FileUtils;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * State of one extension generation, passed to configuration handlers. The
+ * generation context is shared by all handlers, each handler receives its own
+ * view created by {@link #forHandler(String)} which records what the handler
+ * reads in its {@link HandlerManifest}. The handler view also owns the state
+ * of one handler run (temp files, opened resources and configuration paths),
+ * so that handlers are stateless and can run concurrent generations.
+ */
+public class GenerationContext {
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(GenerationContext.class);
+
+  /** The extension name. */
+  private final String extensionName;
+
+  /** The manifest of the previous generation, null if not incremental. */
+  private final ExtensionManifest previousManifest;
+
+  /** The handler manifest, null for the generation context. */
+  private final HandlerManifest handlerManifest;
+
+  /** The job tracking the generation progress, null if not submitted. */
+  private final GenerationJob job;
+
+  /** The cancellation token, of the generation or of the handler. */
+  private final CancellationToken cancellationToken;
+
+  /** The temp files to delete when the handler ends. */
+  private final List<File> tempFiles = new ArrayList<File>();
+
+  /** The resources to close when the handler ends. */
+  private final List<Closeable> resources = new ArrayList<Closeable>();
+
+  /** The configuration paths computed by the handler. */
+  private final List<String> configurationPaths = new ArrayList<String>();
+
+  /**
+   * Instantiates a new generation context.
+   *
+   * @param extensionName the extension name
+   * @param previousManifest the previous manifest, null if the generation
+   *          isn't incremental
+   */
+  public GenerationContext(String extensionName, ExtensionManifest previousManifest) {
+    this(extensionName, previousManifest, null);
+  }
+
+  /**
+   * Instantiates a new generation context.
+   *
+   * @param extensionName the extension name
+   * @param previousManifest the previous manifest, null if the generation
+   *          isn't incremental
+   * @param job the job tracking the generation progress, null if the
+   *          generation wasn't submitted as a job
+   */
+  public GenerationContext(String extensionName, ExtensionManifest previousManifest, GenerationJob job) {
+    this(extensionName, previousManifest, job, new CancellationToken(0));
+  }
+
+  /**
+   * Instantiates a new generation context.
+   *
+   * @param extensionName the extension name
+   * @param previousManifest the previous manifest, null if the generation
+   *          isn't incremental
+   * @param job the job tracking the generation progress, null if the
+   *          generation wasn't submitted as a job
+   * @param cancellationToken the generation cancellation token
+   */
+  public GenerationContext(String extensionName, ExtensionManifest previousManifest, GenerationJob job, CancellationToken cancellationToken) {
+    this(extensionName, previousManifest, null, job, cancellationToken);
+  }
+
+  /**
+   * Instantiates a new generation context.
+   *
+   * @param extensionName the extension name
+   * @param previousManifest the previous manifest
+   * @param handlerManifest the handler manifest
+   * @param job the job
+   * @param cancellationToken the cancellation token
+   */
+  private GenerationContext(String extensionName,
+                            ExtensionManifest previousManifest,
+                            HandlerManifest handlerManifest,
+                            GenerationJob job,
+                            CancellationToken cancellationToken) {
+    this.extensionName = extensionName;
+    this.previousManifest = previousManifest;
+    this.handlerManifest = handlerManifest;
+    this.job = job;
+    this.cancellationToken = cancellationToken;
+  }
+
+  /**
+   * Creates the context of a handler, sharing the generation cancellation
+   * token.
+   *
+   * @param handlerId the handler id
+   * @return the generation context
+   */
+  public GenerationContext forHandler(String handlerId) {
+    return forHandler(handlerId, 0);
+  }
+
+  /**
+   * Creates the context of a handler, with its own deadline.
+   *
+   * @param handlerId the handler id
+   * @param timeout the handler timeout in milliseconds, 0 for none
+   * @return the generation context
+   */
+  public GenerationContext forHandler(String handlerId, long timeout) {
+    CancellationToken handlerCancellationToken = timeout > 0 ? cancellationToken.newChild(timeout) : cancellationToken;
+    return new GenerationContext(extensionName, previousManifest, new HandlerManifest(handlerId), job, handlerCancellationToken);
+  }
+
+  /**
+   * Gets the extension name.
+   *
+   * @return the extension name
+   */
+  public String getExtensionName() {
+    return extensionName;
+  }
+
+  /**
+   * Gets the job tracking the generation progress.
+   *
+   * @return the job, null if the generation wasn't submitted as a job
+   */
+  public GenerationJob getJob() {
+    return job;
+  }
+
+  /**
+   * Gets the cancellation token.
+   *
+   * @return the cancellation token
+   */
+  public CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  /**
+   * Throws a {@link GenerationCancelledException} if the generation, or the
+   * handler, is cancelled or exceeded its deadline.
+   */
+  public void checkCancelled() {
+    cancellationToken.checkCancelled();
+  }
+
+  /**
+   * Checks if is incremental.
+   *
+   * @return true, if is incremental
+   */
+  public boolean isIncremental() {
+    return previousManifest != null;
+  }
+
+  /**
+   * Gets the handler manifest.
+   *
+   * @return the handler manifest
+   */
+  public HandlerManifest getHandlerManifest() {
+    return handlerManifest;
+  }
+
+  /**
+   * Gets the manifest of the same handler in previous generation.
+   *
+   * @return the previous handler manifest or null
+   */
+  public HandlerManifest getPreviousHandlerManifest() {
+    if (previousManifest == null || handlerManifest == null) {
+      return null;
+    }
+    return previousManifest.getHandler(handlerManifest.getId());
+  }
+
+  /**
+   * Records the resources selected by the handler.
+   *
+   * @param selectionRoot the selection root
+   * @param selectedResources the selected resources
+   */
+  public void recordSelection(String selectionRoot, Collection<String> selectedResources) {
+    if (handlerManifest != null) {
+      handlerManifest.setSelectedResources(selectionRoot, selectedResources);
+    }
+  }
+
+  /**
+   * Records an export read by the handler.
+   *
+   * @param exportedResource the exported resource
+   */
+  public void recordExport(ExportedResource exportedResource) {
+    recordExport(exportedResource.getPath(), exportedResource.getFilters(), exportedResource.getDigest());
+  }
+
+  /**
+   * Records an export read by the handler.
+   *
+   * @param path the path
+   * @param filters the filters
+   * @param digest the digest of the exported archive
+   */
+  public void recordExport(String path, String[] filters, String digest) {
+    if (handlerManifest != null) {
+      handlerManifest.addExport(new ExportDigest(path, filters, digest));
+    }
+  }
+
+  /**
+   * Adds a temp file, deleted by {@link #deleteTempFiles()}.
+   *
+   * @param tempFile the temp file
+   */
+  public synchronized void addTempFile(File tempFile) {
+    if (tempFile != null) {
+      tempFiles.add(tempFile);
+    }
+  }
+
+  /**
+   * Deletes the temp files added by the handler.
+   */
+  public void deleteTempFiles() {
+    List<File> filesToDelete;
+    synchronized (this) {
+      filesToDelete = new ArrayList<File>(tempFiles);
+      tempFiles.clear();
+    }
+    for (File tempFile : filesToDelete) {
+      if (tempFile.exists()) {
+        GenerationMetrics.getInstance().tempFileDeleted(tempFile.length());
+        try {
+          FileUtils.forceDelete(tempFile);
+        } catch (Exception e) {
+          log.warn("Unable to delete temp file: " + tempFile.getAbsolutePath() + ". Not blocker.");
+          tempFile.deleteOnExit();
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a resource opened by the handler, closed by {@link #release()} if the
+   * handler didn't remove it.
+   *
+   * @param resource the resource
+   */
+  public synchronized void addResource(Closeable resource) {
+    resources.add(resource);
+  }
+
+  /**
+   * Removes a resource closed by the handler.
+   *
+   * @param resource the resource
+   */
+  public synchronized void removeResource(Closeable resource) {
+    resources.remove(resource);
+  }
+
+  /**
+   * Adds a configuration path computed by the handler from its selection.
+   *
+   * @param configurationPath the configuration path
+   */
+  public synchronized void addConfigurationPath(String configurationPath) {
+    if (!configurationPaths.contains(configurationPath)) {
+      configurationPaths.add(configurationPath);
+    }
+  }
+
+  /**
+   * Gets the configuration paths computed by the handler.
+   *
+   * @return the configuration paths
+   */
+  public synchronized List<String> getConfigurationPaths() {
+    return new ArrayList<String>(configurationPaths);
+  }
+
+  /**
+   * Releases the state owned by the handler: closes the resources it didn't
+   * close and deletes its temp files.
+   */
+  public void release() {
+    List<Closeable> resourcesToClose;
+    synchronized (this) {
+      resourcesToClose = new ArrayList<Closeable>(resources);
+      resources.clear();
+    }
+    for (Closeable resource : resourcesToClose) {
+      try {
+        resource.close();
+      } catch (Exception e) {
+        log.warn("Error while releasing handler resource", e);
+      }
+    }
+    deleteTempFiles();
+  }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.apache.commons.io.output.ProxyOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extension generation submitted with
+ * {@link ExtensionGenerator#submitGeneration(String, String, java.util.Set)}
+ * and run in background. The job tracks the state of each handler and the
+ * bytes written in the generated archive, to estimate the remaining time.
+ */
+public class GenerationJob {
+
+  /**
+   * The Enum Status.
+   */
+  public enum Status {
+    /** Waiting for a free generation thread. */
+    QUEUED,
+    /** Generation in progress. */
+    RUNNING,
+    /** Archive generated, ready to be downloaded. */
+    DONE,
+    /** Generation failed. */
+    FAILED,
+    /** Generation cancelled or timed out. */
+    CANCELLED
+  }
+
+  /**
+   * The Enum HandlerStatus.
+   */
+  public enum HandlerStatus {
+    /** Handler not started yet. */
+    PENDING,
+    /** Handler is writing its resources. */
+    RUNNING,
+    /** Handler finished. */
+    DONE,
+    /** Handler failed, its resources are missing in the archive. */
+    FAILED,
+    /** Handler cancelled or timed out, its resources are missing. */
+    CANCELLED
+  }
+
+  /** The id. */
+  private final String id;
+
+  /** The extension name. */
+  private final String extensionName;
+
+  /** The archive type. */
+  private final String archiveType;
+
+  /** The handlers status, in handlers order. */
+  private final Map<String, HandlerStatus> handlersStatus = new LinkedHashMap<String, HandlerStatus>();
+
+  /** The bytes written in the archive. */
+  private final AtomicLong bytesWritten = new AtomicLong();
+
+  /** The submit time. */
+  private final long submitTime = System.currentTimeMillis();
+
+  /** The start time. */
+  private volatile long startTime;
+
+  /** The end time. */
+  private volatile long endTime;
+
+  /** The status. */
+  private volatile Status status = Status.QUEUED;
+
+  /** The error message, if failed. */
+  private volatile String errorMessage;
+
+  /** The generated archive. */
+  private volatile File resultFile;
+
+  /** The cancellation token, set when the job starts. */
+  private volatile CancellationToken cancellationToken;
+
+  /** The cancellation reason, if cancel was requested. */
+  private volatile String cancelReason;
+
+  /** The last time the job was polled. */
+  private volatile long lastAccessTime = System.currentTimeMillis();
+
+  /**
+   * Instantiates a new generation job.
+   *
+   * @param id the id
+   * @param extensionName the extension name
+   * @param archiveType the archive type
+   * @param handlerIds the handler ids
+   */
+  public GenerationJob(String id, String extensionName, String archiveType, List<String> handlerIds) {
+    this.id = id;
+    this.extensionName = extensionName;
+    this.archiveType = archiveType;
+    for (String handlerId : handlerIds) {
+      handlersStatus.put(handlerId, HandlerStatus.PENDING);
+    }
+  }
+
+  /**
+   * Gets the id.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the extension name.
+   *
+   * @return the extension name
+   */
+  public String getExtensionName() {
+    return extensionName;
+  }
+
+  /**
+   * Gets the archive type.
+   *
+   * @return the archive type
+   */
+  public String getArchiveType() {
+    return archiveType;
+  }
+
+  /**
+   * Gets the status.
+   *
+   * @return the status
+   */
+  public Status getStatus() {
+    return status;
+  }
+
+  /**
+   * Checks if the job is finished, successfully or not.
+   *
+   * @return true, if finished
+   */
+  public boolean isFinished() {
+    return status == Status.DONE || status == Status.FAILED || status == Status.CANCELLED;
+  }
+
+  /**
+   * Gets the error message.
+   *
+   * @return the error message, null if the job didn't fail
+   */
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  /**
+   * Gets a copy of handlers status, in handlers order.
+   *
+   * @return the handlers status
+   */
+  public synchronized Map<String, HandlerStatus> getHandlersStatus() {
+    return Collections.unmodifiableMap(new LinkedHashMap<String, HandlerStatus>(handlersStatus));
+  }
+
+  /**
+   * Gets the number of handlers which finished.
+   *
+   * @return the finished handlers count
+   */
+  public synchronized int getFinishedHandlersCount() {
+    int count = 0;
+    for (HandlerStatus handlerStatus : handlersStatus.values()) {
+      if (handlerStatus != HandlerStatus.PENDING && handlerStatus != HandlerStatus.RUNNING) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Gets the handlers count.
+   *
+   * @return the handlers count
+   */
+  public synchronized int getHandlersCount() {
+    return handlersStatus.size();
+  }
+
+  /**
+   * Gets the progress, between 0 and 100. Handlers do almost all the work, so
+   * the progress is the ratio of finished handlers.
+   *
+   * @return the progress
+   */
+  public int getProgress() {
+    if (status == Status.DONE) {
+      return 100;
+    }
+    int handlersCount = getHandlersCount();
+    if (handlersCount == 0) {
+      return 0;
+    }
+    // Keep 100 for the end of the archive
+    return Math.min(99, getFinishedHandlersCount() * 100 / handlersCount);
+  }
+
+  /**
+   * Gets the bytes written in the archive.
+   *
+   * @return the bytes written
+   */
+  public long getBytesWritten() {
+    return bytesWritten.get();
+  }
+
+  /**
+   * Gets the submit time.
+   *
+   * @return the submit time
+   */
+  public long getSubmitTime() {
+    return submitTime;
+  }
+
+  /**
+   * Gets the start time.
+   *
+   * @return the start time, 0 if not started
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the end time.
+   *
+   * @return the end time, 0 if not finished
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * Gets the estimated remaining time, extrapolated from the time spent by
+   * finished handlers.
+   *
+   * @return the estimated remaining time in milliseconds, -1 if unknown
+   */
+  public long getEstimatedRemainingTime() {
+    if (isFinished()) {
+      return 0;
+    }
+    int finishedHandlers = getFinishedHandlersCount();
+    if (startTime == 0 || finishedHandlers == 0) {
+      return -1;
+    }
+    long elapsedTime = System.currentTimeMillis() - startTime;
+    return elapsedTime * (getHandlersCount() - finishedHandlers) / finishedHandlers;
+  }
+
+  /**
+   * Gets the last time the job was polled.
+   *
+   * @return the last access time
+   */
+  public long getLastAccessTime() {
+    return lastAccessTime;
+  }
+
+  /**
+   * Records that the job was polled.
+   */
+  public void touch() {
+    lastAccessTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Gets the cancellation token.
+   *
+   * @return the cancellation token, null if the job didn't start
+   */
+  public CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  /**
+   * Gets the reason of the requested cancellation.
+   *
+   * @return the cancel reason, null if cancel wasn't requested
+   */
+  public String getCancelReason() {
+    return cancelReason;
+  }
+
+  /**
+   * Requests the job cancellation. A queued job won't start, a running job is
+   * stopped by its handlers at their next check.
+   *
+   * @param reason the reason
+   */
+  public void cancel(String reason) {
+    CancellationToken token;
+    synchronized (this) {
+      if (cancelReason == null) {
+        cancelReason = reason;
+      }
+      token = cancellationToken;
+    }
+    if (token != null) {
+      token.cancel(reason);
+    }
+  }
+
+  /**
+   * Gets the generated archive.
+   *
+   * @return the result file, null if the job isn't done
+   */
+  public File getResultFile() {
+    return resultFile;
+  }
+
+  /**
+   * Wraps the archive output stream to count written bytes.
+   *
+   * @param outputStream the output stream
+   * @return the counting output stream
+   */
+  public OutputStream countBytes(OutputStream outputStream) {
+    return new ProxyOutputStream(outputStream) {
+      @Override
+      protected void beforeWrite(int n) {
+        bytesWritten.addAndGet(n);
+      }
+    };
+  }
+
+  /**
+   * Marks the job as started.
+   *
+   * @param cancellationToken the generation cancellation token
+   */
+  public void started(CancellationToken cancellationToken) {
+    String reason;
+    synchronized (this) {
+      this.cancellationToken = cancellationToken;
+      reason = cancelReason;
+    }
+    if (reason != null) {
+      cancellationToken.cancel(reason);
+    }
+    startTime = System.currentTimeMillis();
+    status = Status.RUNNING;
+  }
+
+  /**
+   * Marks the job as done.
+   *
+   * @param resultFile the generated archive
+   */
+  public void done(File resultFile) {
+    this.resultFile = resultFile;
+    endTime = System.currentTimeMillis();
+    status = Status.DONE;
+  }
+
+  /**
+   * Marks the job as failed.
+   *
+   * @param cause the cause
+   */
+  public void failed(Throwable cause) {
+    errorMessage = cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage();
+    endTime = System.currentTimeMillis();
+    status = Status.FAILED;
+  }
+
+  /**
+   * Marks the job as cancelled.
+   *
+   * @param reason the reason
+   */
+  public void cancelled(String reason) {
+    errorMessage = reason;
+    endTime = System.currentTimeMillis();
+    status = Status.CANCELLED;
+  }
+
+  /**
+   * Marks a handler as started.
+   *
+   * @param handlerId the handler id
+   */
+  public synchronized void handlerStarted(String handlerId) {
+    handlersStatus.put(handlerId, HandlerStatus.RUNNING);
+  }
+
+  /**
+   * Marks a handler as finished.
+   *
+   * @param handlerId the handler id
+   * @param handlerStatus the handler final status
+   */
+  public synchronized void handlerFinished(String handlerId, HandlerStatus handlerStatus) {
+    handlersStatus.put(handlerId, handlerStatus);
+  }
+
+  /**
+   * Deletes the generated archive, if any.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void deleteResultFile() throws IOException {
+    File file = resultFile;
+    resultFile = null;
+    if (file != null && file.exists()) {
+      GenerationMetrics.getInstance().tempFileDeleted(file.length());
+      if (!file.delete()) {
+        throw new IOException("Cannot delete file: " + file.getName());
+      }
+    }
+  }
+}
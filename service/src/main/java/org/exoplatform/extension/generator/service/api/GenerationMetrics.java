@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Performance metrics of extension generations, shared by the generator,
+ * handlers and exports, and exposed as an MXBean to be read by JConsole or
+ * any JMX scraper.
+ */
+public class GenerationMetrics implements GenerationMetricsMXBean {
+
+  /** The Constant OBJECT_NAME. */
+  public static final String OBJECT_NAME = "exo:service=ExtensionGenerator,name=GenerationMetrics";
+
+  /** The log. */
+  private static final Log log = ExoLogger.getLogger(GenerationMetrics.class);
+
+  /** The instance. */
+  private static GenerationMetrics instance;
+
+  /** Whether this instance is registered in the platform MBean server. */
+  private boolean registered;
+
+  /** The active generations. */
+  private final AtomicInteger activeGenerations = new AtomicInteger();
+
+  /** The queued generations. */
+  private final AtomicInteger queuedGenerations = new AtomicInteger();
+
+  /** The temp file bytes written. */
+  private final AtomicLong tempFileBytesWritten = new AtomicLong();
+
+  /** The temp file bytes in use. */
+  private final AtomicLong tempFileBytesInUse = new AtomicLong();
+
+  /** The peak of temp file bytes in use. */
+  private final AtomicLong tempFileBytesPeak = new AtomicLong();
+
+  /** The generations metrics by archive type. */
+  private volatile ConcurrentMap<String, OperationMetrics> generations = new ConcurrentHashMap<String, OperationMetrics>();
+
+  /** The handlers metrics by handler id. */
+  private volatile ConcurrentMap<String, OperationMetrics> handlers = new ConcurrentHashMap<String, OperationMetrics>();
+
+  /** The exports metrics by managed component. */
+  private volatile ConcurrentMap<String, OperationMetrics> exports = new ConcurrentHashMap<String, OperationMetrics>();
+
+  /**
+   * Gets the shared instance.
+   *
+   * @return the instance
+   */
+  public static synchronized GenerationMetrics getInstance() {
+    if (instance == null) {
+      instance = new GenerationMetrics();
+    }
+    return instance;
+  }
+
+  /**
+   * Registers this instance in the platform MBean server, replacing the one
+   * of a previous deployment.
+   */
+  public void register() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      synchronized (GenerationMetrics.class) {
+        if (mBeanServer.isRegistered(objectName)) {
+          mBeanServer.unregisterMBean(objectName);
+        }
+        mBeanServer.registerMBean(this, objectName);
+        registered = true;
+      }
+    } catch (Exception e) {
+      log.warn("Unable to register extension generator metrics MBean", e);
+    }
+  }
+
+  /**
+   * Unregisters this instance from the platform MBean server if it was
+   * registered by {@link #register()}.
+   */
+  public void unregister() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      synchronized (GenerationMetrics.class) {
+        if (registered && mBeanServer.isRegistered(objectName)) {
+          mBeanServer.unregisterMBean(objectName);
+        }
+        registered = false;
+      }
+    } catch (Exception e) {
+      log.warn("Unable to unregister extension generator metrics MBean", e);
+    }
+  }
+
+  /**
+   * Marks the start of an archive generation.
+   */
+  public void generationStarted() {
+    activeGenerations.incrementAndGet();
+  }
+
+  /**
+   * Records the end of an archive generation.
+   *
+   * @param archiveType the archive type
+   * @param outcome the outcome
+   * @param duration the duration in milliseconds
+   * @param archiveBytes the archive size
+   */
+  public void generationFinished(String archiveType, OperationMetrics.Outcome outcome, long duration, long archiveBytes) {
+    activeGenerations.decrementAndGet();
+    getMetrics(generations, archiveType).record(outcome, duration, archiveBytes);
+  }
+
+  /**
+   * Marks a generation submitted for background execution.
+   */
+  public void generationQueued() {
+    queuedGenerations.incrementAndGet();
+  }
+
+  /**
+   * Marks a submitted generation taken by a thread, or rejected.
+   */
+  public void generationDequeued() {
+    queuedGenerations.decrementAndGet();
+  }
+
+  /**
+   * Records a configuration handler execution.
+   *
+   * @param handlerId the handler id
+   * @param outcome the outcome
+   * @param duration the duration in milliseconds
+   */
+  public void recordHandler(String handlerId, OperationMetrics.Outcome outcome, long duration) {
+    getMetrics(handlers, handlerId).record(outcome, duration, -1);
+  }
+
+  /**
+   * Records a GateIN Management Controller export.
+   *
+   * @param path the managed path
+   * @param outcome the outcome
+   * @param duration the duration in milliseconds
+   * @param exportedBytes the exported archive size, negative if unknown
+   */
+  public void recordExport(String path, OperationMetrics.Outcome outcome, long duration, long exportedBytes) {
+    getMetrics(exports, getManagedComponent(path)).record(outcome, duration, exportedBytes);
+  }
+
+  /**
+   * Records a temp file written.
+   *
+   * @param length the file length
+   */
+  public void tempFileCreated(long length) {
+    tempFileBytesWritten.addAndGet(length);
+    long inUse = tempFileBytesInUse.addAndGet(length);
+    long peak = tempFileBytesPeak.get();
+    while (inUse > peak && !tempFileBytesPeak.compareAndSet(peak, inUse)) {
+      peak = tempFileBytesPeak.get();
+    }
+  }
+
+  /**
+   * Records a temp file deleted, or moved out of temp files.
+   *
+   * @param length the file length
+   */
+  public void tempFileDeleted(long length) {
+    tempFileBytesInUse.addAndGet(-length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getActiveGenerations() {
+    return activeGenerations.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getQueuedGenerations() {
+    return queuedGenerations.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, OperationMetrics.Snapshot> getGenerations() {
+    return getSnapshots(generations);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, OperationMetrics.Snapshot> getHandlers() {
+    return getSnapshots(handlers);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, OperationMetrics.Snapshot> getExports() {
+    return getSnapshots(exports);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTempFileBytesWritten() {
+    return tempFileBytesWritten.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTempFileBytesInUse() {
+    return tempFileBytesInUse.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getTempFileBytesPeak() {
+    return tempFileBytesPeak.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getExportCacheSize() {
+    return ExportCache.getInstance().getSize();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getExportCacheHits() {
+    return ExportCache.getInstance().getHits();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getExportCacheMisses() {
+    return ExportCache.getInstance().getMisses();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateExportCache() {
+    ExportCache.getInstance().invalidateAll();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    generations = new ConcurrentHashMap<String, OperationMetrics>();
+    handlers = new ConcurrentHashMap<String, OperationMetrics>();
+    exports = new ConcurrentHashMap<String, OperationMetrics>();
+    tempFileBytesWritten.set(0);
+    tempFileBytesPeak.set(tempFileBytesInUse.get());
+  }
+
+  /**
+   * Gets the managed component of a path, its two first segments, to keep a
+   * bounded number of exports metrics.
+   *
+   * @param path the managed path
+   * @return the managed component
+   */
+  static String getManagedComponent(String path) {
+    int index = path.indexOf('/', 1);
+    if (index > 0) {
+      index = path.indexOf('/', index + 1);
+    }
+    return index > 0 ? path.substring(0, index) : path;
+  }
+
+  /**
+   * Gets the metrics of a key, created if missing.
+   *
+   * @param metrics the metrics
+   * @param key the key
+   * @return the metrics
+   */
+  private OperationMetrics getMetrics(ConcurrentMap<String, OperationMetrics> metrics, String key) {
+    OperationMetrics operationMetrics = metrics.get(key);
+    if (operationMetrics == null) {
+      operationMetrics = new OperationMetrics();
+      OperationMetrics existingMetrics = metrics.putIfAbsent(key, operationMetrics);
+      if (existingMetrics != null) {
+        operationMetrics = existingMetrics;
+      }
+    }
+    return operationMetrics;
+  }
+
+  /**
+   * Gets the snapshots, sorted by key.
+   *
+   * @param metrics the metrics
+   * @return the snapshots
+   */
+  private Map<String, OperationMetrics.Snapshot> getSnapshots(Map<String, OperationMetrics> metrics) {
+    Map<String, OperationMetrics.Snapshot> snapshots = new TreeMap<String, OperationMetrics.Snapshot>();
+    for (Map.Entry<String, OperationMetrics> entry : metrics.entrySet()) {
+      snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+    }
+    return snapshots;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link GenerationMetrics}. Latencies are in
+ * milliseconds, sizes in bytes.
+ */
+public interface GenerationMetricsMXBean {
+
+  /**
+   * Gets the number of generations being written.
+   *
+   * @return the active generations
+   */
+  int getActiveGenerations();
+
+  /**
+   * Gets the number of submitted generations waiting for a thread.
+   *
+   * @return the queued generations
+   */
+  int getQueuedGenerations();
+
+  /**
+   * Gets the generations metrics by archive type, bytes are the archive
+   * sizes.
+   *
+   * @return the generations metrics
+   */
+  Map<String, OperationMetrics.Snapshot> getGenerations();
+
+  /**
+   * Gets the metrics by configuration handler.
+   *
+   * @return the handlers metrics
+   */
+  Map<String, OperationMetrics.Snapshot> getHandlers();
+
+  /**
+   * Gets the metrics of GateIN Management Controller exports by managed
+   * component, bytes are the exported archives sizes.
+   *
+   * @return the exports metrics
+   */
+  Map<String, OperationMetrics.Snapshot> getExports();
+
+  /**
+   * Gets the total bytes written in temp files.
+   *
+   * @return the temp file bytes written
+   */
+  long getTempFileBytesWritten();
+
+  /**
+   * Gets the bytes of temp files not deleted yet.
+   *
+   * @return the temp file bytes in use
+   */
+  long getTempFileBytesInUse();
+
+  /**
+   * Gets the peak of temp file bytes in use since the last reset.
+   *
+   * @return the temp file bytes peak
+   */
+  long getTempFileBytesPeak();
+
+  /**
+   * Gets the export cache size.
+   *
+   * @return the export cache size
+   */
+  long getExportCacheSize();
+
+  /**
+   * Gets the export cache hits.
+   *
+   * @return the export cache hits
+   */
+  long getExportCacheHits();
+
+  /**
+   * Gets the export cache misses.
+   *
+   * @return the export cache misses
+   */
+  long getExportCacheMisses();
+
+  /**
+   * Invalidates all the exports cached by {@link ExportCache}.
+   */
+  void invalidateExportCache();
+
+  /**
+   * Resets counters and histograms. Gauges aren't reset, the peak restarts
+   * from the bytes in use.
+   */
+  void reset();
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Describes what a configuration handler read and wrote during a generation:
+ * its selected resources, the exports it used with their change markers, the
+ * archive entries it wrote and its configuration paths.
+ */
+public class HandlerManifest {
+
+  /** The handler id. */
+  private String id;
+
+  /** Whether the handler output only depends on its selection and exports. */
+  private boolean incremental;
+
+  /** The extracted. */
+  private boolean extracted;
+
+  /** The selection root. */
+  private String selectionRoot;
+
+  /** The selected resources. */
+  private List<String> selectedResources = new ArrayList<String>();
+
+  /** The exports. */
+  private List<ExportDigest> exports = new ArrayList<ExportDigest>();
+
+  /** The entries. */
+  private List<String> entries = new ArrayList<String>();
+
+  /** The configuration paths. */
+  private List<String> configurationPaths = new ArrayList<String>();
+
+  /**
+   * Instantiates a new handler manifest.
+   *
+   * @param id the handler id
+   */
+  public HandlerManifest(String id) {
+    this.id = id;
+  }
+
+  /**
+   * Copy the description of a previous generation of the same handler.
+   *
+   * @param previous the previous handler manifest
+   */
+  public synchronized void copy(HandlerManifest previous) {
+    this.incremental = previous.isIncremental();
+    this.extracted = previous.isExtracted();
+    this.selectionRoot = previous.getSelectionRoot();
+    this.selectedResources = new ArrayList<String>(previous.getSelectedResources());
+    this.exports = new ArrayList<ExportDigest>(previous.getExports());
+    this.entries = new ArrayList<String>(previous.getEntries());
+    this.configurationPaths = new ArrayList<String>(previous.getConfigurationPaths());
+  }
+
+  /**
+   * Gets the id.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Checks if is incremental.
+   *
+   * @return true, if is incremental
+   */
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * Sets the incremental.
+   *
+   * @param incremental the new incremental
+   */
+  public void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * Checks if is extracted.
+   *
+   * @return true, if is extracted
+   */
+  public boolean isExtracted() {
+    return extracted;
+  }
+
+  /**
+   * Sets the extracted.
+   *
+   * @param extracted the new extracted
+   */
+  public void setExtracted(boolean extracted) {
+    this.extracted = extracted;
+  }
+
+  /**
+   * Gets the selection root.
+   *
+   * @return the selection root
+   */
+  public String getSelectionRoot() {
+    return selectionRoot;
+  }
+
+  /**
+   * Sets the selected resources.
+   *
+   * @param selectionRoot the path used to filter selected resources
+   * @param selectedResources the selected resources
+   */
+  public synchronized void setSelectedResources(String selectionRoot, Collection<String> selectedResources) {
+    this.selectionRoot = selectionRoot;
+    this.selectedResources = new ArrayList<String>(selectedResources);
+  }
+
+  /**
+   * Gets the selected resources.
+   *
+   * @return the selected resources
+   */
+  public List<String> getSelectedResources() {
+    return selectedResources == null ? new ArrayList<String>() : selectedResources;
+  }
+
+  /**
+   * Adds the export.
+   *
+   * @param exportDigest the export digest
+   */
+  public synchronized void addExport(ExportDigest exportDigest) {
+    exports.add(exportDigest);
+  }
+
+  /**
+   * Gets the exports.
+   *
+   * @return the exports
+   */
+  public List<ExportDigest> getExports() {
+    return exports == null ? new ArrayList<ExportDigest>() : exports;
+  }
+
+  /**
+   * Gets the entries.
+   *
+   * @return the entries
+   */
+  public List<String> getEntries() {
+    return entries == null ? new ArrayList<String>() : entries;
+  }
+
+  /**
+   * Sets the entries.
+   *
+   * @param entries the new entries
+   */
+  public void setEntries(List<String> entries) {
+    this.entries = new ArrayList<String>(entries);
+  }
+
+  /**
+   * Gets the configuration paths.
+   *
+   * @return the configuration paths
+   */
+  public List<String> getConfigurationPaths() {
+    return configurationPaths == null ? new ArrayList<String>() : configurationPaths;
+  }
+
+  /**
+   * Sets the configuration paths.
+   *
+   * @param configurationPaths the new configuration paths
+   */
+  public void setConfigurationPaths(List<String> configurationPaths) {
+    this.configurationPaths = new ArrayList<String>(configurationPaths);
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram with fixed bucket upper bounds. Percentiles are
+ * estimated by the upper bound of the bucket holding them, which is enough to
+ * spot hot spots and regressions.
+ */
+public class Histogram {
+
+  /** The Constant LATENCY_BOUNDS, in milliseconds. */
+  public static final long[] LATENCY_BOUNDS = new long[] { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000 };
+
+  /** The Constant SIZE_BOUNDS, in bytes. */
+  public static final long[] SIZE_BOUNDS = new long[] { 1L << 10, 1L << 12, 1L << 14, 1L << 16, 1L << 18, 1L << 20, 1L << 22, 1L << 24, 1L << 26,
+      1L << 28, 1L << 30, 1L << 32 };
+
+  /** The bucket upper bounds, the last bucket counts greater values. */
+  private final long[] bounds;
+
+  /** The bucket counts. */
+  private final AtomicLongArray counts;
+
+  /** The count. */
+  private final AtomicLong count = new AtomicLong();
+
+  /** The sum. */
+  private final AtomicLong sum = new AtomicLong();
+
+  /** The max. */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Instantiates a new histogram.
+   *
+   * @param bounds the sorted bucket upper bounds
+   */
+  public Histogram(long[] bounds) {
+    this.bounds = bounds;
+    this.counts = new AtomicLongArray(bounds.length + 1);
+  }
+
+  /**
+   * Records a value.
+   *
+   * @param value the value
+   */
+  public void record(long value) {
+    int bucket = 0;
+    while (bucket < bounds.length && value > bounds[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * Gets a snapshot of recorded values. Values recorded concurrently may be
+   * partially reflected.
+   *
+   * @return the snapshot
+   */
+  public Snapshot getSnapshot() {
+    long[] bucketCounts = new long[counts.length()];
+    long total = 0;
+    for (int i = 0; i < bucketCounts.length; i++) {
+      bucketCounts[i] = counts.get(i);
+      total += bucketCounts[i];
+    }
+    long maxValue = max.get();
+    return new Snapshot(total,
+                        sum.get(),
+                        maxValue,
+                        getPercentile(bucketCounts, total, maxValue, 50),
+                        getPercentile(bucketCounts, total, maxValue, 90),
+                        getPercentile(bucketCounts, total, maxValue, 99),
+                        bounds.clone(),
+                        bucketCounts);
+  }
+
+  /**
+   * Gets the estimated percentile.
+   *
+   * @param bucketCounts the bucket counts
+   * @param total the total count
+   * @param maxValue the max value
+   * @param percentile the percentile
+   * @return the upper bound of the bucket holding the percentile, or the max
+   *         value if lower
+   */
+  private long getPercentile(long[] bucketCounts, long total, long maxValue, int percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (total * percentile + 99) / 100;
+    long cumulated = 0;
+    for (int i = 0; i < bounds.length; i++) {
+      cumulated += bucketCounts[i];
+      if (cumulated >= rank) {
+        return Math.min(bounds[i], maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+  /**
+   * Immutable view of a histogram, exposed as composite data through JMX.
+   */
+  public static class Snapshot {
+
+    /** The count. */
+    private final long count;
+
+    /** The sum. */
+    private final long sum;
+
+    /** The max. */
+    private final long max;
+
+    /** The 50th percentile. */
+    private final long p50;
+
+    /** The 90th percentile. */
+    private final long p90;
+
+    /** The 99th percentile. */
+    private final long p99;
+
+    /** The bucket upper bounds. */
+    private final long[] bounds;
+
+    /** The bucket counts. */
+    private final long[] counts;
+
+    /**
+     * Instantiates a new snapshot.
+     *
+     * @param count the count
+     * @param sum the sum
+     * @param max the max
+     * @param p50 the 50th percentile
+     * @param p90 the 90th percentile
+     * @param p99 the 99th percentile
+     * @param bounds the bucket upper bounds
+     * @param counts the bucket counts
+     */
+    @ConstructorProperties({ "count", "sum", "max", "p50", "p90", "p99", "bounds", "counts" })
+    public Snapshot(long count, long sum, long max, long p50, long p90, long p99, long[] bounds, long[] counts) {
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.bounds = bounds;
+      this.counts = counts;
+    }
+
+    /**
+     * Gets the count.
+     *
+     * @return the count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the sum.
+     *
+     * @return the sum
+     */
+    public long getSum() {
+      return sum;
+    }
+
+    /**
+     * Gets the mean.
+     *
+     * @return the mean
+     */
+    public long getMean() {
+      return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Gets the max.
+     *
+     * @return the max
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Gets the 50th percentile.
+     *
+     * @return the 50th percentile
+     */
+    public long getP50() {
+      return p50;
+    }
+
+    /**
+     * Gets the 90th percentile.
+     *
+     * @return the 90th percentile
+     */
+    public long getP90() {
+      return p90;
+    }
+
+    /**
+     * Gets the 99th percentile.
+     *
+     * @return the 99th percentile
+     */
+    public long getP99() {
+      return p99;
+    }
+
+    /**
+     * Gets the bucket upper bounds.
+     *
+     * @return the bucket upper bounds
+     */
+    public long[] getBounds() {
+      return bounds;
+    }
+
+    /**
+     * Gets the bucket counts, the last one counts values greater than the
+     * last bound.
+     *
+     * @return the bucket counts
+     */
+    public long[] getCounts() {
+      return counts;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A page of the resources of a category, matching a text filter.
+ */
+public class NodesPage implements Serializable {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 3409276155370914523L;
+
+  /** The nodes of the page. */
+  private final List<Node> nodes;
+
+  /** The offset of the first node of the page. */
+  private final int offset;
+
+  /** The number of nodes matching the filter. */
+  private final int filteredCount;
+
+  /** The number of nodes of the category. */
+  private final int totalCount;
+
+  /**
+   * Instantiates a new nodes page.
+   *
+   * @param nodes the nodes of the page
+   * @param offset the offset of the first node of the page
+   * @param filteredCount the number of nodes matching the filter
+   * @param totalCount the number of nodes of the category
+   */
+  public NodesPage(List<Node> nodes, int offset, int filteredCount, int totalCount) {
+    this.nodes = nodes;
+    this.offset = offset;
+    this.filteredCount = filteredCount;
+    this.totalCount = totalCount;
+  }
+
+  /**
+   * Gets the nodes of the page.
+   *
+   * @return the nodes
+   */
+  public List<Node> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Gets the offset of the first node of the page.
+   *
+   * @return the offset
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the number of nodes matching the filter.
+   *
+   * @return the filtered count
+   */
+  public int getFilteredCount() {
+    return filteredCount;
+  }
+
+  /**
+   * Gets the number of nodes of the category.
+   *
+   * @return the total count
+   */
+  public int getTotalCount() {
+    return totalCount;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and histograms of a measured operation: a handler, an export of a
+ * managed component or the generation of an archive type.
+ */
+public class OperationMetrics {
+
+  /**
+   * Outcome of a measured operation.
+   */
+  public enum Outcome {
+    /** Operation succeeded. */
+    SUCCESS,
+    /** Operation failed. */
+    FAILURE,
+    /** Operation cancelled or timed out. */
+    CANCELLED,
+    /** Result reused from cache or from previous extension. */
+    REUSED
+  }
+
+  /** The successes. */
+  private final AtomicLong successes = new AtomicLong();
+
+  /** The failures. */
+  private final AtomicLong failures = new AtomicLong();
+
+  /** The cancellations. */
+  private final AtomicLong cancellations = new AtomicLong();
+
+  /** The reuses. */
+  private final AtomicLong reuses = new AtomicLong();
+
+  /** The latency, in milliseconds. */
+  private final Histogram latency = new Histogram(Histogram.LATENCY_BOUNDS);
+
+  /** The written bytes. */
+  private final Histogram bytes = new Histogram(Histogram.SIZE_BOUNDS);
+
+  /**
+   * Records an operation.
+   *
+   * @param outcome the outcome
+   * @param duration the duration in milliseconds
+   * @param writtenBytes the written bytes, negative if not measured
+   */
+  public void record(Outcome outcome, long duration, long writtenBytes) {
+    switch (outcome) {
+    case SUCCESS:
+      successes.incrementAndGet();
+      break;
+    case FAILURE:
+      failures.incrementAndGet();
+      break;
+    case CANCELLED:
+      cancellations.incrementAndGet();
+      break;
+    default:
+      reuses.incrementAndGet();
+      break;
+    }
+    latency.record(duration);
+    if (writtenBytes >= 0) {
+      bytes.record(writtenBytes);
+    }
+  }
+
+  /**
+   * Gets a snapshot of the metrics.
+   *
+   * @return the snapshot
+   */
+  public Snapshot getSnapshot() {
+    return new Snapshot(successes.get(), failures.get(), cancellations.get(), reuses.get(), latency.getSnapshot(), bytes.getSnapshot());
+  }
+
+  /**
+   * Immutable view of operation metrics, exposed as composite data through
+   * JMX.
+   */
+  public static class Snapshot {
+
+    /** The successes. */
+    private final long successes;
+
+    /** The failures. */
+    private final long failures;
+
+    /** The cancellations. */
+    private final long cancellations;
+
+    /** The reuses. */
+    private final long reuses;
+
+    /** The latency. */
+    private final Histogram.Snapshot latency;
+
+    /** The bytes. */
+    private final Histogram.Snapshot bytes;
+
+    /**
+     * Instantiates a new snapshot.
+     *
+     * @param successes the successes
+     * @param failures the failures
+     * @param cancellations the cancellations
+     * @param reuses the reuses
+     * @param latency the latency in milliseconds
+     * @param bytes the written bytes
+     */
+    @ConstructorProperties({ "successes", "failures", "cancellations", "reuses", "latency", "bytes" })
+    public Snapshot(long successes, long failures, long cancellations, long reuses, Histogram.Snapshot latency, Histogram.Snapshot bytes) {
+      this.successes = successes;
+      this.failures = failures;
+      this.cancellations = cancellations;
+      this.reuses = reuses;
+      this.latency = latency;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Gets the successes.
+     *
+     * @return the successes
+     */
+    public long getSuccesses() {
+      return successes;
+    }
+
+    /**
+     * Gets the failures.
+     *
+     * @return the failures
+     */
+    public long getFailures() {
+      return failures;
+    }
+
+    /**
+     * Gets the cancellations.
+     *
+     * @return the cancellations
+     */
+    public long getCancellations() {
+      return cancellations;
+    }
+
+    /**
+     * Gets the reuses from cache or previous extension.
+     *
+     * @return the reuses
+     */
+    public long getReuses() {
+      return reuses;
+    }
+
+    /**
+     * Gets the latency, in milliseconds.
+     *
+     * @return the latency
+     */
+    public Histogram.Snapshot getLatency() {
+      return latency;
+    }
+
+    /**
+     * Gets the written bytes.
+     *
+     * @return the bytes
+     */
+    public Histogram.Snapshot getBytes() {
+      return bytes;
+    }
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Base of the streams replacing patterns while bytes are copied to a target
+ * stream. Bytes that may be the beginning of a pattern are kept in a pending
+ * window until a subclass matches or rejects them, the others are buffered
+ * and written to the target stream by chunks. Closing this stream flushes it
+ * but doesn't close the target stream, usually a ZipOutputStream.
+ */
+public abstract class PatternReplacingOutputStream extends OutputStream {
+
+  /** The Constant NO_MATCH. */
+  protected static final int NO_MATCH = 0;
+
+  /** The Constant PARTIAL_MATCH. */
+  protected static final int PARTIAL_MATCH = 1;
+
+  /** The Constant FULL_MATCH. */
+  protected static final int FULL_MATCH = 2;
+
+  /** The target stream. */
+  private final OutputStream out;
+
+  /** Bytes that may be the beginning of a pattern. */
+  protected final byte[] pending;
+
+  /** The pending bytes count. */
+  protected int pendingCount = 0;
+
+  /** The output buffer, the target stream is written by chunks. */
+  private final byte[] buffer = new byte[8192];
+
+  /** The buffer count. */
+  private int bufferCount = 0;
+
+  /**
+   * Instantiates a new pattern replacing output stream.
+   *
+   * @param out the target stream
+   * @param windowSize the length of the longest pattern
+   */
+  protected PatternReplacingOutputStream(OutputStream out, int windowSize) {
+    this.out = out;
+    this.pending = new byte[windowSize];
+  }
+
+  /**
+   * Checks if a byte can be the first byte of a pattern.
+   *
+   * @param b the byte
+   * @return true, if so
+   */
+  protected abstract boolean isPatternStart(byte b);
+
+  /**
+   * Matches the pending bytes against the patterns. On a full match, the
+   * replacement is written with {@link #writeOut(byte[])} and the pending
+   * bytes are dropped.
+   *
+   * @return the match status
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected abstract int matchPending() throws IOException;
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(int b) throws IOException {
+    write((byte) b);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    for (int i = off; i < off + len; i++) {
+      write(b[i]);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  /**
+   * Writes the pending bytes and flushes the target stream, which isn't
+   * closed.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public void close() throws IOException {
+    for (int i = 0; i < pendingCount; i++) {
+      writeOut(pending[i]);
+    }
+    pendingCount = 0;
+    flush();
+  }
+
+  /**
+   * Matches pending bytes against a literal pattern.
+   *
+   * @param pattern the pattern
+   * @return the match status
+   */
+  protected int matchLiteral(byte[] pattern) {
+    if (pendingCount > pattern.length) {
+      return NO_MATCH;
+    }
+    for (int i = 0; i < pendingCount; i++) {
+      if (pending[i] != pattern[i]) {
+        return NO_MATCH;
+      }
+    }
+    return pendingCount == pattern.length ? FULL_MATCH : PARTIAL_MATCH;
+  }
+
+  /**
+   * Write bytes in the output buffer.
+   *
+   * @param bytes the bytes
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  protected void writeOut(byte[] bytes) throws IOException {
+    for (byte b : bytes) {
+      writeOut(b);
+    }
+  }
+
+  /**
+   * Write a byte.
+   *
+   * @param b the byte
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void write(byte b) throws IOException {
+    if (pendingCount == 0 && !isPatternStart(b)) {
+      // Fast path: the byte can't start any pattern
+      writeOut(b);
+      return;
+    }
+    pending[pendingCount++] = b;
+    while (pendingCount > 0) {
+      int match = matchPending();
+      if (match == FULL_MATCH) {
+        pendingCount = 0;
+      } else if (match == PARTIAL_MATCH) {
+        return;
+      } else {
+        // The first pending byte can't start a pattern, retry from the next
+        writeOut(pending[0]);
+        pendingCount--;
+        System.arraycopy(pending, 1, pending, 0, pendingCount);
+      }
+    }
+  }
+
+  /**
+   * Write a byte in the output buffer.
+   *
+   * @param b the byte
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void writeOut(byte b) throws IOException {
+    if (bufferCount == buffer.length) {
+      flushBuffer();
+    }
+    buffer[bufferCount++] = b;
+  }
+
+  /**
+   * Flush the output buffer to the target stream.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void flushBuffer() throws IOException {
+    if (bufferCount > 0) {
+      out.write(buffer, 0, bufferCount);
+      bufferCount = 0;
+    }
+  }
+
+  /**
+   * Gets the bytes of a pattern or a replacement.
+   *
+   * @param value the value
+   * @param charsetName the charset name
+   * @return the bytes
+   */
+  protected static byte[] getBytes(String value, String charsetName) {
+    try {
+      return value.getBytes(charsetName);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Input stream fed by a producer thread through a bounded pipe. A failure of
+ * the producer is reported to the reader instead of an early end of stream, so
+ * a truncated archive is never read as a complete one.
+ * <p>
+ * Closing the stream before the producer is done cancels the generation, so
+ * that an abandoned download releases its thread and exports.
+ */
+public class PipedArchiveInputStream extends PipedInputStream {
+
+  /** The Constant DEFAULT_PIPE_SIZE. */
+  public static final int DEFAULT_PIPE_SIZE = 64 * 1024;
+
+  /** The producer output stream. */
+  private final PipedOutputStream outputStream;
+
+  /** The cancellation token of the producer. */
+  private final CancellationToken cancellationToken;
+
+  /** The producer failure. */
+  private volatile Throwable failure;
+
+  /** True when the producer closed its output stream. */
+  private volatile boolean producerDone;
+
+  /**
+   * Instantiates a new piped archive input stream.
+   *
+   * @param pipeSize the pipe buffer size
+   * @param cancellationToken the cancellation token of the producer
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public PipedArchiveInputStream(int pipeSize, CancellationToken cancellationToken) throws IOException {
+    super(pipeSize);
+    this.cancellationToken = cancellationToken;
+    this.outputStream = new PipedOutputStream(this) {
+      @Override
+      public void close() throws IOException {
+        producerDone = true;
+        super.close();
+      }
+    };
+  }
+
+  /**
+   * Gets the output stream to use by the producer thread. The producer have to
+   * close it when done, even on failure.
+   *
+   * @return the output stream
+   */
+  public PipedOutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * Marks the producer as failed. Next reads throw an {@link IOException}.
+   *
+   * @param failure the failure
+   */
+  public void fail(Throwable failure) {
+    this.failure = failure;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int read() throws IOException {
+    int value = super.read();
+    if (value < 0) {
+      checkFailure();
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+    int read = super.read(bytes, offset, length);
+    if (read < 0) {
+      checkFailure();
+    }
+    return read;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    if (!producerDone) {
+      cancellationToken.cancel("Download closed before the end of the archive");
+    }
+    super.close();
+  }
+
+  /**
+   * Check failure.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Archive producer failed", failure);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Replaces placeholders while bytes are copied to a target stream. Tokens
+ * are matched on bytes over a window as long as the longest token, so memory
+ * stays constant whatever the content size. Bytes are written as is, which is
+ * safe for UTF-8 content and ASCII tokens.
+ */
+public class PlaceholderReplacingOutputStream extends PatternReplacingOutputStream {
+
+  /** The tokens, in UTF-8. */
+  private final byte[][] tokens;
+
+  /** The replacements, by token index. */
+  private final byte[][] replacements;
+
+  /** Whether a byte value is the first byte of a token. */
+  private final boolean[] tokenStarts = new boolean[256];
+
+  /**
+   * Instantiates a new placeholder replacing output stream.
+   *
+   * @param out the target stream
+   * @param replacements the replacements by token, tokens can't be empty
+   */
+  public PlaceholderReplacingOutputStream(OutputStream out, Map<String, String> replacements) {
+    super(out, maxLength(replacements.keySet()));
+    this.tokens = new byte[replacements.size()][];
+    this.replacements = new byte[replacements.size()][];
+    int i = 0;
+    for (Map.Entry<String, String> replacement : replacements.entrySet()) {
+      tokens[i] = getBytes(replacement.getKey(), "UTF-8");
+      this.replacements[i] = getBytes(replacement.getValue(), "UTF-8");
+      tokenStarts[tokens[i][0] & 0xFF] = true;
+      i++;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected boolean isPatternStart(byte b) {
+    return tokenStarts[b & 0xFF];
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected int matchPending() throws IOException {
+    int status = NO_MATCH;
+    for (int i = 0; i < tokens.length; i++) {
+      int match = matchLiteral(tokens[i]);
+      if (match == FULL_MATCH) {
+        writeOut(replacements[i]);
+        return FULL_MATCH;
+      }
+      status = Math.max(status, match);
+    }
+    return status;
+  }
+
+  /**
+   * Gets the UTF-8 length of the longest token.
+   *
+   * @param tokens the tokens
+   * @return the length
+   */
+  private static int maxLength(Iterable<String> tokens) {
+    int maxLength = 0;
+    for (String token : tokens) {
+      if (token.isEmpty()) {
+        throw new IllegalArgumentException("Empty placeholder");
+      }
+      maxLength = Math.max(maxLength, getBytes(token, "UTF-8").length);
+    }
+    return maxLength;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZipOutputStream view writing its entries in a target archive under a root
+ * path. Used to write extension files directly in the Maven project layout.
+ * Finishing or closing this stream doesn't finish or close the target.
+ */
+public class PrefixedZipOutputStream extends ZipOutputStream {
+
+  /** The target. */
+  private final ZipOutputStream target;
+
+  /** The root path in target. */
+  private final String rootPathInTarget;
+
+  /** The names of entries written through this view. */
+  private final List<String> entryNames = new ArrayList<String>();
+
+  /**
+   * Instantiates a new prefixed zip output stream.
+   *
+   * @param target the target archive
+   * @param rootPathInTarget the root path in target
+   */
+  public PrefixedZipOutputStream(ZipOutputStream target, String rootPathInTarget) {
+    super(target);
+    this.target = target;
+    this.rootPathInTarget = rootPathInTarget == null ? "" : rootPathInTarget;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void putNextEntry(ZipEntry entry) throws IOException {
+    String targetEntryName = rootPathInTarget + "/" + entry.getName();
+    while (targetEntryName.contains("//")) {
+      targetEntryName = targetEntryName.replace("//", "/");
+    }
+    if (targetEntryName.startsWith("/")) {
+      targetEntryName = targetEntryName.substring(1);
+    }
+    ZipEntry targetEntry = new ZipEntry(targetEntryName);
+    if (entry.getTime() != -1) {
+      targetEntry.setTime(entry.getTime());
+    }
+    target.putNextEntry(targetEntry);
+    entryNames.add(targetEntryName);
+  }
+
+  /**
+   * Gets the names, in target archive, of entries written through this view.
+   *
+   * @return the entry names
+   */
+  public List<String> getEntryNames() {
+    return entryNames;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void closeEntry() throws IOException {
+    target.closeEntry();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    target.write(bytes, offset, length);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void flush() throws IOException {
+    target.flush();
+  }
+
+  /**
+   * Doesn't finish the target archive.
+   */
+  @Override
+  public void finish() throws IOException {
+    target.flush();
+  }
+
+  /**
+   * Doesn't close the target archive, only releases this stream's unused
+   * deflater.
+   */
+  @Override
+  public void close() throws IOException {
+    target.flush();
+    def.end();
+  }
+}
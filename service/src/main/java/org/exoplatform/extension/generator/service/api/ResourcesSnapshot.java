@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resources of the categories displayed to select resources, shared by all
+ * users. A snapshot is never modified: each category is listed at most once,
+ * when first read, and a new snapshot with a greater version replaces it when
+ * it expires or is invalidated.
+ */
+public interface ResourcesSnapshot {
+
+  /**
+   * Gets the version, greater for more recent snapshots.
+   *
+   * @return the version
+   */
+  long getVersion();
+
+  /**
+   * Gets the creation time.
+   *
+   * @return the creation time in milliseconds
+   */
+  long getCreationTime();
+
+  /**
+   * Returns the resources of a category.
+   *
+   * @param categoryPath the category path
+   * @return unmodifiable list of nodes
+   */
+  List<Node> getNodes(String categoryPath);
+
+  /**
+   * Returns a page of the resources of a category. The filter matches,
+   * ignoring case, the text or the path of resources.
+   *
+   * @param categoryPath the category path
+   * @param offset the offset of the first resource of the page
+   * @param limit the maximum number of resources of the page, negative for no
+   *          limit
+   * @param filter the text filter, null or empty to match all resources
+   * @return the page of resources
+   */
+  NodesPage getNodes(String categoryPath, int offset, int limit, String filter);
+
+  /**
+   * Returns the resources of all categories, categories not listed yet are
+   * listed concurrently. Group sites of spaces are excluded.
+   *
+   * @return unmodifiable map of unmodifiable lists, by category path
+   */
+  Map<String, List<Node>> getResources();
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+
+/**
+ * Input stream fed by a producer thread which never waits for the reader:
+ * written data is kept in memory up to a threshold of unread bytes, next
+ * writes spill to a temp file read once the memory is drained. Data smaller
+ * than the threshold, or read as fast as written, never reaches the disk.
+ * A failure of the producer is reported to the reader instead of an early end
+ * of stream.
+ */
+public class SpillingPipedInputStream extends InputStream {
+
+  /** The memory threshold, in unread bytes. */
+  private final int memoryThreshold;
+
+  /** The producer output stream. */
+  private final OutputStream outputStream = new ProducerOutputStream();
+
+  /** Chunks written in memory and not read yet. */
+  private final ArrayDeque<byte[]> chunks = new ArrayDeque<byte[]>();
+
+  /** The read offset in the first chunk. */
+  private int chunkOffset;
+
+  /** The unread bytes in memory. */
+  private long memoryBytes;
+
+  /** The spill file, null until the memory threshold is reached. */
+  private File spillFile;
+
+  /** The spill file output, used by the producer only. */
+  private OutputStream spillOutput;
+
+  /** The spill file input, used by the reader only. */
+  private RandomAccessFile spillInput;
+
+  /** The bytes written in spill file. */
+  private long spillWritten;
+
+  /** The bytes read from spill file. */
+  private long spillRead;
+
+  /** The producer closed. */
+  private boolean producerClosed;
+
+  /** The reader closed. */
+  private boolean readerClosed;
+
+  /** The producer failure. */
+  private Throwable failure;
+
+  /**
+   * Instantiates a new spilling piped input stream.
+   *
+   * @param memoryThreshold the maximum unread bytes kept in memory
+   */
+  public SpillingPipedInputStream(int memoryThreshold) {
+    this.memoryThreshold = memoryThreshold;
+  }
+
+  /**
+   * Gets the output stream to use by the producer thread. The producer have to
+   * close it when done, even on failure. Writes fail once the reader closed
+   * this stream.
+   *
+   * @return the output stream
+   */
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  /**
+   * Marks the producer as failed. Next reads throw an {@link IOException}.
+   *
+   * @param failure the failure
+   */
+  public synchronized void fail(Throwable failure) {
+    this.failure = failure;
+    notifyAll();
+  }
+
+  /**
+   * Gets the bytes spilled to the temp file.
+   *
+   * @return the spilled bytes
+   */
+  public synchronized long getSpilledBytes() {
+    return spillWritten;
+  }
+
+  /**
+   * Gets the spill file, until it's deleted.
+   *
+   * @return the spill file, null if nothing was spilled or once it's deleted
+   */
+  synchronized File getSpillFile() {
+    return spillFile;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int read() throws IOException {
+    byte[] value = new byte[1];
+    int read = read(value, 0, 1);
+    return read < 0 ? -1 : value[0] & 0xFF;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (true) {
+      if (readerClosed) {
+        throw new IOException("Stream closed");
+      }
+      if (failure != null) {
+        throw new IOException("Producer failed", failure);
+      }
+      if (!chunks.isEmpty()) {
+        byte[] chunk = chunks.peek();
+        int read = Math.min(length, chunk.length - chunkOffset);
+        System.arraycopy(chunk, chunkOffset, bytes, offset, read);
+        chunkOffset += read;
+        memoryBytes -= read;
+        if (chunkOffset == chunk.length) {
+          chunks.poll();
+          chunkOffset = 0;
+        }
+        return read;
+      }
+      if (spillRead < spillWritten) {
+        if (spillInput == null) {
+          spillInput = new RandomAccessFile(spillFile, "r");
+        }
+        int read = spillInput.read(bytes, offset, (int) Math.min(length, spillWritten - spillRead));
+        spillRead += read;
+        return read;
+      }
+      if (producerClosed) {
+        return -1;
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the producer");
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized int available() throws IOException {
+    return (int) Math.min(Integer.MAX_VALUE, memoryBytes + spillWritten - spillRead);
+  }
+
+  /**
+   * Closes the stream, next writes of the producer fail. The spill file is
+   * deleted once the producer closed too.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (readerClosed) {
+      return;
+    }
+    readerClosed = true;
+    chunks.clear();
+    memoryBytes = 0;
+    if (spillInput != null) {
+      spillInput.close();
+    }
+    deleteSpillFileIfDone();
+    notifyAll();
+  }
+
+  /**
+   * Writes produced bytes.
+   *
+   * @param bytes the bytes
+   * @param offset the offset
+   * @param length the length
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void write(byte[] bytes, int offset, int length) throws IOException {
+    synchronized (this) {
+      if (readerClosed) {
+        throw new IOException("Pipe closed by the reader");
+      }
+      if (spillOutput == null && memoryBytes + length <= memoryThreshold) {
+        byte[] chunk = new byte[length];
+        System.arraycopy(bytes, offset, chunk, 0, length);
+        chunks.add(chunk);
+        memoryBytes += length;
+        notifyAll();
+        return;
+      }
+    }
+    // Spill, once the file is used all next writes go to it to keep the order
+    if (spillOutput == null) {
+      File file = File.createTempFile("exo", "-extension-generator-export.zip");
+      synchronized (this) {
+        spillFile = file;
+      }
+      spillOutput = new FileOutputStream(file);
+    }
+    spillOutput.write(bytes, offset, length);
+    // Flushed by FileOutputStream, readable as soon as published
+    synchronized (this) {
+      spillWritten += length;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Marks the producer as done.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private void producerClose() throws IOException {
+    try {
+      if (spillOutput != null) {
+        spillOutput.close();
+      }
+    } finally {
+      synchronized (this) {
+        if (!producerClosed) {
+          producerClosed = true;
+          if (spillWritten > 0) {
+            GenerationMetrics.getInstance().tempFileCreated(spillWritten);
+          }
+          deleteSpillFileIfDone();
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes the spill file when both the producer and the reader are done
+   * with it.
+   */
+  private void deleteSpillFileIfDone() {
+    if (producerClosed && readerClosed && spillFile != null) {
+      if (spillWritten > 0) {
+        GenerationMetrics.getInstance().tempFileDeleted(spillWritten);
+      }
+      if (!spillFile.delete()) {
+        spillFile.deleteOnExit();
+      }
+      spillFile = null;
+    }
+  }
+
+  /**
+   * Output stream of the producer.
+   */
+  private class ProducerOutputStream extends OutputStream {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int value) throws IOException {
+      write(new byte[] { (byte) value }, 0, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (length > 0) {
+        SpillingPipedInputStream.this.write(bytes, offset, length);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      producerClose();
+    }
+  }
+}
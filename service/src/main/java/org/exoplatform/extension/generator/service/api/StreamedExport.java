@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.exoplatform.container.ExoContainer;
+import org.exoplatform.container.ExoContainerContext;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Archive exported by GateIN Management Controller and read entry by entry
+ * while it's written. The export runs on a producer thread writing to a
+ * {@link SpillingPipedInputStream}, so that handlers write the first entries
+ * before the export ends, without temp file unless the export is bigger than
+ * the memory threshold and read slower than written. Exports already written
+ * in a file or cached are read the same way.
+ */
+public class StreamedExport implements Closeable {
+
+  /** The Constant ENABLED_PROPERTY. */
+  public static final String ENABLED_PROPERTY = "exo.extension.generator.exports.streaming";
+
+  /** The Constant MEMORY_THRESHOLD_PROPERTY. */
+  public static final String MEMORY_THRESHOLD_PROPERTY = "exo.extension.generator.exports.memoryThreshold";
+
+  /** The Constant PRODUCERS_THREADS_PROPERTY. */
+  public static final String PRODUCERS_THREADS_PROPERTY = "exo.extension.generator.exports.producerThreads";
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(StreamedExport.class);
+
+  /** The producers executor. */
+  private static ExecutorService producersExecutor;
+
+  /** The path. */
+  private final String path;
+
+  /** The filters. */
+  private final String[] filters;
+
+  /** The pipe, null when reading a file. */
+  private final SpillingPipedInputStream pipe;
+
+  /** The exported resource, null when reading a pipe. */
+  private final ExportedResource exportedResource;
+
+  /** The zip input stream. */
+  private final ZipInputStream zipInputStream;
+
+  /** The content digest of a pipe, null when reading a file. */
+  private final ExportContentDigest contentDigest;
+
+  /** The digest, set once all the entries are read. */
+  private volatile String digest;
+
+  /** Whether all the entries were read. */
+  private volatile boolean entriesRead;
+
+  /**
+   * Instantiates a new streamed export.
+   *
+   * @param path the path
+   * @param filters the filters
+   * @param inputStream the input stream
+   * @param pipe the pipe
+   * @param exportedResource the exported resource
+   */
+  private StreamedExport(String path, String[] filters, InputStream inputStream, SpillingPipedInputStream pipe, ExportedResource exportedResource) {
+    this.path = path;
+    this.filters = filters;
+    this.pipe = pipe;
+    this.exportedResource = exportedResource;
+    this.digest = exportedResource == null ? null : exportedResource.getDigest();
+    this.contentDigest = pipe == null ? null : new ExportContentDigest();
+    this.zipInputStream = new ZipInputStream(inputStream) {
+      @Override
+      public ZipEntry getNextEntry() throws IOException {
+        // Reads the rest of the current entry through read()
+        closeEntry();
+        ZipEntry entry = super.getNextEntry();
+        if (contentDigest != null) {
+          if (entry != null) {
+            contentDigest.startEntry(entry.getName());
+          } else if (!entriesRead) {
+            digest = contentDigest.digest();
+          }
+        }
+        if (entry == null) {
+          entriesRead = true;
+        }
+        return entry;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = super.read(bytes, offset, length);
+        if (contentDigest != null && read > 0) {
+          contentDigest.update(bytes, offset, read);
+        }
+        return read;
+      }
+    };
+  }
+
+  /**
+   * Checks if exports are streamed, which is the default unless
+   * exo.extension.generator.exports.streaming is false.
+   *
+   * @return true, if is enabled
+   */
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+  }
+
+  /**
+   * Call GateIN Management Controller, on a producer thread, to export a
+   * resource using options passed in filters.
+   *
+   * @param managementController the management controller
+   * @param cancellationToken the cancellation token, can be null
+   * @param path managed path
+   * @param filters passed to GateIN Management SPI
+   * @return the streamed export
+   */
+  public static StreamedExport export(ManagementController managementController, CancellationToken cancellationToken, String path, String... filters) {
+    SpillingPipedInputStream pipe = new SpillingPipedInputStream(Integer.getInteger(MEMORY_THRESHOLD_PROPERTY, 4 * 1024 * 1024));
+    StreamedExport streamedExport = new StreamedExport(path, filters, pipe, pipe, null);
+    getProducersExecutor().execute(new ExportProducer(streamedExport,
+                                                      managementController,
+                                                      cancellationToken,
+                                                      ExoContainerContext.getCurrentContainerIfPresent()));
+    return streamedExport;
+  }
+
+  /**
+   * Reads an export already written in a file. The file is released on close.
+   *
+   * @param exportedResource the exported resource
+   * @return the streamed export
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static StreamedExport open(ExportedResource exportedResource) throws IOException {
+    InputStream inputStream = new BufferedInputStream(new FileInputStream(exportedResource.getFile()));
+    return new StreamedExport(exportedResource.getPath(), exportedResource.getFilters(), inputStream, null, exportedResource);
+  }
+
+  /**
+   * Gets the zip input stream to read entries from.
+   *
+   * @return the zip input stream
+   */
+  public ZipInputStream getZipInputStream() {
+    return zipInputStream;
+  }
+
+  /**
+   * Gets the path.
+   *
+   * @return the path
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Gets the filters.
+   *
+   * @return the filters
+   */
+  public String[] getFilters() {
+    return filters;
+  }
+
+  /**
+   * Reads the end of a streamed export, after its last entry, and gets the
+   * SHA-1 digest of the archive content, see {@link ExportContentDigest}.
+   *
+   * @return the digest, or null if the entries weren't all read or the export
+   *         failed
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public String readDigest() throws IOException {
+    if (pipe != null && entriesRead) {
+      byte[] buffer = new byte[8192];
+      while (pipe.read(buffer) >= 0) {
+        // The producer fails the pipe if the export didn't end
+      }
+    }
+    return pipe == null || entriesRead ? digest : null;
+  }
+
+  /**
+   * Closes the stream, which stops the producer if it's still writing, and
+   * releases the exported file if any.
+   */
+  @Override
+  public void close() {
+    IOUtils.closeQuietly(zipInputStream);
+    if (exportedResource != null) {
+      exportedResource.release();
+    }
+  }
+
+  /**
+   * Stops the producer threads, interrupting running exports and failing
+   * queued ones. The next export creates them again.
+   */
+  public static synchronized void shutdown() {
+    if (producersExecutor != null) {
+      for (Runnable queuedProducer : producersExecutor.shutdownNow()) {
+        ((ExportProducer) queuedProducer).streamedExport.pipe.fail(new IOException("Export producers stopped"));
+      }
+      producersExecutor = null;
+    }
+  }
+
+  /**
+   * Gets the producers executor, bounded by
+   * exo.extension.generator.exports.producerThreads. When all threads are busy
+   * and the queue is full, or the executor was shut down meanwhile, the export
+   * is written by the reader thread before it reads it: producers never wait
+   * for the reader, so it only delays the first entries.
+   *
+   * @return the producers executor
+   */
+  private static synchronized ExecutorService getProducersExecutor() {
+    if (producersExecutor == null) {
+      int threads = Math.max(1, Integer.getInteger(PRODUCERS_THREADS_PROPERTY, 4));
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                                                           threads,
+                                                           60L,
+                                                           TimeUnit.SECONDS,
+                                                           new ArrayBlockingQueue<Runnable>(threads),
+                                                           new ThreadFactory() {
+                                                             private final AtomicInteger threadIndex = new AtomicInteger();
+
+                                                             @Override
+                                                             public Thread newThread(Runnable runnable) {
+                                                               Thread thread = new Thread(runnable, "extension-generator-export-" + threadIndex.incrementAndGet());
+                                                               thread.setDaemon(true);
+                                                               return thread;
+                                                             }
+                                                           },
+                                                           new RejectedExecutionHandler() {
+                                                             @Override
+                                                             public void rejectedExecution(Runnable producer, ThreadPoolExecutor executor) {
+                                                               producer.run();
+                                                             }
+                                                           });
+      executor.allowCoreThreadTimeOut(true);
+      producersExecutor = executor;
+    }
+    return producersExecutor;
+  }
+
+  /**
+   * Writes an export into the pipe of a streamed export.
+   */
+  private static class ExportProducer implements Runnable {
+
+    /** The streamed export. */
+    private final StreamedExport streamedExport;
+
+    /** The management controller. */
+    private final ManagementController managementController;
+
+    /** The cancellation token. */
+    private final CancellationToken cancellationToken;
+
+    /** The container of the generation. */
+    private final ExoContainer container;
+
+    /**
+     * Instantiates a new export producer.
+     *
+     * @param streamedExport the streamed export
+     * @param managementController the management controller
+     * @param cancellationToken the cancellation token
+     * @param container the container
+     */
+    public ExportProducer(StreamedExport streamedExport,
+                          ManagementController managementController,
+                          CancellationToken cancellationToken,
+                          ExoContainer container) {
+      this.streamedExport = streamedExport;
+      this.managementController = managementController;
+      this.cancellationToken = cancellationToken;
+      this.container = container;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      ExoContainer previousContainer = ExoContainerContext.getCurrentContainerIfPresent();
+      ExoContainerContext.setCurrentContainer(container);
+      GenerationMetrics metrics = GenerationMetrics.getInstance();
+      long startTime = System.currentTimeMillis();
+      String path = streamedExport.getPath();
+      CountingOutputStream countingOutputStream = new CountingOutputStream(streamedExport.pipe.getOutputStream());
+      OutputStream outputStream = new BufferedOutputStream(countingOutputStream);
+      try {
+        if (cancellationToken != null) {
+          cancellationToken.checkCancelled();
+        }
+        ManagedResponse response = managementController.execute(ExportedResource.newExportRequest(path, streamedExport.getFilters()));
+        if (!response.getOutcome().isSuccess()) {
+          throw new IOException("Export of " + path + " failed: " + response.getOutcome().getFailureDescription());
+        }
+        response.writeResult(outputStream, false);
+        outputStream.flush();
+        metrics.recordExport(path, OperationMetrics.Outcome.SUCCESS, System.currentTimeMillis() - startTime, countingOutputStream.getByteCount());
+      } catch (Throwable e) {
+        streamedExport.pipe.fail(e);
+        boolean cancelled = cancellationToken != null && cancellationToken.isCancelled();
+        metrics.recordExport(path,
+                             cancelled ? OperationMetrics.Outcome.CANCELLED : OperationMetrics.Outcome.FAILURE,
+                             System.currentTimeMillis() - startTime,
+                             -1);
+        log.debug("Export of " + path + " interrupted", e);
+      } finally {
+        IOUtils.closeQuietly(outputStream);
+        ExoContainerContext.setCurrentContainer(previousContainer);
+      }
+    }
+  }
+}
@@ -26,17 +26,23 @@ import org.exoplatform.services.cms.templates.impl.TemplateConfig;
 import org.exoplatform.services.cms.templates.impl.TemplateConfig.Template;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
-import org.jibx.runtime.BindingDirectory;
-import org.jibx.runtime.IBindingFactory;
 import org.jibx.runtime.IMarshallingContext;
-import org.jibx.runtime.impl.UnmarshallingContext;
+import org.jibx.runtime.IUnmarshallingContext;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -69,7 +75,7 @@ public class Utils {
         entryName = entryName.substring(1);
       }
       zos.putNextEntry(new ZipEntry(entryName));
-      zos.write(toXML(configuration, extensionName));
+      writeXML(configuration, extensionName, zos);
       zos.closeEntry();
     } catch (Exception e) {
       log.error("Error while writing file " + entryName, e);
@@ -98,7 +104,7 @@ public class Utils {
         entryName = entryName.substring(1);
       }
       zos.putNextEntry(new ZipEntry(entryName));
-      zos.write(toXML(configuration, extensionName));
+      writeXML(configuration, extensionName, zos);
       zos.closeEntry();
     } catch (Exception e) {
       log.error("Error while writing file " + entryName, e);
@@ -138,6 +144,38 @@ public class Utils {
     zin.close();
   }
 
+  /**
+   * Copy all entries of an already generated archive, as is, into zos. Entries
+   * whose names were already written are skipped.
+   *
+   * @param zipFile the source archive
+   * @param zos the zos
+   * @param writtenEntries names of entries already written in zos, updated by
+   *          this method
+   * @throws Exception the exception
+   */
+  public static void mergeZipEntries(ZipFile zipFile, ZipOutputStream zos, Set<String> writtenEntries) throws Exception {
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (entry.isDirectory()) {
+        continue;
+      }
+      if (!writtenEntries.add(entry.getName())) {
+        log.warn("Duplicate entry ignored: " + entry.getName());
+        continue;
+      }
+      InputStream inputStream = zipFile.getInputStream(entry);
+      try {
+        zos.putNextEntry(new ZipEntry(entry.getName()));
+        IOUtils.copy(inputStream, zos);
+        zos.closeEntry();
+      } finally {
+        inputStream.close();
+      }
+    }
+  }
+
   /**
    * Write zip enry.
    *
@@ -165,18 +203,57 @@ public class Utils {
    */
   public static void writeZipEnry(ZipOutputStream zos, String entryName, String extensionName, InputStream inputStream, boolean changeContent, boolean closeInputStream) throws Exception {
     entryName = entryName.replaceAll("/ecmadmin", "");
+    entryName = entryName.replace("custom-extension", extensionName);
     if (changeContent) {
-      String content = IOUtils.toString(inputStream);
-      writeZipEnry(zos, entryName, extensionName, content, true);
+      writeZipEnry(zos, entryName, inputStream, Collections.singletonMap("custom-extension", extensionName));
     } else {
-      entryName = entryName.replace("custom-extension", extensionName);
-      writeZipEnry(zos, entryName, IOUtils.toByteArray(inputStream));
+      writeZipEnry(zos, entryName, inputStream, null);
     }
     if (closeInputStream) {
       inputStream.close();
     }
   }
 
+  /**
+   * Write an uncompressed zip entry, used for nested archives that are
+   * already compressed. The content is copied by chunks.
+   *
+   * @param zos the zos
+   * @param entryName the entry name
+   * @param inputStream the input stream, not closed by this method
+   * @param size the content size
+   * @param crc the CRC-32 of the content
+   * @throws Exception the exception
+   */
+  public static void writeStoredZipEnry(ZipOutputStream zos, String entryName, InputStream inputStream, long size, long crc) throws Exception {
+    if (entryName.startsWith("/")) {
+      entryName = entryName.substring(1);
+    }
+    ZipEntry entry = new ZipEntry(entryName);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(size);
+    entry.setCompressedSize(size);
+    entry.setCrc(crc);
+    zos.putNextEntry(entry);
+    IOUtils.copyLarge(inputStream, zos);
+    zos.closeEntry();
+  }
+
+  /**
+   * Write an uncompressed zip entry, used for nested archives that are
+   * already compressed.
+   *
+   * @param zos the zos
+   * @param entryName the entry name
+   * @param bytes the content
+   * @throws Exception the exception
+   */
+  public static void writeStoredZipEnry(ZipOutputStream zos, String entryName, byte[] bytes) throws Exception {
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    writeStoredZipEnry(zos, entryName, new ByteArrayInputStream(bytes), bytes.length, crc.getValue());
+  }
+
   /**
    * Write zip enry.
    *
@@ -190,7 +267,7 @@ public class Utils {
   public static void writeZipEnry(ZipOutputStream zos, String entryName, String extensionName, String content, boolean changeContent) throws Exception {
     entryName = entryName.replace("custom-extension", extensionName);
     if (changeContent) {
-      content = content.replaceAll("custom-extension", extensionName);
+      content = content.replace("custom-extension", extensionName);
     }
     writeZipEnry(zos, entryName, content.getBytes("UTF-8"));
   }
@@ -205,15 +282,27 @@ public class Utils {
    */
   public static byte[] toXML(Object obj, String extensionName) throws Exception {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
-    IBindingFactory bfact = BindingDirectory.getFactory(obj.getClass());
-    IMarshallingContext mctx = bfact.createMarshallingContext();
+    writeXML(obj, extensionName, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * Marshals an object with JiBX into out. The kernel XSD declaration, the
+   * removal of empty fields and the extension name substitution are applied
+   * in one pass by {@link ConfigurationXMLOutputStream} while the document is
+   * written. out isn't closed.
+   *
+   * @param obj the obj
+   * @param extensionName the extension name
+   * @param out the output stream
+   * @throws Exception the exception
+   */
+  public static void writeXML(Object obj, String extensionName, OutputStream out) throws Exception {
+    IMarshallingContext mctx = BindingRegistry.newMarshallingContext(obj.getClass());
     mctx.setIndent(2);
-    mctx.marshalDocument(obj, "UTF-8", null, out);
-    String content = new String(out.toByteArray());
-    content = content.replace("<configuration>", CONFIGURATION_FILE_XSD);
-    content = content.replaceAll("<field name=\"([A-z])*\"/>", "");
-    content = content.replaceAll("custom-extension", extensionName);
-    return content.getBytes();
+    ConfigurationXMLOutputStream configurationOutputStream = new ConfigurationXMLOutputStream(out, CONFIGURATION_FILE_XSD, extensionName);
+    mctx.marshalDocument(obj, "UTF-8", null, configurationOutputStream);
+    configurationOutputStream.close();
   }
 
   /**
@@ -227,12 +316,25 @@ public class Utils {
    */
   public static <T> T fromXML(byte[] bytes, Class<T> clazz) throws Exception {
     ByteArrayInputStream baos = new ByteArrayInputStream(bytes);
-    IBindingFactory bfact = BindingDirectory.getFactory(clazz);
-    UnmarshallingContext uctx = (UnmarshallingContext) bfact.createUnmarshallingContext();
+    IUnmarshallingContext uctx = BindingRegistry.newUnmarshallingContext(clazz);
     Object obj = uctx.unmarshalDocument(baos, "UTF-8");
     return clazz.cast(obj);
   }
 
+  /**
+   * Converts bytes to their hexadecimal representation.
+   *
+   * @param bytes the bytes
+   * @return the hexadecimal string
+   */
+  public static String toHex(byte[] bytes) {
+    StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
   /**
    * Convert template list.
    *
@@ -275,4 +377,31 @@ public class Utils {
     }
   }
 
+  /**
+   * Write zip enry by copying the input stream by chunks, the content is never
+   * fully loaded in memory. Placeholders are replaced while copying.
+   *
+   * @param zos the zos
+   * @param entryName the entry name
+   * @param inputStream the input stream
+   * @param replacements the replacements by placeholder, null to copy the
+   *          content as is
+   * @throws IOException Signals that the source can't be read or the archive
+   *           can't be written, the entry is then incomplete.
+   */
+  private static void writeZipEnry(ZipOutputStream zos, String entryName, InputStream inputStream, Map<String, String> replacements) throws IOException {
+    if (entryName.startsWith("/")) {
+      entryName = entryName.substring(1);
+    }
+    zos.putNextEntry(new ZipEntry(entryName));
+    if (replacements == null) {
+      IOUtils.copyLarge(inputStream, zos);
+    } else {
+      PlaceholderReplacingOutputStream outputStream = new PlaceholderReplacingOutputStream(zos, replacements);
+      IOUtils.copyLarge(inputStream, outputStream);
+      outputStream.close();
+    }
+    zos.closeEntry();
+  }
+
 }
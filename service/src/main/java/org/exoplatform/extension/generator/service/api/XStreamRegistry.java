@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.security.NoTypePermission;
+import com.thoughtworks.xstream.security.NullPermission;
+import com.thoughtworks.xstream.security.PrimitiveTypePermission;
+
+import org.exoplatform.management.content.operations.site.contents.SiteMetaData;
+import org.exoplatform.management.ecmadmin.operations.taxonomy.TaxonomyMetaData;
+import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
+import org.exoplatform.management.ecmadmin.operations.templates.applications.ApplicationTemplatesMetadata;
+import org.exoplatform.management.ecmadmin.operations.templates.metadata.MetadataTemplatesMetaData;
+import org.exoplatform.management.ecmadmin.operations.templates.nodetypes.NodeTypeTemplatesMetaData;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared XStream instances, one per root type of the XML documents read or
+ * written by the generator (metadata.xml of exports and extension manifest).
+ * Building an XStream is expensive, so each instance is configured once with
+ * its aliases and then only used to marshal and unmarshal, which XStream
+ * supports from concurrent threads. The extension manifest is read from
+ * archives uploaded by users, so its instance only allows the manifest types.
+ */
+public class XStreamRegistry {
+
+  /** The Constant log. */
+  private static final Log log = ExoLogger.getLogger(XStreamRegistry.class);
+
+  /** The known root types, created by {@link #warmUp()}. */
+  private static final Class<?>[] ROOT_TYPES = new Class<?>[] { ApplicationTemplatesMetadata.class, TaxonomyMetaData.class, SiteMetaData.class,
+      MetadataTemplatesMetaData.class, NodeTypeTemplatesMetaData.class, ExtensionManifest.class };
+
+  /** The instances, by root type. */
+  private static final ConcurrentHashMap<Class<?>, XStream> instances = new ConcurrentHashMap<Class<?>, XStream>();
+
+  /**
+   * Instantiates a new XStream registry.
+   */
+  private XStreamRegistry() {
+  }
+
+  /**
+   * Gets the XStream instance of a root type. Types not known by the registry
+   * get an instance aliasing "metadata" to the type.
+   *
+   * @param rootType the root type
+   * @return the XStream instance
+   */
+  public static XStream getXStream(Class<?> rootType) {
+    XStream xStream = instances.get(rootType);
+    if (xStream == null) {
+      xStream = newXStream(rootType);
+      XStream previous = instances.putIfAbsent(rootType, xStream);
+      if (previous != null) {
+        xStream = previous;
+      }
+    }
+    return xStream;
+  }
+
+  /**
+   * Creates the instances of all known root types, so that the first
+   * generation doesn't pay for it.
+   */
+  public static void warmUp() {
+    for (Class<?> rootType : ROOT_TYPES) {
+      try {
+        getXStream(rootType);
+      } catch (Throwable e) {
+        log.warn("Unable to create XStream instance of " + rootType.getName() + ", it will be created on first use.", e);
+      }
+    }
+  }
+
+  /**
+   * Creates and configures an XStream instance.
+   *
+   * @param rootType the root type
+   * @return the XStream instance
+   */
+  private static XStream newXStream(Class<?> rootType) {
+    XStream xStream = new XStream();
+    if (rootType == ExtensionManifest.class) {
+      xStream.addPermission(NoTypePermission.NONE);
+      xStream.addPermission(NullPermission.NULL);
+      xStream.addPermission(PrimitiveTypePermission.PRIMITIVES);
+      xStream.allowTypes(new Class[] { ExtensionManifest.class, HandlerManifest.class, ExportDigest.class, String.class, ArrayList.class });
+      xStream.alias("manifest", ExtensionManifest.class);
+      xStream.alias("handler", HandlerManifest.class);
+      xStream.alias("export", ExportDigest.class);
+      xStream.aliasField("selected-resources", HandlerManifest.class, "selectedResources");
+      xStream.aliasField("configuration-paths", HandlerManifest.class, "configurationPaths");
+      xStream.aliasField("selection-root", HandlerManifest.class, "selectionRoot");
+      xStream.aliasField("extension-name", ExtensionManifest.class, "extensionName");
+      xStream.aliasField("generation-time", ExtensionManifest.class, "generationTime");
+      return xStream;
+    }
+    xStream.alias("metadata", rootType);
+    if (rootType == MetadataTemplatesMetaData.class || rootType == NodeTypeTemplatesMetaData.class) {
+      xStream.alias("template", NodeTemplate.class);
+    }
+    return xStream;
+  }
+}
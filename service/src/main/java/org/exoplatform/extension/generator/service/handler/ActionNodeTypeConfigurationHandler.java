@@ -23,6 +23,7 @@ import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.ValuesParam;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.jcr.RepositoryService;
 import org.exoplatform.services.jcr.impl.AddNodeTypePlugin;
@@ -64,8 +65,8 @@ public class ActionNodeTypeConfigurationHandler extends AbstractConfigurationHan
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_ACTION_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_ACTION_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -74,12 +75,13 @@ public class ActionNodeTypeConfigurationHandler extends AbstractConfigurationHan
 
     List<String> filterActionTypes = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String actionTypeName = resourcePath.replace(ExtensionGenerator.ECM_ACTION_PATH + "/", "");
       filterActionTypes.add(actionTypeName);
     }
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_ACTION_PATH, filterActionTypes.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_ACTION_PATH, filterActionTypes.toArray(new String[0]));
       ValuesParam valuesParam = new ValuesParam();
       valuesParam.setName("autoCreatedInNewRepository");
       valuesParam.setValues(new ArrayList<String>());
@@ -110,7 +112,7 @@ public class ActionNodeTypeConfigurationHandler extends AbstractConfigurationHan
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
     return Utils.writeConfiguration(zos, JCR_CONFIGURATION_LOCATION + ACTION_CONFIGURATION_NAME, extensionName, externalComponentPlugins);
   }
@@ -26,18 +26,19 @@ import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -68,8 +69,8 @@ public class ApplicationRegistryConfigurationHandler extends AbstractConfigurati
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.REGISTRY_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.REGISTRY_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -77,31 +78,26 @@ public class ApplicationRegistryConfigurationHandler extends AbstractConfigurati
     ComponentPlugin plugin = createComponentPlugin("new.registry.category", ApplicationCategoriesPlugins.class.getName(), "initListener", null);
     addComponentPlugin(externalComponentPlugins, ApplicationRegistryService.class.getName(), plugin);
 
-    for (String resourcePath : filteredSelectedResources) {
-      ZipFile zipFile = null;
+    for (String exportPath : planExports(context, ExtensionGenerator.REGISTRY_PATH, filteredSelectedResources)) {
+      context.checkCancelled();
+      StreamedExport streamedExport = getExportedStreamFromOperation(context, exportPath);
       try {
-        zipFile = getExportedFileFromOperation(resourcePath);
-        Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        while (entries.hasMoreElements()) {
-          ZipEntry zipEntry = (ZipEntry) entries.nextElement();
+        ZipInputStream zis = streamedExport.getZipInputStream();
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
           try {
-            InputStream inputStream = zipFile.getInputStream(zipEntry);
-            ObjectParameter objectParameter = Utils.fromXML(IOUtils.toByteArray(inputStream), ObjectParameter.class);
+            ObjectParameter objectParameter = Utils.fromXML(IOUtils.toByteArray(zis), ObjectParameter.class);
             objectParameter.setName(zipEntry.getName().replace(".xml", ""));
             addParameter(plugin, objectParameter);
           } catch (Exception e) {
             log.error("Error while marshalling " + zipEntry.getName(), e);
           }
         }
+      } catch (IOException e) {
+        log.error("Error while reading export of " + exportPath, e);
+        return false;
       } finally {
-        if (zipFile != null) {
-          try {
-            zipFile.close();
-          } catch (Exception e) {
-            // Nothing to do
-          }
-        }
-        clearTempFiles();
+        closeExportedStream(context, streamedExport);
       }
     }
     return Utils.writeConfiguration(zos, APPLICATION_REGISTRY_CONFIGURATION_XML, extensionName, externalComponentPlugins);
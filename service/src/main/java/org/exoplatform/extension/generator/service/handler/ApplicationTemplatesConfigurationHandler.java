@@ -23,18 +23,18 @@ import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.management.ecmadmin.operations.templates.applications.ApplicationTemplatesMetadata;
 import org.exoplatform.services.cms.views.ApplicationTemplateManagerService;
 import org.exoplatform.services.cms.views.PortletTemplatePlugin;
 import org.exoplatform.services.cms.views.PortletTemplatePlugin.PortletTemplateConfig;
 
-import java.io.InputStream;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -73,44 +73,37 @@ public abstract class ApplicationTemplatesConfigurationHandler extends AbstractC
    * {@inheritDoc}
    */
   @Override
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, stagingExtensionPath);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, stagingExtensionPath);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
     ApplicationTemplatesMetadata metadata = new ApplicationTemplatesMetadata();
-    for (String resourcePath : filteredSelectedResources) {
-      ZipFile zipFile = null;
+    for (String exportPath : planExports(context, stagingExtensionPath, filteredSelectedResources)) {
+      context.checkCancelled();
+      StreamedExport streamedExport = getExportedStreamFromOperation(context, exportPath);
       try {
-        zipFile = getExportedFileFromOperation(resourcePath);
-        // Compute Metadata
-        ApplicationTemplatesMetadata tmpMetadata = getApplicationTemplatesMetadata(zipFile);
-        if (tmpMetadata != null) {
-          metadata.getTitleMap().putAll(tmpMetadata.getTitleMap());
-        }
-        Enumeration<? extends ZipEntry> entries = zipFile.entries();
-        while (entries.hasMoreElements()) {
-          ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-          if (zipEntry.isDirectory() || zipEntry.getName().equals("") || !zipEntry.getName().endsWith(".gtmpl")) {
+        ZipInputStream zis = streamedExport.getZipInputStream();
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+          if (zipEntry.getName().equals(APPLICATION_TEMPLATES_METADATA_ENTRY)) {
+            // Compute Metadata
+            ApplicationTemplatesMetadata tmpMetadata = getApplicationTemplatesMetadata(zis);
+            if (tmpMetadata != null) {
+              metadata.getTitleMap().putAll(tmpMetadata.getTitleMap());
+            }
             continue;
           }
-          try {
-            InputStream inputStream = zipFile.getInputStream(zipEntry);
-            Utils.writeZipEnry(zos, DMS_CONFIGURATION_LOCATION + zipEntry.getName(), extensionName, inputStream, false);
-          } catch (Exception e) {
-            getLogger().error(e);
-            return false;
+          if (zipEntry.isDirectory() || zipEntry.getName().equals("") || !zipEntry.getName().endsWith(".gtmpl")) {
+            continue;
           }
+          Utils.writeZipEnry(zos, DMS_CONFIGURATION_LOCATION + zipEntry.getName(), extensionName, zis, false, false);
         }
+      } catch (Exception e) {
+        getLogger().error(e);
+        return false;
       } finally {
-        if (zipFile != null) {
-          try {
-            zipFile.close();
-          } catch (Exception e) {
-            // Nothing to do
-          }
-        }
-        clearTempFiles();
+        closeExportedStream(context, streamedExport);
       }
     }
 
@@ -20,6 +20,7 @@ package org.exoplatform.extension.generator.service.handler;
 
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -27,6 +28,7 @@ import org.exoplatform.services.log.Log;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipEntry;
@@ -41,34 +43,31 @@ public class DrivesConfigurationHandler extends AbstractConfigurationHandler {
   /** The Constant DRIVE_CONFIGURATION_LOCATION_FROM_EXPORT. */
   private static final String DRIVE_CONFIGURATION_LOCATION_FROM_EXPORT = "ecmadmin/drive/drives-configuration.xml";
   
-  /** The configuration paths. */
-  private final List<String> configurationPaths = new ArrayList<String>();
-
   /** The log. */
   private Log log = ExoLogger.getLogger(this.getClass());
 
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_DRIVE_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_DRIVE_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
-    configurationPaths.clear();
     List<String> filterDrives = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String driveName = resourcePath.replace(ExtensionGenerator.ECM_DRIVE_PATH + "/", "");
       filterDrives.add(driveName);
     }
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_DRIVE_PATH, filterDrives.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_DRIVE_PATH, filterDrives.toArray(new String[0]));
       ZipEntry drivesConfigurationEntry = zipFile.getEntry(DRIVE_CONFIGURATION_LOCATION_FROM_EXPORT);
       String drivesConfigurationEntryName = drivesConfigurationEntry.getName().replaceAll("ecmadmin/", "");
       InputStream inputStream = zipFile.getInputStream(drivesConfigurationEntry);
       Utils.writeZipEnry(zos, DMS_CONFIGURATION_LOCATION + drivesConfigurationEntryName, extensionName, inputStream, false);
-      configurationPaths.add(DMS_CONFIGURATION_LOCATION.replace("WEB-INF", "war:") + drivesConfigurationEntryName);
+      context.addConfigurationPath(DMS_CONFIGURATION_LOCATION.replace("WEB-INF", "war:") + drivesConfigurationEntryName);
       return true;
     } catch (Exception e) {
       log.error("Error while serializing drives data", e);
@@ -81,7 +80,7 @@ public class DrivesConfigurationHandler extends AbstractConfigurationHandler {
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
   }
 
@@ -98,6 +97,6 @@ public class DrivesConfigurationHandler extends AbstractConfigurationHandler {
    */
   @Override
   public List<String> getConfigurationPaths() {
-    return configurationPaths;
+    return Collections.emptyList();
   }
 }
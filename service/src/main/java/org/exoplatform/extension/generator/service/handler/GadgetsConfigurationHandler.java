@@ -23,10 +23,9 @@ import org.exoplatform.application.gadget.GadgetRegistryService;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.jcr.RepositoryService;
-import org.exoplatform.services.jcr.core.ManageableRepository;
-import org.exoplatform.services.jcr.ext.common.SessionProvider;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 
@@ -65,8 +64,8 @@ public class GadgetsConfigurationHandler extends AbstractConfigurationHandler {
    * {@inheritDoc}
    */
   @Override
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.GADGET_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.GADGET_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -81,6 +80,7 @@ public class GadgetsConfigurationHandler extends AbstractConfigurationHandler {
       gadgetsConfiguration.append("\txsi:schemaLocation=\"http://www.gatein.org/xml/ns/gatein_objects_1_0 http://www.gatein.org/xml/ns/gadgets_1_0\"\r\n");
       gadgetsConfiguration.append("\txmlns=\"http://www.gatein.org/xml/ns/gadgets_1_0\">\r\n");
       for (String selectedResoucePath : filteredSelectedResources) {
+        context.checkCancelled();
         selectedResoucePath = selectedResoucePath.replace(ExtensionGenerator.GADGET_PATH, "");
         Gadget gadget = gadgetRegistryService.getGadget(selectedResoucePath);
         String url = gadget.getUrl();
@@ -88,37 +88,41 @@ public class GadgetsConfigurationHandler extends AbstractConfigurationHandler {
         String workspace = path.substring(0, path.indexOf("/"));
         path = path.replace(workspace, "");
 
-        Session session = getSession(workspace);
-        if (!session.itemExists(path)) {
-          getLogger().warn("Cannot find Gadget '" + gadget.getName() + "' in ths location: " + gadget.getUrl());
-          continue;
+        Session session = openSession(context, workspace);
+        try {
+          if (!session.itemExists(path)) {
+            getLogger().warn("Cannot find Gadget '" + gadget.getName() + "' in ths location: " + gadget.getUrl());
+            continue;
+          }
+          Node gadgetXMLNode = (Node) session.getItem(path);
+          if (!gadgetXMLNode.isNodeType("nt:file")) {
+            getLogger().warn("Cannot handle Gadget '" + gadget.getName() + "'. It's not a file.");
+            continue;
+          }
+          Node gadgetParentNode = gadgetXMLNode.getParent();
+          if (gadgetParentNode.getPath().equals("/")) {
+            gadgetsConfiguration.append("\r\n\r\n\t<!-- Gadget '" + gadget.getName() + "' is not exported. Please add it in a separate folder, not under '/' (root folder of the workspace). -->\r\n\r\n");
+            getLogger().warn("Cannot export Gadget '" + gadget.getName() + "'. Each gadget have to be in a separate folder and not under root folder of the workspace.");
+            continue;
+          }
+          if (!gadgetParentNode.isNodeType("nt:folder")) {
+            getLogger().warn("Cannot export Gadget '" + gadget.getName() + "'. Its parent node is not a folder.");
+            continue;
+          }
+
+          String parentPath = gadgetParentNode.getParent().getPath();
+
+          writeFileNode(gadgetParentNode, parentPath, zos, extensionName, gadget.getName());
+
+          String xmlPath = GADGETS_LOCATION + "/" + gadgetXMLNode.getPath().replaceFirst(parentPath, gadget.getName());
+          xmlPath = xmlPath.replaceAll("//", "/");
+
+          gadgetsConfiguration.append(" <gadget name=\"").append(gadget.getName()).append("\">");
+          gadgetsConfiguration.append("\r\n   <path>/").append(xmlPath).append("</path>\r\n");
+          gadgetsConfiguration.append(" </gadget>\r\n");
+        } finally {
+          closeSession(context, session);
         }
-        Node gadgetXMLNode = (Node) session.getItem(path);
-        if (!gadgetXMLNode.isNodeType("nt:file")) {
-          getLogger().warn("Cannot handle Gadget '" + gadget.getName() + "'. It's not a file.");
-          continue;
-        }
-        Node gadgetParentNode = gadgetXMLNode.getParent();
-        if (gadgetParentNode.getPath().equals("/")) {
-          gadgetsConfiguration.append("\r\n\r\n\t<!-- Gadget '" + gadget.getName() + "' is not exported. Please add it in a separate folder, not under '/' (root folder of the workspace). -->\r\n\r\n");
-          getLogger().warn("Cannot export Gadget '" + gadget.getName() + "'. Each gadget have to be in a separate folder and not under root folder of the workspace.");
-          continue;
-        }
-        if (!gadgetParentNode.isNodeType("nt:folder")) {
-          getLogger().warn("Cannot export Gadget '" + gadget.getName() + "'. Its parent node is not a folder.");
-          continue;
-        }
-
-        String parentPath = gadgetParentNode.getParent().getPath();
-
-        writeFileNode(gadgetParentNode, parentPath, zos, extensionName, gadget.getName());
-
-        String xmlPath = GADGETS_LOCATION + "/" + gadgetXMLNode.getPath().replaceFirst(parentPath, gadget.getName());
-        xmlPath = xmlPath.replaceAll("//", "/");
-
-        gadgetsConfiguration.append(" <gadget name=\"").append(gadget.getName()).append("\">");
-        gadgetsConfiguration.append("\r\n   <path>/").append(xmlPath).append("</path>\r\n");
-        gadgetsConfiguration.append(" </gadget>\r\n");
       }
       gadgetsConfiguration.append("</gadgets>");
       Utils.writeZipEnry(zos, GADGETS_CONFIGURATION_PATH, extensionName, gadgetsConfiguration.toString(), false);
@@ -164,6 +168,14 @@ public class GadgetsConfigurationHandler extends AbstractConfigurationHandler {
     return node.getNode("jcr:content").getProperty("jcr:data").getStream();
   }
 
+  /**
+   * {@inheritDoc} Gadgets are read from JCR, not from GateIN exports.
+   */
+  @Override
+  public boolean isIncrementalSupported() {
+    return false;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -180,18 +192,4 @@ public class GadgetsConfigurationHandler extends AbstractConfigurationHandler {
     return log;
   }
 
-  /**
-   * Gets the session.
-   *
-   * @param workspace the workspace
-   * @return the session
-   * @throws Exception the exception
-   */
-  private Session getSession(String workspace) throws Exception {
-    SessionProvider provider = SessionProvider.createSystemProvider();
-    ManageableRepository repository = repositoryService.getCurrentRepository();
-    Session session = provider.getSession(workspace, repository);
-    return session;
-  }
-
 }
@@ -20,6 +20,7 @@ package org.exoplatform.extension.generator.service.handler;
 
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
@@ -27,6 +28,7 @@ import org.exoplatform.services.log.Log;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
@@ -39,24 +41,20 @@ import java.util.zip.ZipOutputStream;
  */
 public class JCRQueryConfigurationHandler extends AbstractConfigurationHandler {
   
-  /** The configuration paths. */
-  private final List<String> configurationPaths = new ArrayList<String>();
-
   /** The log. */
   private Log log = ExoLogger.getLogger(this.getClass());
 
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_QUERY_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_QUERY_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
-    configurationPaths.clear();
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_QUERY_PATH);
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_QUERY_PATH);
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry zipEntry = (ZipEntry) entries.nextElement();
@@ -64,7 +62,7 @@ public class JCRQueryConfigurationHandler extends AbstractConfigurationHandler {
         try {
           InputStream inputStream = zipFile.getInputStream(zipEntry);
           Utils.writeZipEnry(zos, DMS_CONFIGURATION_LOCATION + location, extensionName, inputStream, false);
-          configurationPaths.add(DMS_CONFIGURATION_LOCATION.replace("WEB-INF", "war:") + location);
+          context.addConfigurationPath(DMS_CONFIGURATION_LOCATION.replace("WEB-INF", "war:") + location);
         } catch (Exception e) {
           log.error("Error while serializing JCR Query data", e);
           return false;
@@ -78,7 +76,7 @@ public class JCRQueryConfigurationHandler extends AbstractConfigurationHandler {
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
     return true;
   }
@@ -88,7 +86,7 @@ public class JCRQueryConfigurationHandler extends AbstractConfigurationHandler {
    */
   @Override
   public List<String> getConfigurationPaths() {
-    return configurationPaths;
+    return Collections.emptyList();
   }
 
   /**
@@ -23,6 +23,8 @@ import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.portal.config.NewPortalConfig;
 import org.exoplatform.portal.config.NewPortalConfigListener;
@@ -31,16 +33,13 @@ import org.exoplatform.portal.mop.SiteType;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -80,50 +79,29 @@ public class MOPSiteConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, siteResourcePath);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, siteResourcePath);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
     HashSet<String> siteNames = new HashSet<String>();
-    ZipFile zipFile = null;
-    try {
-      for (String resourcePath : filteredSelectedResources) {
-        siteNames.add(resourcePath.replace(siteResourcePath, ""));
-        zipFile = getExportedFileFromOperation(resourcePath);
-        try {
-          Enumeration<? extends ZipEntry> entries = zipFile.entries();
-          while (entries.hasMoreElements()) {
-            ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-            InputStream inputStream = null;
-            try {
-              inputStream = zipFile.getInputStream(zipEntry);
-              Utils.writeZipEnry(zos, SITES_CONFIGURATION_LOCATION + zipEntry.getName(), extensionName, inputStream, false);
-            } finally {
-              if (inputStream != null) {
-                try {
-                  inputStream.close();
-                } catch (IOException e) {
-                  log.error(e);
-                }
-              }
-            }
-          }
-        } catch (Exception e) {
-          log.error("Error while serializing MOP data", e);
-          return false;
-        } finally {
-          if (zipFile != null) {
-            try {
-              zipFile.close();
-            } catch (IOException e) {
-              e.printStackTrace();
-            }
-          }
+    for (String resourcePath : filteredSelectedResources) {
+      siteNames.add(resourcePath.replace(siteResourcePath, ""));
+    }
+    for (String exportPath : planExports(context, siteResourcePath, filteredSelectedResources)) {
+      StreamedExport streamedExport = getExportedStreamFromOperation(context, exportPath);
+      try {
+        ZipInputStream zis = streamedExport.getZipInputStream();
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+          Utils.writeZipEnry(zos, SITES_CONFIGURATION_LOCATION + zipEntry.getName(), extensionName, zis, false, false);
         }
+      } catch (Exception e) {
+        log.error("Error while serializing MOP data", e);
+        return false;
+      } finally {
+        closeExportedStream(context, streamedExport);
       }
-    } finally {
-      clearTempFiles();
     }
 
     ExternalComponentPlugins externalComponentPlugins = new ExternalComponentPlugins();
@@ -26,8 +26,9 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
-import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
+import org.exoplatform.extension.generator.service.api.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.templates.metadata.MetadataTemplatesMetaData;
 import org.exoplatform.services.cms.metadata.MetadataService;
 import org.exoplatform.services.cms.templates.impl.TemplateConfig;
@@ -70,29 +71,28 @@ public class MetadataTemplatesConfigurationHandler extends AbstractConfiguration
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
     List<String> filterMetadatas = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String metadataName = resourcePath.replace(ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH + "/", "");
       filterMetadatas.add(metadataName);
     }
     List<MetadataTemplatesMetaData> metaDatas = new ArrayList<MetadataTemplatesMetaData>();
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH, filterMetadatas.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_TEMPLATES_METADATA_PATH, filterMetadatas.toArray(new String[0]));
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry zipEntry = (ZipEntry) entries.nextElement();
         try {
           InputStream inputStream = zipFile.getInputStream(zipEntry);
           if (zipEntry.getName().endsWith("metadata.xml")) {
-            XStream xStream = new XStream();
-            xStream.alias("metadata", MetadataTemplatesMetaData.class);
-            xStream.alias("template", NodeTemplate.class);
+            XStream xStream = XStreamRegistry.getXStream(MetadataTemplatesMetaData.class);
             MetadataTemplatesMetaData metadata = (MetadataTemplatesMetaData) xStream.fromXML(new InputStreamReader(inputStream));
             metaDatas.add(metadata);
           } else {
@@ -112,7 +112,7 @@ public class MetadataTemplatesConfigurationHandler extends AbstractConfiguration
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
 
     ExternalComponentPlugins externalComponentPlugins = new ExternalComponentPlugins();
@@ -25,7 +25,9 @@ import org.exoplatform.container.xml.Configuration;
 import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.ValuesParam;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
+import org.exoplatform.extension.generator.service.api.BindingRegistry;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.management.ecmadmin.operations.nodetype.NodeTypeExportTask;
 import org.exoplatform.services.jcr.RepositoryService;
@@ -35,8 +37,6 @@ import org.exoplatform.services.jcr.core.nodetype.NodeTypeValuesList;
 import org.exoplatform.services.jcr.impl.AddNodeTypePlugin;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
-import org.jibx.runtime.BindingDirectory;
-import org.jibx.runtime.IBindingFactory;
 import org.jibx.runtime.IUnmarshallingContext;
 import org.jibx.runtime.JiBXException;
 
@@ -80,7 +80,7 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
   }
   
   /** The ext manager. */
-  private static ExtendedNodeTypeManager extManager = null;
+  private ExtendedNodeTypeManager extManager = null;
   
   /** The log. */
   private Log log = ExoLogger.getLogger(this.getClass());
@@ -100,8 +100,8 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_NODETYPE_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_NODETYPE_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -110,12 +110,13 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
 
     List<String> filterNodeTypes = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String nodeTypeName = resourcePath.replace(ExtensionGenerator.ECM_NODETYPE_PATH + "/", "");
       filterNodeTypes.add(nodeTypeName);
     }
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_NODETYPE_PATH, filterNodeTypes.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_NODETYPE_PATH, filterNodeTypes.toArray(new String[0]));
       ZipEntry namespaceConfigurationEntry = zipFile.getEntry(JCR_NAMESPACES_CONFIGURATION_XML);
       try {
         InputStream inputStream = zipFile.getInputStream(namespaceConfigurationEntry);
@@ -185,7 +186,7 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
           // nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
     return Utils.writeConfiguration(zos, JCR_CONFIGURATION_LOCATION + JCR_CONFIGURATION_NAME, extensionName, externalComponentPlugins);
   }
@@ -206,6 +207,14 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
     }
   }
 
+  /**
+   * {@inheritDoc} Node type definitions are read from the node type manager.
+   */
+  @Override
+  public boolean isIncrementalSupported() {
+    return false;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -237,8 +246,7 @@ public class NodeTypeConfigurationHandler extends AbstractConfigurationHandler {
   private void addNodeType(ZipFile zipFile, List<NodeType> nodeTypeValues, ZipEntry zipEntry, String nodeTypeConfigurationLocation) throws IOException, JiBXException, NoSuchNodeTypeException,
       RepositoryException {
     InputStream inputStream = zipFile.getInputStream(zipEntry);
-    IBindingFactory factory = BindingDirectory.getFactory(NodeTypeValuesList.class);
-    IUnmarshallingContext uctx = factory.createUnmarshallingContext();
+    IUnmarshallingContext uctx = BindingRegistry.newUnmarshallingContext(NodeTypeValuesList.class);
     NodeTypeValuesList nodeTypeValuesList = (NodeTypeValuesList) uctx.unmarshalDocument(inputStream, null);
     ArrayList<?> ntvList = nodeTypeValuesList.getNodeTypeValuesList();
     if (ntvList.size() != 1) {
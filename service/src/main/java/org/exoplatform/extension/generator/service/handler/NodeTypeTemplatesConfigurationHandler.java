@@ -26,8 +26,9 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
-import org.exoplatform.management.ecmadmin.operations.templates.NodeTemplate;
+import org.exoplatform.extension.generator.service.api.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.templates.nodetypes.NodeTypeTemplatesMetaData;
 import org.exoplatform.services.cms.templates.TemplateService;
 import org.exoplatform.services.cms.templates.impl.TemplateConfig;
@@ -70,29 +71,28 @@ public class NodeTypeTemplatesConfigurationHandler extends AbstractConfiguration
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
     List<String> filterNodeTypes = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String nodeTypeName = resourcePath.replace(ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH + "/", "");
       filterNodeTypes.add(nodeTypeName);
     }
     List<NodeTypeTemplatesMetaData> metaDatas = new ArrayList<NodeTypeTemplatesMetaData>();
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, filterNodeTypes.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_TEMPLATES_DOCUMENT_TYPE_PATH, filterNodeTypes.toArray(new String[0]));
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry zipEntry = (ZipEntry) entries.nextElement();
         try {
           InputStream inputStream = zipFile.getInputStream(zipEntry);
           if (zipEntry.getName().endsWith("metadata.xml")) {
-            XStream xStream = new XStream();
-            xStream.alias("metadata", NodeTypeTemplatesMetaData.class);
-            xStream.alias("template", NodeTemplate.class);
+            XStream xStream = XStreamRegistry.getXStream(NodeTypeTemplatesMetaData.class);
             NodeTypeTemplatesMetaData metadata = (NodeTypeTemplatesMetaData) xStream.fromXML(new InputStreamReader(inputStream));
             metaDatas.add(metadata);
           } else {
@@ -112,7 +112,7 @@ public class NodeTypeTemplatesConfigurationHandler extends AbstractConfiguration
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
 
     ExternalComponentPlugins externalComponentPlugins = new ExternalComponentPlugins();
@@ -25,6 +25,7 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.PropertiesParam;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.jcr.RepositoryService;
 import org.exoplatform.services.jcr.ext.script.groovy.GroovyScript2RestLoader;
@@ -68,8 +69,8 @@ public class RESTServicesFromIDEConfigurationHandler extends AbstractConfigurati
    * {@inheritDoc}
    */
   @Override
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.IDE_REST_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.IDE_REST_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -80,6 +81,7 @@ public class RESTServicesFromIDEConfigurationHandler extends AbstractConfigurati
     try {
       String repository = repositoryService.getCurrentRepository().getConfiguration().getName();
       for (String selectedResoucePath : filteredSelectedResources) {
+        context.checkCancelled();
         selectedResoucePath = selectedResoucePath.replace(ExtensionGenerator.IDE_REST_PATH, "");
         String[] parts = selectedResoucePath.split("::");
         if (parts.length != 2) {
@@ -119,6 +121,14 @@ public class RESTServicesFromIDEConfigurationHandler extends AbstractConfigurati
     }
   }
 
+  /**
+   * {@inheritDoc} Scripts are read from JCR, not from GateIN exports.
+   */
+  @Override
+  public boolean isIncrementalSupported() {
+    return false;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -24,6 +24,7 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.cms.impl.ResourceConfig;
 import org.exoplatform.services.cms.impl.ResourceConfig.Resource;
@@ -62,14 +63,15 @@ public class ScriptsConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_SCRIPT_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_SCRIPT_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
 
     List<String> filterScripts = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String scriptName = resourcePath.replace(ExtensionGenerator.ECM_SCRIPT_PATH + "/", "");
       filterScripts.add(scriptName);
     }
@@ -95,7 +97,7 @@ public class ScriptsConfigurationHandler extends AbstractConfigurationHandler {
     }
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_SCRIPT_PATH, filterScripts.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_SCRIPT_PATH, filterScripts.toArray(new String[0]));
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry zipEntry = (ZipEntry) entries.nextElement();
@@ -120,7 +122,7 @@ public class ScriptsConfigurationHandler extends AbstractConfigurationHandler {
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
     return Utils.writeConfiguration(zos, DMS_CONFIGURATION_LOCATION + SCRIPT_CONFIGURATION_NAME, extensionName, externalComponentPlugins);
   }
@@ -20,6 +20,7 @@ package org.exoplatform.extension.generator.service.handler;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.exoplatform.container.xml.Component;
 import org.exoplatform.container.xml.ComponentPlugin;
 import org.exoplatform.container.xml.Configuration;
@@ -30,7 +31,11 @@ import org.exoplatform.container.xml.ValueParam;
 import org.exoplatform.container.xml.ValuesParam;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationCancelledException;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
+import org.exoplatform.extension.generator.service.api.XStreamRegistry;
 import org.exoplatform.management.common.exportop.JCRNodeExportTask;
 import org.exoplatform.management.content.operations.site.SiteConstants;
 import org.exoplatform.management.content.operations.site.contents.SiteContentsVersionHistoryExportTask;
@@ -44,11 +49,9 @@ import org.exoplatform.services.wcm.extensions.deployment.WCMPublicationDeployme
 import org.exoplatform.services.wcm.portal.artifacts.CreatePortalArtifactsService;
 import org.exoplatform.services.wcm.portal.artifacts.IgnorePortalPlugin;
 
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,7 +59,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -82,8 +85,8 @@ public class SiteContentsConfigurationHandler extends AbstractConfigurationHandl
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.CONTENT_SITES_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.CONTENT_SITES_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
@@ -91,67 +94,60 @@ public class SiteContentsConfigurationHandler extends AbstractConfigurationHandl
     Map<String, SiteMetaData> siteMetadatas = new HashMap<String, SiteMetaData>();
     Map<String, List<String>> siteContentsLocation = new HashMap<String, List<String>>();
     Set<String> contentsWithVersionHistory = new HashSet<String>();
-    try {
-      for (String filteredResource : filteredSelectedResources) {
-        String[] filters = new String[3];
-        filters[0] = "no-skeleton:true";
-        filters[1] = "taxonomy:false";
-        filters[2] = "no-hitory:true";
-        ZipFile zipFile = null;
-        try {
-          zipFile = getExportedFileFromOperation(filteredResource, filters);
-
-          Enumeration<? extends ZipEntry> entries = zipFile.entries();
-          while (entries.hasMoreElements()) {
-            ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-            try {
-              InputStream inputStream = zipFile.getInputStream(zipEntry);
-              String siteName = extractSiteNameFromPath(zipEntry.getName());
-              if (zipEntry.getName().endsWith("metadata.xml")) {
-                // Unmarshall metadata xml file
-                XStream xstream = new XStream();
-                xstream.alias("metadata", SiteMetaData.class);
-                InputStreamReader isr = new InputStreamReader(inputStream, "UTF-8");
-                siteMetadatas.put(siteName, (SiteMetaData) xstream.fromXML(isr));
-                // Save unmarshalled metadata
-              } else if (zipEntry.getName().endsWith("seo.xml")) {
+    for (String exportPath : planExports(context, ExtensionGenerator.CONTENT_SITES_PATH, filteredSelectedResources)) {
+      context.checkCancelled();
+      String[] filters = new String[3];
+      filters[0] = "no-skeleton:true";
+      filters[1] = "taxonomy:false";
+      filters[2] = "no-hitory:true";
+      StreamedExport streamedExport = null;
+      try {
+        streamedExport = getExportedStreamFromOperation(context, exportPath, filters);
+
+        ZipInputStream zis = streamedExport.getZipInputStream();
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+          try {
+            String siteName = extractSiteNameFromPath(zipEntry.getName());
+            if (zipEntry.getName().endsWith("metadata.xml")) {
+              // Unmarshall metadata xml file
+              XStream xstream = XStreamRegistry.getXStream(SiteMetaData.class);
+              InputStreamReader isr = new InputStreamReader(new CloseShieldInputStream(zis), "UTF-8");
+              siteMetadatas.put(siteName, (SiteMetaData) xstream.fromXML(isr));
+              // Save unmarshalled metadata
+            } else if (zipEntry.getName().endsWith("seo.xml")) {
+              continue;
+            } else {
+              String[] fileParts = zipEntry.getName().split(JCRNodeExportTask.JCR_DATA_SEPARATOR);
+              if (fileParts.length != 2) {
+                log.warn("Cannot parse file: " + zipEntry.getName());
                 continue;
+              }
+              List<String> siteContentLocation = siteContentsLocation.get(siteName);
+              if (siteContentLocation == null) {
+                siteContentLocation = new ArrayList<String>();
+                siteContentsLocation.put(siteName, siteContentLocation);
+              }
+              String location = fileParts[1];
+              if (location.endsWith(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX)) {
+                contentsWithVersionHistory.add(location.replace(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX, ".xml"));
               } else {
-                String[] fileParts = zipEntry.getName().split(JCRNodeExportTask.JCR_DATA_SEPARATOR);
-                if (fileParts.length != 2) {
-                  log.warn("Cannot parse file: " + zipEntry.getName());
-                  continue;
-                }
-                List<String> siteContentLocation = siteContentsLocation.get(siteName);
-                if (siteContentLocation == null) {
-                  siteContentLocation = new ArrayList<String>();
-                  siteContentsLocation.put(siteName, siteContentLocation);
-                }
-                String location = fileParts[1];
-                if (location.endsWith(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX)) {
-                  contentsWithVersionHistory.add(location.replace(SiteContentsVersionHistoryExportTask.VERSION_HISTORY_FILE_SUFFIX, ".xml"));
-                } else {
-                  siteContentLocation.add(location);
-                }
-                Utils.writeZipEnry(zos, WCM_CONTENT_CONFIGURATION_LOCATION + location, extensionName, inputStream, false);
+                siteContentLocation.add(location);
               }
-            } catch (Exception e) {
-              log.error("Exception while writing Data", e);
-              return false;
-            }
-          }
-        } catch (Exception e) {
-          if (zipFile != null) {
-            try {
-              zipFile.close();
-            } catch (Exception exp) {
-              // Nothing to do
+              Utils.writeZipEnry(zos, WCM_CONTENT_CONFIGURATION_LOCATION + location, extensionName, zis, false, false);
             }
+          } catch (Exception e) {
+            log.error("Exception while writing Data", e);
+            return false;
           }
         }
+      } catch (GenerationCancelledException e) {
+        throw e;
+      } catch (Exception e) {
+        log.error("Error while reading export of " + exportPath, e);
+      } finally {
+        closeExportedStream(context, streamedExport);
       }
-    } finally {
-      clearTempFiles();
     }
 
     ExternalComponentPlugins ignoreContentComponentPlugin = null;
@@ -25,6 +25,7 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.cms.views.ManageViewService;
 import org.exoplatform.services.cms.views.impl.ManageViewPlugin;
@@ -71,13 +72,14 @@ public class SiteExplorerTemplatesConfigurationHandler extends AbstractConfigura
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
     List<String> filterViews = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String viewName = resourcePath.replace(ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH + "/", "");
       filterViews.add(viewName);
     }
@@ -86,7 +88,7 @@ public class SiteExplorerTemplatesConfigurationHandler extends AbstractConfigura
     // Copy gtmpl in WAR and get all initParams in a single one
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH, filterViews.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_VIEW_TEMPLATES_PATH, filterViews.toArray(new String[0]));
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry entry = (ZipEntry) entries.nextElement();
@@ -133,7 +135,7 @@ public class SiteExplorerTemplatesConfigurationHandler extends AbstractConfigura
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
 
     if (allParams == null) {
@@ -24,6 +24,7 @@ import org.exoplatform.container.xml.ExternalComponentPlugins;
 import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
 import org.exoplatform.extension.generator.service.api.Utils;
 import org.exoplatform.services.cms.views.ManageViewService;
 import org.exoplatform.services.cms.views.impl.ManageViewPlugin;
@@ -66,14 +67,15 @@ public class SiteExplorerViewConfigurationHandler extends AbstractConfigurationH
   /**
    * {@inheritDoc}
    */
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
 
     List<String> filterViews = new ArrayList<String>();
     for (String resourcePath : filteredSelectedResources) {
+      context.checkCancelled();
       String viewName = resourcePath.replace(ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH + "/", "");
       filterViews.add(viewName);
     }
@@ -82,7 +84,7 @@ public class SiteExplorerViewConfigurationHandler extends AbstractConfigurationH
     // Copy gtmpl in WAR and get all initParams in a single one
     ZipFile zipFile = null;
     try {
-      zipFile = getExportedFileFromOperation(ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH, filterViews.toArray(new String[0]));
+      zipFile = getExportedFileFromOperation(context, ExtensionGenerator.ECM_VIEW_CONFIGURATION_PATH, filterViews.toArray(new String[0]));
       Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
         ZipEntry entry = (ZipEntry) entries.nextElement();
@@ -125,7 +127,7 @@ public class SiteExplorerViewConfigurationHandler extends AbstractConfigurationH
           // Nothing to do
         }
       }
-      clearTempFiles();
+      clearTempFiles(context);
     }
   }
 
@@ -20,6 +20,7 @@ package org.exoplatform.extension.generator.service.handler;
 
 import com.thoughtworks.xstream.XStream;
 
+import org.apache.commons.io.input.CloseShieldInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.container.xml.ComponentPlugin;
@@ -28,7 +29,11 @@ import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ObjectParameter;
 import org.exoplatform.extension.generator.service.api.AbstractConfigurationHandler;
 import org.exoplatform.extension.generator.service.api.ExtensionGenerator;
+import org.exoplatform.extension.generator.service.api.GenerationCancelledException;
+import org.exoplatform.extension.generator.service.api.GenerationContext;
+import org.exoplatform.extension.generator.service.api.StreamedExport;
 import org.exoplatform.extension.generator.service.api.Utils;
+import org.exoplatform.extension.generator.service.api.XStreamRegistry;
 import org.exoplatform.management.ecmadmin.operations.taxonomy.TaxonomyMetaData;
 import org.exoplatform.services.cms.actions.ActionServiceContainer;
 import org.exoplatform.services.cms.actions.impl.ActionConfig;
@@ -45,22 +50,19 @@ import org.exoplatform.services.jcr.RepositoryService;
 import org.exoplatform.services.jcr.access.AccessControlEntry;
 import org.exoplatform.services.jcr.access.PermissionType;
 import org.exoplatform.services.jcr.core.ExtendedNode;
-import org.exoplatform.services.jcr.ext.common.SessionProvider;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import javax.jcr.Node;
@@ -95,13 +97,13 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   }
   
   /** The link manager. */
-  private static LinkManager linkManager = null;
+  private final LinkManager linkManager;
   
   /** The repository service. */
-  private static RepositoryService repositoryService = null;
+  private final RepositoryService repositoryService;
   
   /** The action service container. */
-  private static ActionServiceContainer actionServiceContainer = null;
+  private final ActionServiceContainer actionServiceContainer;
 
   /** The log. */
   private Log log = ExoLogger.getLogger(this.getClass());
@@ -119,51 +121,38 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
    * {@inheritDoc}
    */
   @Override
-  public boolean writeData(ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
-    Set<String> filteredSelectedResources = filterSelectedResources(selectedResources, ExtensionGenerator.ECM_TAXONOMY_PATH);
+  public boolean writeData(GenerationContext context, ZipOutputStream zos, String extensionName, Collection<String> selectedResources) {
+    Set<String> filteredSelectedResources = filterSelectedResources(context, selectedResources, ExtensionGenerator.ECM_TAXONOMY_PATH);
     if (filteredSelectedResources.isEmpty()) {
       return false;
     }
 
     List<TaxonomyMetaData> taxonomiesMetaData = new ArrayList<TaxonomyMetaData>();
-    try {
-      for (String filteredResource : filteredSelectedResources) {
-        ZipFile zipFile = null;
-        try {
-          zipFile = getExportedFileFromOperation(filteredResource);
-          Enumeration<? extends ZipEntry> entries = zipFile.entries();
-          while (entries.hasMoreElements()) {
-            ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-            try {
-              InputStream inputStream = zipFile.getInputStream(zipEntry);
-              if (zipEntry.getName().endsWith("metadata.xml")) {
-                XStream xStream = new XStream();
-                xStream.alias("metadata", TaxonomyMetaData.class);
-                InputStreamReader isr = new InputStreamReader(inputStream, "UTF-8");
-                TaxonomyMetaData taxonomyMetaData = (TaxonomyMetaData) xStream.fromXML(isr);
-                taxonomiesMetaData.add(taxonomyMetaData);
-              }
-            } catch (Exception e) {
-              log.error("Error while serializing Taxonomy Configuration data", e);
-              return false;
-            }
-          }
-        } finally {
-          if (zipFile != null) {
-            try {
-              zipFile.close();
-            } catch (Exception exp) {
-              // Nothing to do
-            }
+    for (String exportPath : planExports(context, ExtensionGenerator.ECM_TAXONOMY_PATH, filteredSelectedResources)) {
+      context.checkCancelled();
+      StreamedExport streamedExport = getExportedStreamFromOperation(context, exportPath);
+      try {
+        ZipInputStream zis = streamedExport.getZipInputStream();
+        ZipEntry zipEntry;
+        while ((zipEntry = zis.getNextEntry()) != null) {
+          if (zipEntry.getName().endsWith("metadata.xml")) {
+            XStream xStream = XStreamRegistry.getXStream(TaxonomyMetaData.class);
+            InputStreamReader isr = new InputStreamReader(new CloseShieldInputStream(zis), "UTF-8");
+            TaxonomyMetaData taxonomyMetaData = (TaxonomyMetaData) xStream.fromXML(isr);
+            taxonomiesMetaData.add(taxonomyMetaData);
           }
         }
+      } catch (Exception e) {
+        log.error("Error while serializing Taxonomy Configuration data", e);
+        return false;
+      } finally {
+        closeExportedStream(context, streamedExport);
       }
-    } finally {
-      clearTempFiles();
     }
 
     ExternalComponentPlugins taxonomyExternalComponentPlugin = new ExternalComponentPlugins();
     for (TaxonomyMetaData taxonomyMetaData : taxonomiesMetaData) {
+      context.checkCancelled();
       InitParams params = new InitParams();
       ComponentPlugin plugin = createComponentPlugin(taxonomyMetaData.getTaxoTreeName() + " TaxonomyPlugin", TaxonomyPlugin.class.getName(), "addTaxonomyPlugin", params);
       addComponentPlugin(taxonomyExternalComponentPlugin, TaxonomyService.class.getName(), plugin);
@@ -181,7 +170,7 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
       params.addParam(getValueParam("treeName", taxonomyMetaData.getTaxoTreeName()));
       {
         ActionConfig actionConfig = new ActionConfig();
-        actionConfig.setActions(getActions(taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace()));
+        actionConfig.setActions(getActions(context, taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace()));
         ObjectParameter actionObjectParameter = new ObjectParameter();
         actionObjectParameter.setName("predefined.actions");
         actionObjectParameter.setObject(actionConfig);
@@ -203,7 +192,7 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
       {
         List<Taxonomy> subNodes = null;
         try {
-          subNodes = getTaxonomyTreeNodes(taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace());
+          subNodes = getTaxonomyTreeNodes(context, taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace());
         } catch (Exception e) {
           log.error("Error while serializing Taxonomy data", e);
           continue;
@@ -219,11 +208,12 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
 
     ExternalComponentPlugins linkExternalComponentPlugin = new ExternalComponentPlugins();
     for (TaxonomyMetaData taxonomyMetaData : taxonomiesMetaData) {
+      context.checkCancelled();
       InitParams params = new InitParams();
       ComponentPlugin plugin = createComponentPlugin(taxonomyMetaData.getTaxoTreeName() + " taxonomy links Initializer", LinkDeploymentPlugin.class.getName(), "addPlugin", params);
       addComponentPlugin(linkExternalComponentPlugin, WCMContentInitializerService.class.getName(), plugin);
       {
-        List<LinkDeploymentDescriptor> linkDeploymentDescriptors = getSymLinksFromTreeNode(taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace());
+        List<LinkDeploymentDescriptor> linkDeploymentDescriptors = getSymLinksFromTreeNode(context, taxonomyMetaData.getTaxoTreeHomePath(), taxonomyMetaData.getTaxoTreeWorkspace());
         for (LinkDeploymentDescriptor linkDeploymentDescriptor : linkDeploymentDescriptors) {
           ObjectParameter linkObjectParameter = new ObjectParameter();
           linkObjectParameter.setName("" + linkObjectParameter.hashCode());
@@ -239,23 +229,25 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * Gets the sym links from tree node.
    *
+   * @param context the generation context
    * @param treeHomePath the tree home path
    * @param treeWorkspace the tree workspace
    * @return the sym links from tree node
    */
-  private List<LinkDeploymentDescriptor> getSymLinksFromTreeNode(String treeHomePath, String treeWorkspace) {
-    SessionProvider sessionProvider = SessionProvider.createSystemProvider();
+  private List<LinkDeploymentDescriptor> getSymLinksFromTreeNode(GenerationContext context, String treeHomePath, String treeWorkspace) {
     List<LinkDeploymentDescriptor> descriptors = new ArrayList<LinkDeploymentDescriptor>();
     Session session = null;
     try {
-      session = sessionProvider.getSession(treeWorkspace, repositoryService.getCurrentRepository());
+      session = openSession(context, treeWorkspace);
       Node rootNode = (Node) session.getItem(treeHomePath);
       String repository = repositoryService.getCurrentRepository().getConfiguration().getName();
-      computeLinkTreeNodes(repository, treeWorkspace, descriptors, rootNode);
+      computeLinkTreeNodes(context, repository, treeWorkspace, descriptors, rootNode);
+    } catch (GenerationCancelledException e) {
+      throw e;
     } catch (Exception e) {
-      if (session != null && session.isLive()) {
-        session.logout();
-      }
+      // Nothing to do
+    } finally {
+      closeSession(context, session);
     }
     return descriptors;
   }
@@ -263,18 +255,24 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * Compute link tree nodes.
    *
+   * @param context the generation context
    * @param repository the repository
    * @param workspace the workspace
    * @param descriptors the descriptors
    * @param rootNode the root node
    * @throws Exception the exception
    */
-  private void computeLinkTreeNodes(String repository, String workspace, List<LinkDeploymentDescriptor> descriptors, Node rootNode) throws Exception {
+  private void computeLinkTreeNodes(GenerationContext context,
+                                    String repository,
+                                    String workspace,
+                                    List<LinkDeploymentDescriptor> descriptors,
+                                    Node rootNode) throws Exception {
     NodeIterator nodeIterator = rootNode.getNodes();
     while (nodeIterator.hasNext()) {
+      context.checkCancelled();
       ExtendedNode childNode = (ExtendedNode) nodeIterator.nextNode();
       if (childNode.isNodeType(EXO_TAXONOMY)) {
-        computeLinkTreeNodes(repository, workspace, descriptors, childNode);
+        computeLinkTreeNodes(context, repository, workspace, descriptors, childNode);
       } else if (linkManager.isLink(childNode)) {
         LinkDeploymentDescriptor linkDeploymentDescriptor = new LinkDeploymentDescriptor();
         linkDeploymentDescriptor.setSourcePath(repository + ":" + workspace + ":" + linkManager.getTarget(childNode, true).getPath());
@@ -287,23 +285,25 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * Gets the taxonomy tree nodes.
    *
+   * @param context the generation context
    * @param treeHomePath the tree home path
    * @param treeWorkspace the tree workspace
    * @return the taxonomy tree nodes
    * @throws Exception the exception
    */
-  private List<Taxonomy> getTaxonomyTreeNodes(String treeHomePath, String treeWorkspace) throws Exception {
-    SessionProvider sessionProvider = SessionProvider.createSystemProvider();
+  private List<Taxonomy> getTaxonomyTreeNodes(GenerationContext context, String treeHomePath, String treeWorkspace) throws Exception {
     List<Taxonomy> taxonomies = new ArrayList<Taxonomy>();
     Session session = null;
     try {
-      session = sessionProvider.getSession(treeWorkspace, repositoryService.getCurrentRepository());
+      session = openSession(context, treeWorkspace);
       Node rootNode = (Node) session.getItem(treeHomePath);
-      computeTaxonomyTreeNodes(taxonomies, rootNode, treeHomePath);
+      computeTaxonomyTreeNodes(context, taxonomies, rootNode, treeHomePath);
+    } catch (GenerationCancelledException e) {
+      throw e;
     } catch (Exception e) {
-      if (session != null && session.isLive()) {
-        session.logout();
-      }
+      // Nothing to do
+    } finally {
+      closeSession(context, session);
     }
     return taxonomies;
   }
@@ -311,14 +311,16 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * Compute taxonomy tree nodes.
    *
+   * @param context the generation context
    * @param taxonomies the taxonomies
    * @param rootNode the root node
    * @param rootPath the root path
    * @throws Exception the exception
    */
-  private void computeTaxonomyTreeNodes(List<Taxonomy> taxonomies, Node rootNode, String rootPath) throws Exception {
+  private void computeTaxonomyTreeNodes(GenerationContext context, List<Taxonomy> taxonomies, Node rootNode, String rootPath) throws Exception {
     NodeIterator nodeIterator = rootNode.getNodes();
     while (nodeIterator.hasNext()) {
+      context.checkCancelled();
       ExtendedNode childNode = (ExtendedNode) nodeIterator.nextNode();
       if (childNode.isNodeType(EXO_TAXONOMY)) {
         String childPath = childNode.getPath();
@@ -331,11 +333,19 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
         taxonomy.setPath(childPath);
         taxonomy.setPermissions(permissionsList);
         taxonomies.add(taxonomy);
-        computeTaxonomyTreeNodes(taxonomies, childNode, rootPath);
+        computeTaxonomyTreeNodes(context, taxonomies, childNode, rootPath);
       }
     }
   }
 
+  /**
+   * {@inheritDoc} Taxonomy actions and permissions are read from JCR.
+   */
+  @Override
+  public boolean isIncrementalSupported() {
+    return false;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -355,12 +365,13 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
   /**
    * Gets the actions.
    *
+   * @param context the generation context
    * @param rootNodePath the root node path
    * @param workspaceName the workspace name
    * @return the actions
    */
   @SuppressWarnings("unchecked")
-  private List<ActionConfig.TaxonomyAction> getActions(String rootNodePath, String workspaceName) {
+  private List<ActionConfig.TaxonomyAction> getActions(GenerationContext context, String rootNodePath, String workspaceName) {
     List<ActionConfig.TaxonomyAction> taxonomyActions = new ArrayList<ActionConfig.TaxonomyAction>();
     if (rootNodePath == null) {
       if (log.isDebugEnabled()) {
@@ -368,19 +379,37 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
       }
       return taxonomyActions;
     }
-    SessionProvider sessionProvider = SessionProvider.createSystemProvider();
     List<Node> actionNodes = null;
+    Session session = null;
     try {
-      Session session = sessionProvider.getSession(workspaceName, repositoryService.getCurrentRepository());
+      session = openSession(context, workspaceName);
       Node rootNode = (Node) session.getItem(rootNodePath);
       actionNodes = actionServiceContainer.getActions(rootNode);
     } catch (Exception e1) {
       log.error("Error while retrieving Taxonomy Action informations", e1);
     }
     if (actionNodes == null) {
+      closeSession(context, session);
       return taxonomyActions;
     }
+    try {
+      readActions(context, actionNodes, taxonomyActions);
+    } finally {
+      closeSession(context, session);
+    }
+    return taxonomyActions;
+  }
+
+  /**
+   * Read taxonomy actions from action nodes.
+   *
+   * @param context the generation context
+   * @param actionNodes the action nodes
+   * @param taxonomyActions the taxonomy actions
+   */
+  private void readActions(GenerationContext context, List<Node> actionNodes, List<ActionConfig.TaxonomyAction> taxonomyActions) {
     for (Node node : actionNodes) {
+      context.checkCancelled();
       try {
         if (!node.isNodeType(EXO_TAXONOMY_ACTION)) {
           continue;
@@ -417,7 +446,6 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
         log.error("Error while retrieving Taxonomy Action informations", e);
       }
     }
-    return taxonomyActions;
   }
 
   /**
@@ -559,7 +587,7 @@ public class TaxonomyConfigurationHandler extends AbstractConfigurationHandler {
    * @return true, if is sym link
    * @throws RepositoryException the repository exception
    */
-  public static boolean isSymLink(Node node) throws RepositoryException {
+  public boolean isSymLink(Node node) throws RepositoryException {
     return linkManager.isLink(node);
   }
 
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests of {@link ConfigurationXMLOutputStream}, compared to the regular
+ * expressions it replaces.
+ */
+public class ConfigurationXMLOutputStreamTest {
+
+  /** The root element replacement. */
+  private static final String CONFIGURATION_ELEMENT = "<configuration\n   xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">";
+
+  /** The extension name. */
+  private static final String EXTENSION_NAME = "my-extension";
+
+  /** A marshalled configuration. */
+  private static final String DOCUMENT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<configuration>\n"
+      + "  <external-component-plugins>\n"
+      + "    <target-component>org.exoplatform.services.cms.drives.ManageDriveService</target-component>\n"
+      + "    <component-plugin>\n"
+      + "      <name>custom-extension.drives</name>\n"
+      + "      <description>Drives of the équipe 日本 custom-extension</description>\n"
+      + "      <init-params>\n"
+      + "        <object-param>\n"
+      + "          <object type=\"org.exoplatform.services.cms.drives.DriveData\">\n"
+      + "            <field name=\"name\"><string>Collaboration</string></field>\n"
+      + "            <field name=\"views\"/>\n"
+      + "            <field name=\"allowCreateFolders_\"/>\n"
+      + "            <field name=\"nomé\"/>\n"
+      + "            <field name=\"with-dash\"/>\n"
+      + "            <field name=\"\"/>\n"
+      + "            <field name=\"icon\"></field>\n"
+      + "            <field nome=\"icon\"/>\n"
+      + "            <string>war:/conf/custom-extension/custom-extensio/custom-extensioncustom-extension</string>\n"
+      + "          </object>\n"
+      + "        </object-param>\n"
+      + "      </init-params>\n"
+      + "    </component-plugin>\n"
+      + "  </external-component-plugins>\n"
+      + "  <configuration></configuration>\n"
+      + "</configuration>\n";
+
+  /**
+   * The output of a document written at once is the output of the regular
+   * expressions.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testOutputMatchesBaseline() throws Exception {
+    assertEquals(baseline(DOCUMENT), write(DOCUMENT, Integer.MAX_VALUE));
+    // Bigger than the output buffer
+    String document = repeat(DOCUMENT, 50);
+    assertEquals(baseline(document), write(document, 1000));
+  }
+
+  /**
+   * Patterns split across writes are replaced, whatever the size of writes.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPatternsSplitAcrossWrites() throws Exception {
+    String expected = baseline(DOCUMENT);
+    for (int chunkSize = 1; chunkSize <= 64; chunkSize++) {
+      assertEquals("Chunks of " + chunkSize + " bytes", expected, write(DOCUMENT, chunkSize));
+    }
+    assertEquals(expected, writeBytes(DOCUMENT));
+  }
+
+  /**
+   * Empty fields are dropped up to the maximum name length, longer names are
+   * written as is.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFieldNameLengthCap() throws Exception {
+    String maxLengthField = "<field name=\"" + repeat('a', 256) + "\"/>";
+    assertEquals("<object></object>", write("<object>" + maxLengthField + "</object>", 7));
+    assertEquals(baseline("<object>" + maxLengthField + "</object>"), write("<object>" + maxLengthField + "</object>", 7));
+
+    String tooLongField = "<field name=\"" + repeat('a', 257) + "\"/>";
+    assertEquals("<object>" + tooLongField + "</object>", write("<object>" + tooLongField + "</object>", 7));
+    assertEquals("<object>" + tooLongField + "</object>", writeBytes("<object>" + tooLongField + "</object>"));
+  }
+
+  /**
+   * Unterminated patterns are written as is when the stream is closed, and
+   * the target stream stays open.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testUnterminatedPatternsAtClose() throws Exception {
+    String[] documents = new String[] { "<object><field name=\"views", "<object><field name=\"views\"/", "<object>custom-ext", "<object><configuration",
+        "<object>c", "<" };
+    for (String document : documents) {
+      assertEquals(document, write(document, 3));
+      assertEquals(document, writeBytes(document));
+    }
+    CloseTrackingOutputStream target = new CloseTrackingOutputStream();
+    ConfigurationXMLOutputStream outputStream = new ConfigurationXMLOutputStream(target, CONFIGURATION_ELEMENT, EXTENSION_NAME);
+    outputStream.write("<field name=\"a".getBytes("UTF-8"));
+    outputStream.close();
+    assertEquals("<field name=\"a", target.toString("UTF-8"));
+    assertFalse(target.isClosed());
+  }
+
+  /**
+   * Non-ASCII characters are written unchanged, including when their bytes
+   * are split across writes.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testNonASCIICharacters() throws Exception {
+    String document = "<name>é日本語 custom-extension ü</name><field name=\"é\"/>";
+    assertEquals(baseline(document), write(document, 1));
+    assertEquals("<name>é日本語 " + EXTENSION_NAME + " ü</name><field name=\"é\"/>", write(document, 5));
+  }
+
+  /**
+   * The output of the regular expressions replaced by the stream.
+   *
+   * @param document the document
+   * @return the output
+   */
+  private static String baseline(String document) {
+    String content = document.replace("<configuration>", CONFIGURATION_ELEMENT);
+    content = content.replaceAll("<field name=\"([A-z])*\"/>", "");
+    content = content.replaceAll("custom-extension", EXTENSION_NAME);
+    return content;
+  }
+
+  /**
+   * Writes a document by chunks.
+   *
+   * @param document the document
+   * @param chunkSize the chunk size
+   * @return the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String write(String document, int chunkSize) throws IOException {
+    byte[] bytes = document.getBytes("UTF-8");
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    ConfigurationXMLOutputStream outputStream = new ConfigurationXMLOutputStream(target, CONFIGURATION_ELEMENT, EXTENSION_NAME);
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      outputStream.write(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+    }
+    outputStream.close();
+    return target.toString("UTF-8");
+  }
+
+  /**
+   * Writes a document byte by byte with
+   * {@link ConfigurationXMLOutputStream#write(int)}.
+   *
+   * @param document the document
+   * @return the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String writeBytes(String document) throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    ConfigurationXMLOutputStream outputStream = new ConfigurationXMLOutputStream(target, CONFIGURATION_ELEMENT, EXTENSION_NAME);
+    for (byte b : document.getBytes("UTF-8")) {
+      outputStream.write(b);
+    }
+    outputStream.close();
+    return target.toString("UTF-8");
+  }
+
+  /**
+   * Repeats a character.
+   *
+   * @param c the character
+   * @param count the count
+   * @return the string
+   */
+  private static String repeat(char c, int count) {
+    return repeat(String.valueOf(c), count);
+  }
+
+  /**
+   * Repeats a string.
+   *
+   * @param s the string
+   * @param count the count
+   * @return the repeated string
+   */
+  private static String repeat(String s, int count) {
+    StringBuilder builder = new StringBuilder(s.length() * count);
+    for (int i = 0; i < count; i++) {
+      builder.append(s);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Output stream recording whether it was closed.
+   */
+  static class CloseTrackingOutputStream extends ByteArrayOutputStream {
+
+    /** The closed. */
+    private boolean closed;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+
+    /**
+     * Checks if is closed.
+     *
+     * @return true, if is closed
+     */
+    public boolean isClosed() {
+      return closed;
+    }
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import static org.junit.Assert.assertEquals;
+
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+import org.gatein.management.api.operation.OperationNames;
+import org.gatein.management.api.operation.model.ReadResourceModel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Tests of {@link ExportPlanner} with a stubbed READ_RESOURCE listing.
+ */
+public class ExportPlannerTest {
+
+  /** The taxonomy category. */
+  private static final String TAXONOMY_PATH = ExtensionGenerator.ECM_TAXONOMY_PATH;
+
+  /** The stubbed management controller. */
+  private ListingManagementController managementController;
+
+  /** The planner. */
+  private ExportPlanner planner;
+
+  /**
+   * Lists a taxonomy tree and group sites.
+   */
+  @Before
+  public void setUp() {
+    managementController = new ListingManagementController();
+    managementController.addChildren(TAXONOMY_PATH, "news", "events");
+    managementController.addChildren(TAXONOMY_PATH + "/news", "sports", "politics");
+    managementController.addChildren(TAXONOMY_PATH + "/events", "concerts", "festivals");
+    managementController.addChildren(ExtensionGenerator.SITES_GROUP_PATH, "platform/administrators", "platform/users");
+    planner = new ExportPlanner(managementController);
+  }
+
+  /**
+   * A fully selected subtree is exported once, by its parent path.
+   */
+  @Test
+  public void testFullySelectedSubtreeIsExportedByItsParent() {
+    List<String> exports = planner.plan(TAXONOMY_PATH, paths(TAXONOMY_PATH + "/news/sports", TAXONOMY_PATH + "/news/politics"));
+    assertEquals(Arrays.asList(TAXONOMY_PATH + "/news"), exports);
+  }
+
+  /**
+   * A fully selected category is exported once, by the category path.
+   */
+  @Test
+  public void testFullySelectedCategoryIsExportedOnce() {
+    List<String> exports = planner.plan(TAXONOMY_PATH + "/",
+                                        paths(TAXONOMY_PATH + "/news/sports", TAXONOMY_PATH + "/news/politics", TAXONOMY_PATH + "/events/concerts",
+                                              TAXONOMY_PATH + "/events/festivals"));
+    assertEquals(Arrays.asList(TAXONOMY_PATH), exports);
+  }
+
+  /**
+   * A partial selection is exported path by path.
+   */
+  @Test
+  public void testPartialSelectionIsNotCollapsed() {
+    List<String> exports = planner.plan(TAXONOMY_PATH, paths(TAXONOMY_PATH + "/news/sports", TAXONOMY_PATH + "/events/concerts"));
+    assertEquals(paths(TAXONOMY_PATH + "/news/sports", TAXONOMY_PATH + "/events/concerts"), new TreeSet<String>(exports));
+    assertEquals(2, exports.size());
+  }
+
+  /**
+   * Group sites are exported one by one even when all of them are selected.
+   */
+  @Test
+  public void testGroupSitesAreNeverCollapsed() {
+    Set<String> groupSites = paths(ExtensionGenerator.SITES_GROUP_PATH + "/platform/administrators", ExtensionGenerator.SITES_GROUP_PATH + "/platform/users");
+    List<String> exports = planner.plan(ExtensionGenerator.SITES_GROUP_PATH + "/", groupSites);
+    assertEquals(groupSites, new TreeSet<String>(exports));
+    assertEquals(2, exports.size());
+    assertEquals(0, managementController.getReads());
+  }
+
+  /**
+   * Selected resources are exported as is when children can't be read.
+   */
+  @Test
+  public void testUnreadableChildrenFallBackToSelection() {
+    Set<String> selection = paths(ExtensionGenerator.ECM_DRIVE_PATH + "/collaboration", ExtensionGenerator.ECM_DRIVE_PATH + "/public");
+    List<String> exports = planner.plan(ExtensionGenerator.ECM_DRIVE_PATH, selection);
+    assertEquals(selection, new TreeSet<String>(exports));
+  }
+
+  /**
+   * Paths.
+   *
+   * @param paths the paths
+   * @return the sorted paths
+   */
+  private static Set<String> paths(String... paths) {
+    return new TreeSet<String>(Arrays.asList(paths));
+  }
+
+  /**
+   * Management controller answering READ_RESOURCE with stubbed children,
+   * failing for unknown paths.
+   */
+  private static class ListingManagementController implements ManagementController {
+
+    /** The children by path. */
+    private final Map<String, Set<String>> children = new HashMap<String, Set<String>>();
+
+    /** The number of READ_RESOURCE requests. */
+    private int reads;
+
+    /**
+     * Adds children of a path.
+     *
+     * @param path the path
+     * @param names the children names
+     */
+    public void addChildren(String path, String... names) {
+      children.put(path, new HashSet<String>(Arrays.asList(names)));
+    }
+
+    /**
+     * Gets the number of READ_RESOURCE requests.
+     *
+     * @return the reads
+     */
+    public int getReads() {
+      return reads;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ManagedResponse execute(ManagedRequest request) {
+      if (!OperationNames.READ_RESOURCE.equals(request.getOperationName())) {
+        throw new UnsupportedOperationException(request.getOperationName());
+      }
+      reads++;
+      StringBuilder path = new StringBuilder();
+      for (String name : request.getAddress()) {
+        path.append('/').append(name);
+      }
+      Set<String> pathChildren = children.get(path.toString());
+      return new StubManagedResponse(pathChildren == null ? null : new ReadResourceModel(path.toString(), pathChildren));
+    }
+  }
+
+  /**
+   * Managed response of {@link ListingManagementController}.
+   */
+  private static class StubManagedResponse implements ManagedResponse, ManagedResponse.Outcome {
+
+    /** The result, null on failure. */
+    private final Object result;
+
+    /**
+     * Instantiates a new stub managed response.
+     *
+     * @param result the result, null on failure
+     */
+    public StubManagedResponse(Object result) {
+      this.result = result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Outcome getOutcome() {
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getResult() {
+      return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeResult(OutputStream outputStream, boolean pretty) {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSuccess() {
+      return result != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getFailureDescription() {
+      return result == null ? "Resource not found" : null;
+    }
+  }
+}
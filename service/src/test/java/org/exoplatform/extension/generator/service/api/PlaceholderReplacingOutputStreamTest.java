@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.exoplatform.extension.generator.service.api.ConfigurationXMLOutputStreamTest.CloseTrackingOutputStream;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests of {@link PlaceholderReplacingOutputStream}, compared to the string
+ * replacement it replaces.
+ */
+public class PlaceholderReplacingOutputStreamTest {
+
+  /** The placeholder. */
+  private static final String PLACEHOLDER = "custom-extension";
+
+  /** The extension name. */
+  private static final String EXTENSION_NAME = "my-extension";
+
+  /** A template. */
+  private static final String TEMPLATE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+      + "<web-app>\n"
+      + "  <display-name>custom-extension</display-name>\n"
+      + "  <description>Extension de l'équipe 日本 custom-extension</description>\n"
+      + "  <context-param>\n"
+      + "    <param-value>war:/conf/custom-extension/custom-extensio/custom-extensioncustom-extension</param-value>\n"
+      + "    <param-value>ccustom-extension cc custom-extensionn</param-value>\n"
+      + "  </context-param>\n"
+      + "</web-app>\n";
+
+  /**
+   * The output of a template written at once is the output of the string
+   * replacement.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testOutputMatchesBaseline() throws Exception {
+    assertEquals(baseline(TEMPLATE), write(TEMPLATE, Integer.MAX_VALUE));
+    // Bigger than the output buffer
+    String template = repeat(TEMPLATE, 50);
+    assertEquals(baseline(template), write(template, 1000));
+  }
+
+  /**
+   * Placeholders split across writes are replaced, whatever the size of
+   * writes.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPlaceholdersSplitAcrossWrites() throws Exception {
+    String expected = baseline(TEMPLATE);
+    for (int chunkSize = 1; chunkSize <= 64; chunkSize++) {
+      assertEquals("Chunks of " + chunkSize + " bytes", expected, write(TEMPLATE, chunkSize));
+    }
+    assertEquals(expected, writeBytes(TEMPLATE));
+  }
+
+  /**
+   * Placeholders as long as the window are replaced, with other placeholders
+   * of different lengths.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testLongPlaceholders() throws Exception {
+    String longPlaceholder = repeat('a', 256);
+    String longerPlaceholder = repeat('b', 257);
+    Map<String, String> replacements = new LinkedHashMap<String, String>();
+    replacements.put(longPlaceholder, "1");
+    replacements.put(longerPlaceholder, "2");
+    replacements.put(PLACEHOLDER, EXTENSION_NAME);
+    String template = "<a>" + longPlaceholder + "</a><b>" + longerPlaceholder + "b</b><c>" + repeat('a', 255) + PLACEHOLDER + "</c>";
+    String expected = "<a>1</a><b>2b</b><c>" + repeat('a', 255) + EXTENSION_NAME + "</c>";
+    for (int chunkSize = 1; chunkSize <= 300; chunkSize += 7) {
+      assertEquals("Chunks of " + chunkSize + " bytes", expected, write(template, chunkSize, replacements));
+    }
+  }
+
+  /**
+   * Unterminated placeholders are written as is when the stream is closed,
+   * and the target stream stays open.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testUnterminatedPlaceholdersAtClose() throws Exception {
+    String[] templates = new String[] { "<name>custom-extensio", "<name>c", "c", "custom-extension-custom" };
+    for (String template : templates) {
+      assertEquals(baseline(template), write(template, 3));
+      assertEquals(baseline(template), writeBytes(template));
+    }
+    CloseTrackingOutputStream target = new CloseTrackingOutputStream();
+    PlaceholderReplacingOutputStream outputStream = new PlaceholderReplacingOutputStream(target, Collections.singletonMap(PLACEHOLDER, EXTENSION_NAME));
+    outputStream.write("<name>custom-".getBytes("UTF-8"));
+    outputStream.close();
+    assertEquals("<name>custom-", target.toString("UTF-8"));
+    assertFalse(target.isClosed());
+  }
+
+  /**
+   * Non-ASCII characters are written unchanged, including when their bytes
+   * are split across writes, and can be used in placeholders and
+   * replacements.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testNonASCIICharacters() throws Exception {
+    String template = "<name>é日本語 custom-extension ü</name>";
+    assertEquals(baseline(template), write(template, 1));
+    assertEquals("<name>é日本語 " + EXTENSION_NAME + " ü</name>", write(template, 5));
+
+    Map<String, String> replacements = Collections.singletonMap("équipe-日本", "ü");
+    assertEquals("<name>ü ü</name>", write("<name>équipe-日本 ü</name>", 1, replacements));
+    assertEquals("<name>équipe-日 ü</name>", write("<name>équipe-日 ü</name>", 2, replacements));
+  }
+
+  /**
+   * Empty placeholders are rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyPlaceholder() {
+    new PlaceholderReplacingOutputStream(new ByteArrayOutputStream(), Collections.singletonMap("", EXTENSION_NAME));
+  }
+
+  /**
+   * The output of the string replacement done by the stream.
+   *
+   * @param template the template
+   * @return the output
+   */
+  private static String baseline(String template) {
+    return template.replaceAll(PLACEHOLDER, EXTENSION_NAME);
+  }
+
+  /**
+   * Writes a template by chunks, replacing the default placeholder.
+   *
+   * @param template the template
+   * @param chunkSize the chunk size
+   * @return the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String write(String template, int chunkSize) throws IOException {
+    return write(template, chunkSize, Collections.singletonMap(PLACEHOLDER, EXTENSION_NAME));
+  }
+
+  /**
+   * Writes a template by chunks.
+   *
+   * @param template the template
+   * @param chunkSize the chunk size
+   * @param replacements the replacements by placeholder
+   * @return the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String write(String template, int chunkSize, Map<String, String> replacements) throws IOException {
+    byte[] bytes = template.getBytes("UTF-8");
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    PlaceholderReplacingOutputStream outputStream = new PlaceholderReplacingOutputStream(target, replacements);
+    for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+      outputStream.write(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+    }
+    outputStream.close();
+    return target.toString("UTF-8");
+  }
+
+  /**
+   * Writes a template byte by byte with
+   * {@link PlaceholderReplacingOutputStream#write(int)}.
+   *
+   * @param template the template
+   * @return the output
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static String writeBytes(String template) throws IOException {
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    PlaceholderReplacingOutputStream outputStream = new PlaceholderReplacingOutputStream(target, Collections.singletonMap(PLACEHOLDER, EXTENSION_NAME));
+    for (byte b : template.getBytes("UTF-8")) {
+      outputStream.write(b);
+    }
+    outputStream.close();
+    return target.toString("UTF-8");
+  }
+
+  /**
+   * Repeats a character.
+   *
+   * @param c the character
+   * @param count the count
+   * @return the string
+   */
+  private static String repeat(char c, int count) {
+    return repeat(String.valueOf(c), count);
+  }
+
+  /**
+   * Repeats a string.
+   *
+   * @param s the string
+   * @param count the count
+   * @return the repeated string
+   */
+  private static String repeat(String s, int count) {
+    StringBuilder builder = new StringBuilder(s.length() * count);
+    for (int i = 0; i < count; i++) {
+      builder.append(s);
+    }
+    return builder.toString();
+  }
+}
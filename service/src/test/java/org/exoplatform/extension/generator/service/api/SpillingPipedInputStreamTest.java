@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Tests of {@link SpillingPipedInputStream}.
+ */
+public class SpillingPipedInputStreamTest {
+
+  /** The memory threshold of tested pipes. */
+  private static final int MEMORY_THRESHOLD = 1024;
+
+  /**
+   * Data smaller than the threshold is read from memory.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSmallDataStaysInMemory() throws Exception {
+    SpillingPipedInputStream pipe = new SpillingPipedInputStream(MEMORY_THRESHOLD);
+    byte[] data = newData(MEMORY_THRESHOLD);
+    OutputStream outputStream = pipe.getOutputStream();
+    outputStream.write(data);
+    outputStream.close();
+    assertArrayEquals(data, IOUtils.toByteArray(pipe));
+    assertEquals(0, pipe.getSpilledBytes());
+    assertNull(pipe.getSpillFile());
+    pipe.close();
+  }
+
+  /**
+   * Writes past the threshold spill to a temp file, read back in order and
+   * deleted once both sides are closed.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSpillPastThresholdIsReadBackInOrder() throws Exception {
+    SpillingPipedInputStream pipe = new SpillingPipedInputStream(MEMORY_THRESHOLD);
+    byte[] data = newData(10 * MEMORY_THRESHOLD + 17);
+    OutputStream outputStream = pipe.getOutputStream();
+    for (int offset = 0; offset < data.length; offset += 100) {
+      outputStream.write(data, offset, Math.min(100, data.length - offset));
+    }
+    outputStream.close();
+    // Writes are kept whole, the first one over the threshold spills
+    assertEquals(data.length - MEMORY_THRESHOLD / 100 * 100, pipe.getSpilledBytes());
+    File spillFile = pipe.getSpillFile();
+    assertNotNull(spillFile);
+    assertTrue(spillFile.exists());
+
+    assertArrayEquals(data, IOUtils.toByteArray(pipe));
+    assertTrue(spillFile.exists());
+    pipe.close();
+    assertFalse(spillFile.exists());
+    assertNull(pipe.getSpillFile());
+  }
+
+  /**
+   * A failure of the producer is thrown to the reader instead of an end of
+   * stream.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testProducerFailureSurfacesToReader() throws Exception {
+    SpillingPipedInputStream pipe = new SpillingPipedInputStream(MEMORY_THRESHOLD);
+    OutputStream outputStream = pipe.getOutputStream();
+    outputStream.write(newData(2 * MEMORY_THRESHOLD));
+    RuntimeException failure = new RuntimeException("Export failed");
+    pipe.fail(failure);
+    outputStream.close();
+    try {
+      IOUtils.toByteArray(pipe);
+      fail("The failure of the producer wasn't reported");
+    } catch (IOException e) {
+      assertSame(failure, e.getCause());
+    }
+    File spillFile = pipe.getSpillFile();
+    pipe.close();
+    assertFalse(spillFile.exists());
+  }
+
+  /**
+   * Closing the reader before the producer ends makes next writes fail, the
+   * spill file is deleted once the producer closes too.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCloseBeforeProducerEnds() throws Exception {
+    SpillingPipedInputStream pipe = new SpillingPipedInputStream(MEMORY_THRESHOLD);
+    OutputStream outputStream = pipe.getOutputStream();
+    outputStream.write(newData(3 * MEMORY_THRESHOLD));
+    File spillFile = pipe.getSpillFile();
+    assertNotNull(spillFile);
+    assertEquals(MEMORY_THRESHOLD, pipe.read(new byte[MEMORY_THRESHOLD]));
+
+    pipe.close();
+    try {
+      outputStream.write(newData(10));
+      fail("Write succeeded after the reader closed the pipe");
+    } catch (IOException e) {
+      // Expected
+    }
+    try {
+      pipe.read();
+      fail("Read succeeded after close");
+    } catch (IOException e) {
+      // Expected
+    }
+    // Still written by the producer
+    assertTrue(spillFile.exists());
+    outputStream.close();
+    assertFalse(spillFile.exists());
+  }
+
+  /**
+   * A reader waiting for data receives it from the producer thread.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReaderWaitsForProducer() throws Exception {
+    final SpillingPipedInputStream pipe = new SpillingPipedInputStream(MEMORY_THRESHOLD);
+    final byte[] data = newData(5 * MEMORY_THRESHOLD);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        OutputStream outputStream = pipe.getOutputStream();
+        try {
+          for (int offset = 0; offset < data.length; offset += 512) {
+            outputStream.write(data, offset, 512);
+            Thread.sleep(1);
+          }
+        } catch (Exception e) {
+          pipe.fail(e);
+        } finally {
+          IOUtils.closeQuietly(outputStream);
+        }
+      }
+    });
+    producer.start();
+    assertArrayEquals(data, IOUtils.toByteArray(pipe));
+    producer.join();
+    pipe.close();
+  }
+
+  /**
+   * Creates data whose bytes depend on their position.
+   *
+   * @param length the length
+   * @return the data
+   */
+  private static byte[] newData(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (i * 31 + i / 251);
+    }
+    return data;
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2003-2017 eXo Platform SAS.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.exoplatform.extension.generator.service.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.IOUtils;
+import org.gatein.management.api.controller.ManagedRequest;
+import org.gatein.management.api.controller.ManagedResponse;
+import org.gatein.management.api.controller.ManagementController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests of {@link StreamedExport} with a stubbed export operation.
+ */
+public class StreamedExportTest {
+
+  /** The memory threshold of streamed exports. */
+  private static final int MEMORY_THRESHOLD = 16 * 1024;
+
+  /** The size of exported entries. */
+  private static final int ENTRY_SIZE = 64 * 1024;
+
+  /** The first entry, not compressible so that it spills. */
+  private static final byte[] FIRST_ENTRY = newRandomData(ENTRY_SIZE, 1);
+
+  /** The second entry. */
+  private static final byte[] SECOND_ENTRY = newRandomData(ENTRY_SIZE, 2);
+
+  /** The temp file bytes in use before the test. */
+  private long tempFileBytesInUse;
+
+  /**
+   * Lowers the memory threshold of streamed exports.
+   */
+  @Before
+  public void setUp() {
+    System.setProperty(StreamedExport.MEMORY_THRESHOLD_PROPERTY, String.valueOf(MEMORY_THRESHOLD));
+    tempFileBytesInUse = GenerationMetrics.getInstance().getTempFileBytesInUse();
+  }
+
+  /**
+   * Stops the producers.
+   */
+  @After
+  public void tearDown() {
+    System.clearProperty(StreamedExport.MEMORY_THRESHOLD_PROPERTY);
+    StreamedExport.shutdown();
+  }
+
+  /**
+   * An export written before it's read spills past the memory threshold, its
+   * entries are read back and the spill file is deleted on close.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSpilledExportIsReadBack() throws Exception {
+    ExportManagementController managementController = new ExportManagementController(null, false);
+    long tempFileBytesWritten = GenerationMetrics.getInstance().getTempFileBytesWritten();
+    StreamedExport streamedExport = StreamedExport.export(managementController, null, "/ecmadmin/queries");
+    assertTrue(managementController.awaitEnd());
+
+    ZipInputStream zipInputStream = streamedExport.getZipInputStream();
+    assertEntry(zipInputStream, "first.xml", FIRST_ENTRY);
+    assertEntry(zipInputStream, "second.xml", SECOND_ENTRY);
+    assertNull(zipInputStream.getNextEntry());
+    assertNotNull(streamedExport.readDigest());
+    // Recorded when the producer closed its side
+    assertTrue(GenerationMetrics.getInstance().getTempFileBytesWritten() > tempFileBytesWritten);
+    streamedExport.close();
+    assertEquals(tempFileBytesInUse, GenerationMetrics.getInstance().getTempFileBytesInUse());
+  }
+
+  /**
+   * A failure of the export operation is thrown to the reader instead of a
+   * truncated archive.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testProducerFailureSurfacesToReader() throws Exception {
+    ExportManagementController managementController = new ExportManagementController(null, true);
+    StreamedExport streamedExport = StreamedExport.export(managementController, null, "/ecmadmin/queries");
+    ZipInputStream zipInputStream = streamedExport.getZipInputStream();
+    try {
+      assertEntry(zipInputStream, "first.xml", FIRST_ENTRY);
+      zipInputStream.getNextEntry();
+      fail("The export failure wasn't reported");
+    } catch (IOException e) {
+      // Expected
+    }
+    assertNull(streamedExport.readDigest());
+    streamedExport.close();
+  }
+
+  /**
+   * Closing the export before the producer ends stops the producer and
+   * deletes the spill file.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCloseBeforeProducerEnds() throws Exception {
+    CountDownLatch resume = new CountDownLatch(1);
+    ExportManagementController managementController = new ExportManagementController(resume, false);
+    StreamedExport streamedExport = StreamedExport.export(managementController, null, "/ecmadmin/queries");
+    assertEntry(streamedExport.getZipInputStream(), "first.xml", FIRST_ENTRY);
+    streamedExport.close();
+    resume.countDown();
+    assertTrue(managementController.awaitEnd());
+    assertNotNull("The producer wasn't stopped", managementController.getWriteFailure());
+    // The spill file is deleted once the producer closed its side
+    long deadline = System.currentTimeMillis() + 5000;
+    while (GenerationMetrics.getInstance().getTempFileBytesInUse() != tempFileBytesInUse && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(tempFileBytesInUse, GenerationMetrics.getInstance().getTempFileBytesInUse());
+  }
+
+  /**
+   * Creates random data.
+   *
+   * @param length the length
+   * @param seed the seed
+   * @return the data
+   */
+  private static byte[] newRandomData(int length, long seed) {
+    byte[] data = new byte[length];
+    new Random(seed).nextBytes(data);
+    return data;
+  }
+
+  /**
+   * Asserts the next entry of an archive.
+   *
+   * @param zipInputStream the zip input stream
+   * @param name the expected name
+   * @param content the expected content
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void assertEntry(ZipInputStream zipInputStream, String name, byte[] content) throws IOException {
+    ZipEntry entry = zipInputStream.getNextEntry();
+    assertNotNull(entry);
+    assertEquals(name, entry.getName());
+    assertArrayEquals(content, IOUtils.toByteArray(zipInputStream));
+  }
+
+  /**
+   * Management controller exporting an archive of two entries.
+   */
+  private static class ExportManagementController implements ManagementController {
+
+    /** Awaited after the first entry, null to write without waiting. */
+    private final CountDownLatch resume;
+
+    /** Whether the export fails after the first entry. */
+    private final boolean failing;
+
+    /** Counted down when the export ends. */
+    private final CountDownLatch end = new CountDownLatch(1);
+
+    /** The failure of writes, if any. */
+    private volatile IOException writeFailure;
+
+    /**
+     * Instantiates a new export management controller.
+     *
+     * @param resume awaited after the first entry, null to write without
+     *          waiting
+     * @param failing whether the export fails after the first entry
+     */
+    public ExportManagementController(CountDownLatch resume, boolean failing) {
+      this.resume = resume;
+      this.failing = failing;
+    }
+
+    /**
+     * Waits for the end of the export.
+     *
+     * @return true, if the export ended
+     * @throws InterruptedException the interrupted exception
+     */
+    public boolean awaitEnd() throws InterruptedException {
+      return end.await(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets the failure of writes.
+     *
+     * @return the write failure, null if writes succeeded
+     */
+    public IOException getWriteFailure() {
+      return writeFailure;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ManagedResponse execute(ManagedRequest request) {
+      return new ManagedResponse() {
+        @Override
+        public Outcome getOutcome() {
+          return new Outcome() {
+            @Override
+            public boolean isSuccess() {
+              return true;
+            }
+
+            @Override
+            public String getFailureDescription() {
+              return null;
+            }
+          };
+        }
+
+        @Override
+        public Object getResult() {
+          return null;
+        }
+
+        @Override
+        public void writeResult(OutputStream outputStream, boolean pretty) throws IOException {
+          try {
+            ZipOutputStream zos = new ZipOutputStream(outputStream);
+            zos.putNextEntry(new ZipEntry("first.xml"));
+            zos.write(FIRST_ENTRY);
+            zos.closeEntry();
+            zos.flush();
+            if (failing) {
+              throw new IOException("Export failed");
+            }
+            if (resume != null) {
+              resume.await();
+            }
+            zos.putNextEntry(new ZipEntry("second.xml"));
+            zos.write(SECOND_ENTRY);
+            zos.closeEntry();
+            zos.finish();
+          } catch (IOException e) {
+            writeFailure = e;
+            throw e;
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          } finally {
+            end.countDown();
+          }
+        }
+      };
+    }
+  }
+}